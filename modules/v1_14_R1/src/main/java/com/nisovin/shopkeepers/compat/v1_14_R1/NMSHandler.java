@@ -1,5 +1,11 @@
 package com.nisovin.shopkeepers.compat.v1_14_R1;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.util.Map;
 import java.util.Set;
@@ -18,9 +24,14 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.Merchant;
 import org.bukkit.inventory.MerchantInventory;
 
+import com.mojang.datafixers.Dynamic;
 import com.nisovin.shopkeepers.compat.api.NMSCallProvider;
 import com.nisovin.shopkeepers.util.ItemUtils;
 
+import net.minecraft.server.v1_14_R1.ControllerLook;
+import net.minecraft.server.v1_14_R1.DataConverterRegistry;
+import net.minecraft.server.v1_14_R1.DataConverterTypes;
+import net.minecraft.server.v1_14_R1.DynamicOpsNBT;
 import net.minecraft.server.v1_14_R1.Entity;
 import net.minecraft.server.v1_14_R1.EntityHuman;
 import net.minecraft.server.v1_14_R1.EntityInsentient;
@@ -28,10 +39,13 @@ import net.minecraft.server.v1_14_R1.EntityLiving;
 import net.minecraft.server.v1_14_R1.GameProfileSerializer;
 import net.minecraft.server.v1_14_R1.IMerchant;
 import net.minecraft.server.v1_14_R1.MerchantRecipeList;
+import net.minecraft.server.v1_14_R1.NBTBase;
+import net.minecraft.server.v1_14_R1.NBTCompressedStreamTools;
 import net.minecraft.server.v1_14_R1.NBTTagCompound;
 import net.minecraft.server.v1_14_R1.PathfinderGoalFloat;
 import net.minecraft.server.v1_14_R1.PathfinderGoalLookAtPlayer;
 import net.minecraft.server.v1_14_R1.PathfinderGoalSelector;
+import net.minecraft.server.v1_14_R1.SharedConstants;
 
 public final class NMSHandler implements NMSCallProvider {
 
@@ -93,6 +107,25 @@ public final class NMSHandler implements NMSCallProvider {
 		mcInsentientEntity.getControllerLook().a(); // tick look controller
 	}
 
+	@Override
+	public boolean supportsLookAt() {
+		return true;
+	}
+
+	@Override
+	public void tickLookAt(LivingEntity entity, org.bukkit.entity.Entity target) {
+		EntityLiving mcLivingEntity = ((CraftLivingEntity) entity).getHandle();
+		// example: armor stands are living, but not insentient
+		if (!(mcLivingEntity instanceof EntityInsentient)) return;
+		ControllerLook controllerLook = ((EntityInsentient) mcLivingEntity).getControllerLook();
+		if (target != null) {
+			// look at the target's eyes (like the vanilla look-at-player goal):
+			Entity mcTarget = ((CraftEntity) target).getHandle();
+			controllerLook.a(mcTarget.locX, mcTarget.locY + (double) mcTarget.getHeadHeight(), mcTarget.locZ);
+		}
+		controllerLook.a(); // tick look controller
+	}
+
 	@Override
 	public void setOnGround(org.bukkit.entity.Entity entity, boolean onGround) {
 		Entity mcEntity = ((CraftEntity) entity).getHandle();
@@ -149,4 +182,41 @@ public final class NMSHandler implements NMSCallProvider {
 		// Master), merchant total experience, is regular villager flag (false: hides some gui elements)
 		((CraftPlayer) player).getHandle().openTrade(((CraftPlayer) player).getHandle().activeContainer.windowId, merchantRecipeList, 0, 0, true);
 	}
+
+	@Override
+	public byte[] serializeItemStack(ItemStack itemStack) {
+		net.minecraft.server.v1_14_R1.ItemStack nmsItem = CraftItemStack.asNMSCopy(itemStack);
+		NBTTagCompound itemTag = nmsItem.save(new NBTTagCompound());
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			NBTCompressedStreamTools.a(itemTag, (DataOutput) out); // uncompressed
+		} catch (IOException e) {
+			// not expected for in-memory streams:
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public int getItemDataVersion() {
+		return SharedConstants.a().getWorldVersion();
+	}
+
+	@Override
+	public ItemStack deserializeItemStack(byte[] data, int dataVersion) {
+		NBTTagCompound itemTag;
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			itemTag = NBTCompressedStreamTools.a(in); // uncompressed
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Invalid item data!", e);
+		}
+		int currentDataVersion = this.getItemDataVersion();
+		if (dataVersion < currentDataVersion) {
+			// upgrade the item data via minecraft's data converters:
+			Dynamic<NBTBase> upgraded = DataConverterRegistry.a().update(DataConverterTypes.ITEM_STACK,
+					new Dynamic<>(DynamicOpsNBT.a, itemTag), dataVersion, currentDataVersion);
+			itemTag = (NBTTagCompound) upgraded.getValue();
+		}
+		return CraftItemStack.asBukkitCopy(net.minecraft.server.v1_14_R1.ItemStack.a(itemTag));
+	}
 }
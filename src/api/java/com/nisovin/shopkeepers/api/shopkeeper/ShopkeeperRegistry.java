@@ -11,7 +11,9 @@ import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Entity;
+import org.bukkit.util.BoundingBox;
 
+import com.nisovin.shopkeepers.api.shopkeeper.player.PlayerShopkeeper;
 import com.nisovin.shopkeepers.api.util.ChunkCoords;
 
 /**
@@ -160,10 +162,19 @@ public interface ShopkeeperRegistry {
 	/**
 	 * Gets all shopkeepers grouped by the chunks they are in.
 	 * 
-	 * @return an unmodifiable view on all shopkeepers grouped by the chunks they are in
+	 * @return an unmodifiable map of all shopkeepers grouped by the chunks they are in
 	 */
 	public Map<ChunkCoords, ? extends List<? extends Shopkeeper>> getAllShopkeepersByChunks();
 
+	/**
+	 * Gets all player shopkeepers owned by the specified player.
+	 * 
+	 * @param ownerUUID
+	 *            the owner's unique id
+	 * @return an unmodifiable view on the shopkeepers of the specified player, can be empty
+	 */
+	public List<? extends PlayerShopkeeper> getShopkeepersOfPlayer(UUID ownerUUID);
+
 	/**
 	 * Gets all active shopkeepers. Some shopkeeper types might be always active (like sign shops),
 	 * others are only active as long as their chunk they are in is loaded.
@@ -180,4 +191,45 @@ public interface ShopkeeperRegistry {
 	 * @return all shopkeepers at the specified location
 	 */
 	public List<? extends Shopkeeper> getShopkeepersAtLocation(Location location);
+
+	/**
+	 * Gets all shopkeepers within the specified distance of the given location.
+	 * <p>
+	 * Distances are measured to the centers of the shopkeepers' blocks.
+	 * 
+	 * @param location
+	 *            the location
+	 * @param radius
+	 *            the radius
+	 * @return the shopkeepers within the specified distance, in no particular order
+	 */
+	public List<? extends Shopkeeper> getShopkeepersInRadius(Location location, double radius);
+
+	/**
+	 * Gets all shopkeepers within the specified bounding box.
+	 * <p>
+	 * A shopkeeper is inside the bounding box if the center of its block is.
+	 * 
+	 * @param world
+	 *            the world
+	 * @param box
+	 *            the bounding box
+	 * @return the shopkeepers within the bounding box, in no particular order
+	 */
+	public List<? extends Shopkeeper> getShopkeepersInBox(World world, BoundingBox box);
+
+	/**
+	 * Gets the shopkeepers nearest to the given location.
+	 * <p>
+	 * Distances are measured to the centers of the shopkeepers' blocks.
+	 * 
+	 * @param location
+	 *            the location
+	 * @param count
+	 *            the maximum number of shopkeepers to return
+	 * @param maxDistance
+	 *            the maximum distance of the shopkeepers to the location
+	 * @return the nearest shopkeepers, ordered by their distance to the location
+	 */
+	public List<? extends Shopkeeper> getNearestShopkeepers(Location location, int count, double maxDistance);
 }
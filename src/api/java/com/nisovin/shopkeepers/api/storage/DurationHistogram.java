@@ -0,0 +1,35 @@
+package com.nisovin.shopkeepers.api.storage;
+
+/**
+ * Keeps track of the most recent samples of a duration, such as the durations of the last saves.
+ */
+public interface DurationHistogram {
+
+	/**
+	 * Gets the number of samples that are currently taken into account.
+	 * <p>
+	 * Only a limited number of the most recent samples is kept. Older samples get replaced by newer samples.
+	 * 
+	 * @return the number of samples
+	 */
+	public int getSampleCount();
+
+	/**
+	 * Gets the specified percentile of the recorded durations.
+	 * <p>
+	 * For example, a percentile of <code>95</code> returns the duration that was not exceeded by 95% of the recorded
+	 * samples.
+	 * 
+	 * @param percentile
+	 *            the percentile, between <code>0</code> and <code>100</code>
+	 * @return the duration in milliseconds, or <code>0</code> if there are no samples
+	 */
+	public long getPercentile(double percentile);
+
+	/**
+	 * Gets the maximum of the recorded durations.
+	 * 
+	 * @return the maximum duration in milliseconds, or <code>0</code> if there are no samples
+	 */
+	public long getMax();
+}
@@ -0,0 +1,77 @@
+package com.nisovin.shopkeepers.api.storage;
+
+/**
+ * Statistics about the saves of the {@link ShopkeeperStorage}.
+ * <p>
+ * The durations only take saves into account which actually attempted to write the data, regardless of whether they
+ * succeeded or failed. The counters are reset when the plugin gets reloaded.
+ */
+public interface SaveStatistics {
+
+	/**
+	 * Gets the number of saves which attempted to write the data, regardless of whether they succeeded or failed.
+	 * 
+	 * @return the number of saves
+	 */
+	public int getSaveCount();
+
+	/**
+	 * Gets the number of saves which failed to write the data.
+	 * 
+	 * @return the number of failed saves
+	 */
+	public int getFailedSaveCount();
+
+	/**
+	 * Gets the number of async saves which got aborted or cancelled before they were able to write the data.
+	 * 
+	 * @return the number of aborted saves
+	 */
+	public int getAbortedSaveCount();
+
+	/**
+	 * Gets the number of saves which got requested again, because a previous save failed or got aborted.
+	 * 
+	 * @return the number of retried saves
+	 */
+	public int getRetriedSaveCount();
+
+	/**
+	 * Gets the durations for preparing the data of the dirty shopkeepers for saving.
+	 * 
+	 * @return the packing durations
+	 */
+	public DurationHistogram getPackingDurations();
+
+	/**
+	 * Gets the delays between the submission of the async save tasks and the begin of their execution.
+	 * <p>
+	 * This only takes async saves into account.
+	 * 
+	 * @return the async task delays
+	 */
+	public DurationHistogram getAsyncTaskDelays();
+
+	/**
+	 * Gets the durations the async save tasks had to wait for other saves to finish their file IO.
+	 * <p>
+	 * This only takes async saves into account.
+	 * 
+	 * @return the IO lock wait durations
+	 */
+	public DurationHistogram getIOLockWaitDurations();
+
+	/**
+	 * Gets the durations of the actual file IO.
+	 * 
+	 * @return the IO durations
+	 */
+	public DurationHistogram getIODurations();
+
+	/**
+	 * Gets the durations from the begin of the saves until their data has been written.
+	 * 
+	 * @return the total durations
+	 */
+	public DurationHistogram getTotalDurations();
+}
@@ -43,4 +43,13 @@ public interface ShopkeeperStorage {
 	 * Note: This is blocking. If there is an asynchronous save going on currently, this will wait for it to finish.
 	 */
 	public void saveImmediate();
+
+	/**
+	 * Gets statistics about the recent saves.
+	 * <p>
+	 * This can for example be used to monitor the save latency.
+	 * 
+	 * @return the save statistics
+	 */
+	public SaveStatistics getSaveStatistics();
 }
@@ -2,7 +2,6 @@ package com.nisovin.shopkeepers;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -27,7 +26,6 @@ import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.events.ShopkeeperRemoveEvent;
 import com.nisovin.shopkeepers.api.shopkeeper.ShopCreationData;
 import com.nisovin.shopkeepers.api.shopkeeper.ShopType;
-import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
 import com.nisovin.shopkeepers.api.shopkeeper.TradingRecipe;
 import com.nisovin.shopkeepers.api.shopkeeper.player.PlayerShopkeeper;
 import com.nisovin.shopkeepers.chestprotection.ProtectedChests;
@@ -52,6 +50,7 @@ import com.nisovin.shopkeepers.shopkeeper.SKDefaultShopTypes;
 import com.nisovin.shopkeepers.shopkeeper.SKShopTypesRegistry;
 import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.shopkeeper.SKTradingRecipe;
+import com.nisovin.shopkeepers.shopkeeper.ShopkeeperStub;
 import com.nisovin.shopkeepers.shopobjects.AbstractShopObjectType;
 import com.nisovin.shopkeepers.shopobjects.SKDefaultShopObjectTypes;
 import com.nisovin.shopkeepers.shopobjects.SKShopObjectTypesRegistry;
@@ -182,6 +181,10 @@ public class SKShopkeepersPlugin extends JavaPlugin implements ShopkeepersPlugin
 			}
 		}
 
+		// enable shopkeeper storage and start reading the saved shopkeepers data in the background:
+		shopkeeperStorage.onEnable();
+		shopkeeperStorage.startLoading();
+
 		// process additional permissions
 		String[] perms = Settings.maxShopsPermOptions.replace(" ", "").split(",");
 		for (String perm : perms) {
@@ -241,13 +244,10 @@ public class SKShopkeepersPlugin extends JavaPlugin implements ShopkeepersPlugin
 		// enable shopkeeper creation:
 		shopkeeperCreation.onEnable();
 
-		// enable shopkeeper storage:
-		shopkeeperStorage.onEnable();
-
 		// enable shopkeeper registry:
 		shopkeeperRegistry.onEnable();
 
-		// load shopkeepers from saved data:
+		// load shopkeepers from saved data (waits for the reading of the data to complete):
 		boolean loadingSuccessful = shopkeeperStorage.reload();
 		if (!loadingSuccessful) {
 			// detected an issue during loading
@@ -258,6 +258,9 @@ public class SKShopkeepersPlugin extends JavaPlugin implements ShopkeepersPlugin
 			return;
 		}
 
+		// remove left-over shop entities before the shopkeepers get activated:
+		livingShops.removeOrphanedShopEntities();
+
 		// activate (spawn) shopkeepers in loaded chunks:
 		shopkeeperRegistry.loadShopkeepersInAllWorlds();
 
@@ -506,13 +509,7 @@ public class SKShopkeepersPlugin extends JavaPlugin implements ShopkeepersPlugin
 	private void removeInactivePlayerShops() {
 		if (Settings.playerShopkeeperInactiveDays <= 0) return;
 
-		Set<UUID> playerUUIDs = new HashSet<>();
-		for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
-			if (shopkeeper instanceof PlayerShopkeeper) {
-				PlayerShopkeeper playerShop = (PlayerShopkeeper) shopkeeper;
-				playerUUIDs.add(playerShop.getOwnerUUID());
-			}
-		}
+		Set<UUID> playerUUIDs = shopkeeperRegistry.getShopOwners();
 		if (playerUUIDs.isEmpty()) {
 			// no player shops found:
 			return;
@@ -545,15 +542,7 @@ public class SKShopkeepersPlugin extends JavaPlugin implements ShopkeepersPlugin
 					// remove all shops of this inactive player:
 					UUID playerUUID = inactivePlayer.getUniqueId();
 
-					for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
-						if (shopkeeper instanceof PlayerShopkeeper) {
-							PlayerShopkeeper playerShop = (PlayerShopkeeper) shopkeeper;
-							UUID ownerUUID = playerShop.getOwnerUUID();
-							if (ownerUUID.equals(playerUUID)) {
-								forRemoval.add(playerShop);
-							}
-						}
-					}
+					forRemoval.addAll(shopkeeperRegistry.getShopkeepersOfPlayer(playerUUID));
 				}
 
 				// remove those shopkeepers:
@@ -575,26 +564,26 @@ public class SKShopkeepersPlugin extends JavaPlugin implements ShopkeepersPlugin
 
 	// updates owner names for the shopkeepers of the specified player:
 	private void updateShopkeepersForPlayer(UUID playerUUID, String playerName) {
+		// load the not yet loaded shopkeepers of the player whose stored owner name is outdated:
+		for (ShopkeeperStub stub : new ArrayList<>(shopkeeperRegistry.getShopkeeperStubsOfPlayer(playerUUID))) {
+			if (!playerName.equals(stub.getOwnerName())) {
+				shopkeeperRegistry.materializeShopkeeper(stub);
+			}
+		}
+
 		boolean dirty = false;
-		for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
-			if (shopkeeper instanceof PlayerShopkeeper) {
-				PlayerShopkeeper playerShop = (PlayerShopkeeper) shopkeeper;
-				UUID ownerUUID = playerShop.getOwnerUUID();
-				String ownerName = playerShop.getOwnerName();
-
-				if (ownerUUID.equals(playerUUID)) {
-					if (!ownerName.equals(playerName)) {
-						// update the stored name, because the player must have changed it:
-						playerShop.setOwner(playerUUID, playerName);
-						dirty = true;
-					} else {
-						// The shop was already updated to uuid based identification and the player's name hasn't
-						// changed.
-						// If we assume that this is consistent among all shops of this player
-						// we can stop checking the other shops here:
-						return;
-					}
-				}
+		for (PlayerShopkeeper playerShop : shopkeeperRegistry.getMaterializedShopkeepersOfPlayer(playerUUID)) {
+			String ownerName = playerShop.getOwnerName();
+			if (!ownerName.equals(playerName)) {
+				// update the stored name, because the player must have changed it:
+				playerShop.setOwner(playerUUID, playerName);
+				dirty = true;
+			} else {
+				// The shop was already updated to uuid based identification and the player's name hasn't
+				// changed.
+				// If we assume that this is consistent among all shops of this player
+				// we can stop checking the other shops here:
+				return;
 			}
 		}
 
@@ -1,12 +1,15 @@
 package com.nisovin.shopkeepers;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.bukkit.Material;
 import org.bukkit.configuration.Configuration;
@@ -35,6 +38,11 @@ public class Settings {
 	 */
 	public static String fileEncoding = "UTF-8";
 	public static boolean saveInstantly = true;
+	public static boolean fsyncSaveFiles = false;
+	public static boolean lazyShopkeeperLoading = false;
+	public static String storageType = "yaml";
+	public static boolean saveJournal = false;
+	public static int journalCompactionInterval = 300;
 
 	/*
 	 * Plugin Compatibility
@@ -135,6 +143,14 @@ public class Settings {
 	public static boolean useLegacyMobBehavior = false;
 	public static boolean disableGravity = false;
 	public static int gravityChunkRange = 4;
+	public static int mobAiTickRate = 1;
+	public static List<String> mobAiTickRatesByType = new ArrayList<>(0);
+	// derived from mobAiTickRatesByType during loading (not a config setting):
+	private static final Map<EntityType, Integer> mobAiTickRatesByEntityType = new EnumMap<>(EntityType.class);
+	public static boolean adaptiveMobAiThrottling = true;
+	public static int spawnQueueMaxSpawnsPerTick = 10;
+	public static int spawnQueueMaxTimePerTick = 2;
+	public static boolean persistentShopEntities = false;
 	public static boolean silenceLivingShopEntities = true;
 
 	public static boolean showNameplates = true;
@@ -440,6 +456,7 @@ public class Settings {
 	public static String msgCommandDescriptionHelp = "Shows this help page.";
 	public static String msgCommandDescriptionReload = "Reloads this plugin.";
 	public static String msgCommandDescriptionDebug = "Toggles debug mode on and off.";
+	public static String msgCommandDescriptionConvertStorage = "Converts the shopkeepers data to another storage type.";
 	public static String msgCommandDescriptionList = "Lists all shops for the specified player, or all admin shops.";
 	public static String msgCommandDescriptionRemove = "Removes all shops for the specified player, all players, or all admin shops.";
 	public static String msgCommandDescriptionGive = "Gives shop creation item(s) to the specified player.";
@@ -472,11 +489,13 @@ public class Settings {
 		List<String> noColorConversionKeys = Arrays.asList(
 				toConfigKey("fileEncoding"), toConfigKey("shopCreationItemSpawnEggEntityType"),
 				toConfigKey("maxShopsPermOptions"), toConfigKey("enabledLivingShops"),
-				toConfigKey("nameRegex"), toConfigKey("language"));
+				toConfigKey("nameRegex"), toConfigKey("language"),
+				toConfigKey("storageType"), toConfigKey("mobAiTickRatesByType"));
 		try {
 			Field[] fields = Settings.class.getDeclaredFields();
 			for (Field field : fields) {
-				if (field.isSynthetic()) continue;
+				// skip constants and fields that are derived from the settings:
+				if (field.isSynthetic() || Modifier.isFinal(field.getModifiers())) continue;
 				Class<?> typeClass = field.getType();
 				Class<?> genericType = null;
 				if (typeClass == List.class) {
@@ -533,10 +552,40 @@ public class Settings {
 			Log.warning("Config: 'max-chest-distance' can be at most 50.");
 			maxChestDistance = 50;
 		}
+		if (journalCompactionInterval < 1) {
+			Log.warning("Config: 'journal-compaction-interval' has to be positive.");
+			journalCompactionInterval = 1;
+		}
 		if (gravityChunkRange < 0) {
 			Log.warning("Config: 'gravity-chunk-range' cannot be negative.");
 			gravityChunkRange = 0;
 		}
+		if (mobAiTickRate < 1) {
+			Log.warning("Config: 'mob-ai-tick-rate' has to be positive.");
+			mobAiTickRate = 1;
+		}
+		List<String> validMobAiTickRates = new ArrayList<>(mobAiTickRatesByType.size());
+		mobAiTickRatesByEntityType.clear();
+		for (String entry : mobAiTickRatesByType) {
+			int separatorIndex = (entry != null ? entry.lastIndexOf(':') : -1);
+			EntityType entityType = (separatorIndex != -1 ? matchEntityType(entry.substring(0, separatorIndex)) : null);
+			Integer tickRate = (separatorIndex != -1 ? ConversionUtils.parseInt(entry.substring(separatorIndex + 1).trim()) : null);
+			if (entityType == null || tickRate == null || tickRate < 1) {
+				Log.warning("Config: Invalid entry in 'mob-ai-tick-rates-by-type' (expecting '<mob type>:<tick rate>'): " + entry);
+				continue;
+			}
+			validMobAiTickRates.add(entry);
+			mobAiTickRatesByEntityType.putIfAbsent(entityType, tickRate);
+		}
+		mobAiTickRatesByType = validMobAiTickRates;
+		if (spawnQueueMaxSpawnsPerTick < 0) {
+			Log.warning("Config: 'spawn-queue-max-spawns-per-tick' cannot be negative.");
+			spawnQueueMaxSpawnsPerTick = 0;
+		}
+		if (spawnQueueMaxTimePerTick < 0) {
+			Log.warning("Config: 'spawn-queue-max-time-per-tick' cannot be negative.");
+			spawnQueueMaxTimePerTick = 0;
+		}
 		if (highCurrencyValue <= 0 && highCurrencyItem != Material.AIR) {
 			Log.debug("Config: 'high-currency-item' disabled because of 'high-currency-value' being less than 1.");
 			highCurrencyItem = Material.AIR;
@@ -882,6 +931,18 @@ public class Settings {
 		return maxShops;
 	}
 
+	/**
+	 * Gets the rate in ticks at which the AI of shopkeeper mobs of the given type gets ticked.
+	 * 
+	 * @param entityType
+	 *            the mob type
+	 * @return the AI tick rate, at least <code>1</code>
+	 */
+	public static int getMobAiTickRate(EntityType entityType) {
+		Integer tickRate = mobAiTickRatesByEntityType.get(entityType);
+		return (tickRate != null ? tickRate : Settings.mobAiTickRate);
+	}
+
 	public static EntityType matchEntityType(String entityTypeId) {
 		if (StringUtils.isEmpty(entityTypeId)) return null;
 		// get by bukkit id:
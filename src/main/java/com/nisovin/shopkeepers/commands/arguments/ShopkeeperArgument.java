@@ -3,9 +3,9 @@ package com.nisovin.shopkeepers.commands.arguments;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.UUID;
 
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.Settings;
 import com.nisovin.shopkeepers.api.ShopkeepersAPI;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
@@ -16,6 +16,7 @@ import com.nisovin.shopkeepers.commands.lib.CommandContext;
 import com.nisovin.shopkeepers.commands.lib.CommandInput;
 import com.nisovin.shopkeepers.commands.lib.arguments.ArgumentFilter;
 import com.nisovin.shopkeepers.commands.lib.arguments.StringArgument;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.util.StringUtils;
 import com.nisovin.shopkeepers.util.Utils;
 
@@ -125,44 +126,31 @@ public class ShopkeeperArgument extends StringArgument {
 			partialArg = Utils.stripColor(partialArg);
 			partialArg = StringUtils.normalize(partialArg);
 
+			SKShopkeeperRegistry shopkeeperRegistry = SKShopkeepersPlugin.getInstance().getShopkeeperRegistry();
+
 			// check for matching shop names:
-			for (Shopkeeper shopkeeper : ShopkeepersAPI.getShopkeeperRegistry().getAllShopkeepers()) {
-				if (!this.testFilter(shopkeeper)) continue; // filtered
-				String shopName = shopkeeper.getName();
-				if (StringUtils.isEmpty(shopName)) continue;
-				shopName = Utils.stripColor(shopName);
+			for (Shopkeeper shopkeeper : shopkeeperRegistry.getShopkeepersByNamePrefix(partialArg, filter, MAX_SUGGESTIONS)) {
+				String shopName = Utils.stripColor(shopkeeper.getName());
 				shopName = StringUtils.normalizeKeepCase(shopName);
-				String shopNameLower = shopName.toLowerCase(Locale.ROOT);
-				if (shopNameLower.startsWith(partialArg)) {
-					// TODO only add the part of the name past the matching parts as suggestion (in case of joined
-					// remaining args)
-					suggestions.add(shopName);
-					if (suggestions.size() >= MAX_SUGGESTIONS) break; // suggestions limit reached
-				}
+				// TODO only add the part of the name past the matching parts as suggestion (in case of joined
+				// remaining args)
+				suggestions.add(shopName);
 			}
 
 			if (!partialArg.isEmpty()) {
 				// check for matching ids:
 				if (suggestions.size() < MAX_SUGGESTIONS) {
-					for (Shopkeeper shopkeeper : ShopkeepersAPI.getShopkeeperRegistry().getAllShopkeepers()) {
-						if (!this.testFilter(shopkeeper)) continue; // filtered
-						String shopId = String.valueOf(shopkeeper.getId());
-						if (shopId.startsWith(partialArg)) {
-							suggestions.add(shopId);
-							if (suggestions.size() >= MAX_SUGGESTIONS) break; // suggestions limit reached
-						}
+					int limit = (MAX_SUGGESTIONS - suggestions.size());
+					for (Shopkeeper shopkeeper : shopkeeperRegistry.getShopkeepersByIdPrefix(partialArg, filter, limit)) {
+						suggestions.add(String.valueOf(shopkeeper.getId()));
 					}
 				}
 
 				// check for matching unique ids:
 				if (suggestions.size() < MAX_SUGGESTIONS) {
-					for (Shopkeeper shopkeeper : ShopkeepersAPI.getShopkeeperRegistry().getAllShopkeepers()) {
-						if (!this.testFilter(shopkeeper)) continue; // filtered
-						String shopUniqueId = shopkeeper.getUniqueId().toString();
-						if (shopUniqueId.startsWith(partialArg)) {
-							suggestions.add(shopUniqueId);
-							if (suggestions.size() >= MAX_SUGGESTIONS) break; // suggestions limit reached
-						}
+					int limit = (MAX_SUGGESTIONS - suggestions.size());
+					for (Shopkeeper shopkeeper : shopkeeperRegistry.getShopkeepersByUniqueIdPrefix(partialArg, filter, limit)) {
+						suggestions.add(shopkeeper.getUniqueId().toString());
 					}
 				}
 			}
@@ -2,8 +2,6 @@ package com.nisovin.shopkeepers.commands.shopkeepers;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -16,8 +14,8 @@ import org.bukkit.command.ConsoleCommandSender;
 import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
-import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
-import com.nisovin.shopkeepers.api.util.ChunkCoords;
+import com.nisovin.shopkeepers.api.storage.DurationHistogram;
+import com.nisovin.shopkeepers.api.storage.SaveStatistics;
 import com.nisovin.shopkeepers.commands.lib.Command;
 import com.nisovin.shopkeepers.commands.lib.CommandArgs;
 import com.nisovin.shopkeepers.commands.lib.CommandContext;
@@ -26,16 +24,19 @@ import com.nisovin.shopkeepers.commands.lib.CommandInput;
 import com.nisovin.shopkeepers.commands.lib.arguments.FirstOfArgument;
 import com.nisovin.shopkeepers.commands.lib.arguments.LiteralArgument;
 import com.nisovin.shopkeepers.commands.lib.arguments.OptionalArgument;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.shopobjects.living.LivingEntityAI;
+import com.nisovin.shopkeepers.util.PositionKeys;
 import com.nisovin.shopkeepers.util.Utils;
 
 class CommandCheck extends Command {
 
 	private static final String ARGUMENT_CHUNKS = "chunks";
 	private static final String ARGUMENT_ACTIVE = "active";
+	private static final String ARGUMENT_STORAGE = "storage";
 
 	private final SKShopkeepersPlugin plugin;
-	private final ShopkeeperRegistry shopkeeperRegistry;
+	private final SKShopkeeperRegistry shopkeeperRegistry;
 
 	CommandCheck(SKShopkeepersPlugin plugin) {
 		super("check");
@@ -54,7 +55,8 @@ class CommandCheck extends Command {
 		// arguments:
 		this.addArgument(new OptionalArgument(new FirstOfArgument("context", Arrays.asList(
 				new LiteralArgument(ARGUMENT_CHUNKS),
-				new LiteralArgument(ARGUMENT_ACTIVE)))));
+				new LiteralArgument(ARGUMENT_ACTIVE),
+				new LiteralArgument(ARGUMENT_STORAGE)))));
 	}
 
 	@Override
@@ -65,19 +67,27 @@ class CommandCheck extends Command {
 		boolean listChunks = context.has(ARGUMENT_CHUNKS);
 		boolean listActive = context.has(ARGUMENT_ACTIVE);
 
-		Map<ChunkCoords, ? extends List<?>> shopsByChunk = shopkeeperRegistry.getAllShopkeepersByChunks();
+		if (context.has(ARGUMENT_STORAGE)) {
+			this.printStorageInfo(sender);
+			return;
+		}
+
 		LivingEntityAI livingEntityAI = plugin.getLivingShops().getLivingEntityAI();
 
 		sender.sendMessage(ChatColor.YELLOW + "All shopkeepers:");
-		sender.sendMessage("  Total: " + shopkeeperRegistry.getAllShopkeepers().size());
+		sender.sendMessage("  Total: " + shopkeeperRegistry.getShopkeeperCount());
+		sender.sendMessage("  Not yet loaded (stubs): " + shopkeeperRegistry.getShopkeeperStubs().size());
 		sender.sendMessage("  Unsaved dirty | deleted | dirty storage: "
 				+ plugin.getShopkeeperStorage().getDirtyCount()
 				+ " | " + plugin.getShopkeeperStorage().getUnsavedDeletedCount()
 				+ " | " + plugin.getShopkeeperStorage().isDirty());
 		sender.sendMessage("  Unsaved deleted: " + plugin.getShopkeeperStorage().getUnsavedDeletedCount());
-		sender.sendMessage("  Total chunks with shopkeepers: " + shopsByChunk.size());
+		sender.sendMessage("  Total chunks with shopkeepers: " + shopkeeperRegistry.getMaterializedShopkeeperChunkCount());
 		sender.sendMessage("  Active: " + shopkeeperRegistry.getActiveShopkeepers().size());
+		sender.sendMessage("  Chunks queued for activation: " + shopkeeperRegistry.getQueuedActivationChunksCount());
+		sender.sendMessage("  Chunks marked for spawn verification: " + shopkeeperRegistry.getSpawnVerificationChunksCount());
 		sender.sendMessage("  Active with AI: " + livingEntityAI.getEntityCount());
+		sender.sendMessage("  AI throttle level: " + livingEntityAI.getThrottleLevel() + " / " + livingEntityAI.getMaxThrottleLevel());
 		sender.sendMessage("  Active AI chunks: " + livingEntityAI.getActiveAIChunksCount());
 		sender.sendMessage("  Active with active AI: " + livingEntityAI.getActiveAIEntityCount());
 		sender.sendMessage("  Active gravity chunks: " + livingEntityAI.getActiveGravityChunksCount());
@@ -106,18 +116,18 @@ class CommandCheck extends Command {
 		for (World world : Bukkit.getWorlds()) {
 			String worldName = world.getName();
 			Chunk[] loadedChunks = world.getLoadedChunks();
+			// does not load the shopkeepers which have not been loaded yet:
+			long[] chunkKeys = shopkeeperRegistry.getMaterializedShopkeeperChunkKeys(worldName);
 			int totalShopkeepers = 0;
 			int chunksWithShopkeepers = 0;
 			int loadedChunksWithShopkeepers = 0;
 			int shopkeepersInLoadedChunks = 0;
 
-			for (Entry<ChunkCoords, ? extends List<?>> chunkEntry : shopsByChunk.entrySet()) {
-				ChunkCoords chunkCoords = chunkEntry.getKey();
-				if (!chunkCoords.getWorldName().equals(worldName)) continue;
-				List<?> inChunk = chunkEntry.getValue();
+			for (long chunkKey : chunkKeys) {
+				List<?> inChunk = shopkeeperRegistry.getMaterializedShopkeepersInChunk(worldName, chunkKey);
 				chunksWithShopkeepers++;
 				totalShopkeepers += inChunk.size();
-				if (chunkCoords.isChunkLoaded()) {
+				if (world.isChunkLoaded(PositionKeys.getChunkX(chunkKey), PositionKeys.getChunkZ(chunkKey))) {
 					loadedChunksWithShopkeepers++;
 					shopkeepersInLoadedChunks += inChunk.size();
 				}
@@ -136,14 +146,14 @@ class CommandCheck extends Command {
 			if (isConsole && listChunks && totalShopkeepers > 0) {
 				sender.sendMessage("  Listing of all chunks with shopkeepers:");
 				int line = 0;
-				for (Entry<ChunkCoords, ? extends List<?>> chunkEntry : shopsByChunk.entrySet()) {
-					ChunkCoords chunkCoords = chunkEntry.getKey();
-					if (!chunkCoords.getWorldName().equals(worldName)) continue;
-					List<?> inChunk = chunkEntry.getValue();
+				for (long chunkKey : chunkKeys) {
+					List<?> inChunk = shopkeeperRegistry.getMaterializedShopkeepersInChunk(worldName, chunkKey);
+					int chunkX = PositionKeys.getChunkX(chunkKey);
+					int chunkZ = PositionKeys.getChunkZ(chunkKey);
 					line++;
 					ChatColor lineColor = (line % 2 == 0 ? ChatColor.WHITE : ChatColor.GRAY);
-					sender.sendMessage("    (" + lineColor + chunkCoords.getChunkX() + "," + chunkCoords.getChunkZ() + ChatColor.RESET + ") ["
-							+ (chunkCoords.isChunkLoaded() ? ChatColor.GREEN + "loaded" : ChatColor.DARK_GRAY + "unloaded") + ChatColor.RESET
+					sender.sendMessage("    (" + lineColor + chunkX + "," + chunkZ + ChatColor.RESET + ") ["
+							+ (world.isChunkLoaded(chunkX, chunkZ) ? ChatColor.GREEN + "loaded" : ChatColor.DARK_GRAY + "unloaded") + ChatColor.RESET
 							+ "]: " + inChunk.size());
 				}
 			}
@@ -166,4 +176,26 @@ class CommandCheck extends Command {
 			sender.sendMessage("There might be more information getting printed if the command is run from the console.");
 		}
 	}
+
+	private void printStorageInfo(CommandSender sender) {
+		SaveStatistics saveStatistics = plugin.getShopkeeperStorage().getSaveStatistics();
+		sender.sendMessage(ChatColor.YELLOW + "Shopkeeper storage:");
+		sender.sendMessage("  Storage type: " + plugin.getShopkeeperStorage().getStorageType().getIdentifier());
+		sender.sendMessage("  Saves: " + saveStatistics.getSaveCount());
+		sender.sendMessage("  Failed | aborted | retried saves: " + saveStatistics.getFailedSaveCount()
+				+ " | " + saveStatistics.getAbortedSaveCount()
+				+ " | " + saveStatistics.getRetriedSaveCount());
+		sender.sendMessage("  Data packing: " + this.formatDurations(saveStatistics.getPackingDurations()));
+		sender.sendMessage("  Async task delay: " + this.formatDurations(saveStatistics.getAsyncTaskDelays()));
+		sender.sendMessage("  IO lock wait: " + this.formatDurations(saveStatistics.getIOLockWaitDurations()));
+		sender.sendMessage("  IO: " + this.formatDurations(saveStatistics.getIODurations()));
+		sender.sendMessage("  Total: " + this.formatDurations(saveStatistics.getTotalDurations()));
+	}
+
+	private String formatDurations(DurationHistogram durations) {
+		if (durations.getSampleCount() == 0) return "-";
+		return "p50 " + durations.getPercentile(50.0D) + " ms, p95 " + durations.getPercentile(95.0D)
+				+ " ms, p99 " + durations.getPercentile(99.0D) + " ms, max " + durations.getMax() + " ms ("
+				+ durations.getSampleCount() + " saves)";
+	}
 }
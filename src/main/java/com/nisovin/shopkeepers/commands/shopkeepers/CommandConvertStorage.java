@@ -0,0 +1,66 @@
+package com.nisovin.shopkeepers.commands.shopkeepers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.Settings;
+import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
+import com.nisovin.shopkeepers.commands.lib.Command;
+import com.nisovin.shopkeepers.commands.lib.CommandArgs;
+import com.nisovin.shopkeepers.commands.lib.CommandContext;
+import com.nisovin.shopkeepers.commands.lib.CommandException;
+import com.nisovin.shopkeepers.commands.lib.CommandInput;
+import com.nisovin.shopkeepers.commands.lib.arguments.FixedValuesArgument;
+import com.nisovin.shopkeepers.storage.SKShopkeeperStorage;
+import com.nisovin.shopkeepers.storage.StorageType;
+
+class CommandConvertStorage extends Command {
+
+	private static final String ARGUMENT_STORAGE_TYPE = "storageType";
+
+	private final SKShopkeepersPlugin plugin;
+
+	CommandConvertStorage(SKShopkeepersPlugin plugin) {
+		super("convertStorage");
+		this.plugin = plugin;
+
+		// set permission:
+		this.setPermission(ShopkeepersPlugin.RELOAD_PERMISSION);
+
+		// set description:
+		this.setDescription(Settings.msgCommandDescriptionConvertStorage);
+
+		// arguments:
+		Map<String, Object> storageTypes = new LinkedHashMap<>();
+		for (StorageType storageType : StorageType.values()) {
+			storageTypes.put(storageType.getIdentifier(), storageType);
+		}
+		this.addArgument(new FixedValuesArgument(ARGUMENT_STORAGE_TYPE, storageTypes));
+	}
+
+	@Override
+	protected void execute(CommandInput input, CommandContext context, CommandArgs args) throws CommandException {
+		CommandSender sender = input.getSender();
+		StorageType storageType = context.get(ARGUMENT_STORAGE_TYPE);
+
+		SKShopkeeperStorage shopkeeperStorage = plugin.getShopkeeperStorage();
+		if (storageType == shopkeeperStorage.getStorageType()) {
+			sender.sendMessage(ChatColor.RED + "The storage type '" + storageType.getIdentifier() + "' is already in use!");
+			return;
+		}
+
+		long startTime = System.currentTimeMillis();
+		if (!shopkeeperStorage.convertData(storageType)) {
+			sender.sendMessage(ChatColor.RED + "Data conversion failed! Check the server log for details.");
+			return;
+		}
+		long duration = System.currentTimeMillis() - startTime;
+		sender.sendMessage(ChatColor.GREEN + "Converted the shopkeepers data to storage type '" + storageType.getIdentifier()
+				+ "' (" + duration + " ms).");
+		sender.sendMessage(ChatColor.GREEN + "Set 'storage-type' to '" + storageType.getIdentifier() + "' and reload the plugin to use it.");
+	}
+}
@@ -98,12 +98,18 @@ class CommandList extends PlayerCommand {
 			Player listPlayer = Bukkit.getPlayerExact(playerName);
 			UUID listPlayerUUID = (listPlayer != null ? listPlayer.getUniqueId() : null);
 
-			for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
-				if (shopkeeper instanceof PlayerShopkeeper) {
-					PlayerShopkeeper playerShop = (PlayerShopkeeper) shopkeeper;
+			if (listPlayerUUID != null) {
+				// the player is online: only check the shops owned by the player
+				for (PlayerShopkeeper playerShop : shopkeeperRegistry.getShopkeepersOfPlayer(listPlayerUUID)) {
 					if (playerShop.getOwnerName().equals(playerName)) {
-						UUID shopOwnerUUID = playerShop.getOwnerUUID();
-						if (shopOwnerUUID == null || shopOwnerUUID.equals(listPlayerUUID) || listPlayerUUID == null) {
+						shops.add(playerShop);
+					}
+				}
+			} else {
+				for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
+					if (shopkeeper instanceof PlayerShopkeeper) {
+						PlayerShopkeeper playerShop = (PlayerShopkeeper) shopkeeper;
+						if (playerShop.getOwnerName().equals(playerName)) {
 							shops.add(playerShop);
 						}
 					}
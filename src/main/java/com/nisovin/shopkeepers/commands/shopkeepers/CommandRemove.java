@@ -2,6 +2,7 @@ package com.nisovin.shopkeepers.commands.shopkeepers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -109,7 +110,14 @@ class CommandRemove extends PlayerCommand {
 				Player listPlayer = Bukkit.getPlayerExact(playerName);
 				UUID listPlayerUUID = (listPlayer != null ? listPlayer.getUniqueId() : null);
 
-				for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
+				// if the player is online, only the shops owned by the player need to be checked:
+				Collection<? extends Shopkeeper> candidates;
+				if (listPlayerUUID != null) {
+					candidates = shopkeeperRegistry.getShopkeepersOfPlayer(listPlayerUUID);
+				} else {
+					candidates = shopkeeperRegistry.getAllShopkeepers();
+				}
+				for (Shopkeeper shopkeeper : candidates) {
 					if (shopkeeper instanceof PlayerShopkeeper) {
 						PlayerShopkeeper playerShop = (PlayerShopkeeper) shopkeeper;
 						if (playerShop.getOwnerName().equals(playerName)) {
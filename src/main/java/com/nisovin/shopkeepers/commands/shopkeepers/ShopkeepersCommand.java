@@ -67,6 +67,7 @@ public class ShopkeepersCommand extends BaseCommand {
 		childCommands.register(new CommandHelp(this));
 		childCommands.register(new CommandReload(plugin));
 		childCommands.register(new CommandDebug());
+		childCommands.register(new CommandConvertStorage(plugin));
 		childCommands.register(new CommandList(shopkeeperRegistry));
 		childCommands.register(new CommandRemove(plugin, shopkeeperRegistry, confirmations));
 		childCommands.register(new CommandGive());
@@ -19,6 +19,25 @@ public interface NMSCallProvider {
 
 	public void tickAI(LivingEntity entity);
 
+	// whether tickLookAt is supported
+	public default boolean supportsLookAt() {
+		return false;
+	}
+
+	/**
+	 * Ticks the look controller of the given entity, without ticking any of its AI goals.
+	 * <p>
+	 * This can be used instead of {@link #tickAI(LivingEntity)}, if the target to look at gets determined by the caller.
+	 * 
+	 * @param entity
+	 *            the entity
+	 * @param target
+	 *            the entity to look at, or <code>null</code> to not look at any entity
+	 */
+	public default void tickLookAt(LivingEntity entity, Entity target) {
+		// not supported by default
+	}
+
 	public void setOnGround(Entity entity, boolean onGround);
 
 	// on some MC versions (ex. MC 1.9, 1.10) NoAI only disables AI
@@ -48,4 +67,39 @@ public interface NMSCallProvider {
 	// crash the client. It's left to the caller to ensure that the number of recipes does not get reduced, for example
 	// by inserting dummy entries
 	public void updateTrades(Player player, Merchant merchant);
+
+	/**
+	 * Serializes the given item stack to its NBT data.
+	 * 
+	 * @param itemStack
+	 *            the item stack
+	 * @return the serialized NBT data, or <code>null</code> if not supported
+	 */
+	public default byte[] serializeItemStack(ItemStack itemStack) {
+		return null;
+	}
+
+	/**
+	 * Gets the Minecraft data version of the NBT data produced by {@link #serializeItemStack(ItemStack)}.
+	 * 
+	 * @return the data version, or <code>0</code> if serializing item stacks is not supported
+	 */
+	public default int getItemDataVersion() {
+		return 0;
+	}
+
+	/**
+	 * Deserializes an item stack from the NBT data produced by {@link #serializeItemStack(ItemStack)}.
+	 * <p>
+	 * Item data of older data versions gets upgraded via Minecraft's data converters.
+	 * 
+	 * @param data
+	 *            the serialized NBT data
+	 * @param dataVersion
+	 *            the data version of the NBT data, not newer than {@link #getItemDataVersion()}
+	 * @return the item stack, or <code>null</code> if not supported
+	 */
+	public default ItemStack deserializeItemStack(byte[] data, int dataVersion) {
+		return null;
+	}
 }
@@ -3,21 +3,27 @@ package com.nisovin.shopkeepers.metrics;
 import org.bstats.bukkit.Metrics;
 
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
-import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
 import com.nisovin.shopkeepers.api.shopkeeper.player.PlayerShopkeeper;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
+import com.nisovin.shopkeepers.shopkeeper.ShopkeeperStub;
 
 /**
  * Reports whether the server uses player shopkeepers.
  */
 public class PlayerShopsChart extends Metrics.SimplePie {
 
-	public PlayerShopsChart(ShopkeeperRegistry shopkeeperRegistry) {
+	public PlayerShopsChart(SKShopkeeperRegistry shopkeeperRegistry) {
 		super("uses_player_shops", () -> {
-			for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
+			for (Shopkeeper shopkeeper : shopkeeperRegistry.getMaterializedShopkeepers()) {
 				if (shopkeeper instanceof PlayerShopkeeper) {
 					return "Yes";
 				}
 			}
+			for (ShopkeeperStub stub : shopkeeperRegistry.getShopkeeperStubs()) {
+				if (stub.getOwnerUUID() != null) {
+					return "Yes";
+				}
+			}
 			return "No";
 		});
 	}
@@ -2,16 +2,16 @@ package com.nisovin.shopkeepers.metrics;
 
 import org.bstats.bukkit.Metrics;
 
-import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
 
 /**
  * Reports the (rough) number of shopkeepers.
  */
 public class ShopkeepersCountChart extends Metrics.SimplePie {
 
-	public ShopkeepersCountChart(ShopkeeperRegistry shopkeeperRegistry) {
+	public ShopkeepersCountChart(SKShopkeeperRegistry shopkeeperRegistry) {
 		super("shopkeepers_count", () -> {
-			int numberOfShopkeepers = shopkeeperRegistry.getAllShopkeepers().size();
+			int numberOfShopkeepers = shopkeeperRegistry.getShopkeeperCount();
 			if (numberOfShopkeepers >= 1000) return (numberOfShopkeepers / 1000) + "000+";
 			else if (numberOfShopkeepers >= 500) return "500+";
 			else if (numberOfShopkeepers >= 100) return "100+";
@@ -3,6 +3,7 @@ package com.nisovin.shopkeepers.property;
 import org.bukkit.configuration.ConfigurationSection;
 
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.ConversionUtils;
 
 public class BooleanProperty extends Property<Boolean> {
@@ -24,7 +25,7 @@ public class BooleanProperty extends Property<Boolean> {
 	}
 
 	@Override
-	protected void saveValue(AbstractShopkeeper shopkeeper, ConfigurationSection configSection, Boolean value) {
-		configSection.set(this.key, value);
+	protected void saveValue(AbstractShopkeeper shopkeeper, SnapshotSection snapshotSection, Boolean value) {
+		snapshotSection.set(this.key, value);
 	}
 }
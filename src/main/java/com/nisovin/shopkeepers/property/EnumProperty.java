@@ -4,6 +4,7 @@ import org.apache.commons.lang.Validate;
 import org.bukkit.configuration.ConfigurationSection;
 
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.Utils;
 
 public class EnumProperty<E extends Enum<E>> extends Property<E> {
@@ -29,7 +30,7 @@ public class EnumProperty<E extends Enum<E>> extends Property<E> {
 	}
 
 	@Override
-	protected void saveValue(AbstractShopkeeper shopkeeper, ConfigurationSection configSection, E value) {
-		configSection.set(this.key, value == null ? null : value.name());
+	protected void saveValue(AbstractShopkeeper shopkeeper, SnapshotSection snapshotSection, E value) {
+		snapshotSection.set(this.key, value == null ? null : value.name());
 	}
 }
@@ -3,6 +3,7 @@ package com.nisovin.shopkeepers.property;
 import org.bukkit.configuration.ConfigurationSection;
 
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.ConversionUtils;
 
 public class IntegerProperty extends Property<Integer> {
@@ -49,7 +50,7 @@ public class IntegerProperty extends Property<Integer> {
 	}
 
 	@Override
-	protected void saveValue(AbstractShopkeeper shopkeeper, ConfigurationSection configSection, Integer value) {
-		configSection.set(this.key, value);
+	protected void saveValue(AbstractShopkeeper shopkeeper, SnapshotSection snapshotSection, Integer value) {
+		snapshotSection.set(this.key, value);
 	}
 }
@@ -4,6 +4,7 @@ import org.apache.commons.lang.Validate;
 import org.bukkit.configuration.ConfigurationSection;
 
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.Log;
 
 public abstract class Property<T> {
@@ -65,10 +66,10 @@ public abstract class Property<T> {
 	// null is considered a valid value by this method
 	protected abstract T loadValue(AbstractShopkeeper shopkeeper, ConfigurationSection configSection) throws InvalidValueException;
 
-	public void save(AbstractShopkeeper shopkeeper, ConfigurationSection configSection, T value) {
-		this.saveValue(shopkeeper, configSection, value);
+	public void save(AbstractShopkeeper shopkeeper, SnapshotSection snapshotSection, T value) {
+		this.saveValue(shopkeeper, snapshotSection, value);
 	}
 
 	// value can be null
-	protected abstract void saveValue(AbstractShopkeeper shopkeeper, ConfigurationSection configSection, T value);
+	protected abstract void saveValue(AbstractShopkeeper shopkeeper, SnapshotSection snapshotSection, T value);
 }
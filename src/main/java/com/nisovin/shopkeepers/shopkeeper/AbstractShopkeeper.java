@@ -30,6 +30,7 @@ import com.nisovin.shopkeepers.api.util.ChunkCoords;
 import com.nisovin.shopkeepers.shopobjects.AbstractShopObject;
 import com.nisovin.shopkeepers.shopobjects.AbstractShopObjectType;
 import com.nisovin.shopkeepers.shopobjects.living.types.CatShop;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.UIHandler;
 import com.nisovin.shopkeepers.ui.defaults.SKDefaultUITypes;
 import com.nisovin.shopkeepers.ui.defaults.TradingHandler;
@@ -269,26 +270,26 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 	}
 
 	/**
-	 * Saves the shopkeeper's data to the specified configuration section.
+	 * Saves the shopkeeper's data to the specified snapshot section.
 	 * <p>
-	 * Note: The serialization of the inserted data may happen asynchronously, so make sure that this is not a problem
-	 * (ex. only insert immutable objects, or always create copies of the data you insert and/or make sure to not modify
-	 * the inserted objects).
+	 * This gets called on the main thread, but the configuration section form of the inserted data gets built and
+	 * serialized asynchronously. Only insert plain values (strings, numbers, booleans) or copies of items, and don't
+	 * modify the inserted objects afterwards.
 	 * 
-	 * @param configSection
-	 *            the config section
+	 * @param snapshotSection
+	 *            the snapshot section
 	 */
-	public void save(ConfigurationSection configSection) {
-		configSection.set("uniqueId", uniqueId.toString());
-		configSection.set("name", Utils.decolorize(name));
-		configSection.set("world", worldName);
-		configSection.set("x", x);
-		configSection.set("y", y);
-		configSection.set("z", z);
-		configSection.set("type", this.getType().getIdentifier());
+	public void save(SnapshotSection snapshotSection) {
+		snapshotSection.set("uniqueId", uniqueId.toString());
+		snapshotSection.set("name", Utils.decolorize(name));
+		snapshotSection.set("world", worldName);
+		snapshotSection.set("x", x);
+		snapshotSection.set("y", y);
+		snapshotSection.set("z", z);
+		snapshotSection.set("type", this.getType().getIdentifier());
 
 		// shop object:
-		ConfigurationSection objectSection = configSection.createSection("object");
+		SnapshotSection objectSection = snapshotSection.createSection("object");
 		shopObject.save(objectSection);
 	}
 
@@ -316,7 +317,7 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 		if (this.isValid()) {
 			// if the shopkeeper gets marked dirty during creation or loading (while it is not yet valid),
 			// the storage gets marked dirty by the shopkeeper registry after the creation/loading was successful
-			SKShopkeepersPlugin.getInstance().getShopkeeperStorage().markDirty();
+			SKShopkeepersPlugin.getInstance().getShopkeeperStorage().markDirty(this);
 		}
 	}
 
@@ -605,11 +606,17 @@ public abstract class AbstractShopkeeper implements Shopkeeper {
 		if (preparedName == null) preparedName = "";
 		preparedName = Utils.colorize(preparedName);
 		preparedName = this.trimName(preparedName);
+		String oldName = this.name;
 		this.name = preparedName;
 
 		// update shop object:
 		shopObject.setName(preparedName);
 		this.markDirty(); // mark dirty
+
+		if (this.isValid()) {
+			// update shopkeeper in name index:
+			SKShopkeepersPlugin.getInstance().getShopkeeperRegistry().onShopkeeperNameChanged(this, oldName);
+		}
 	}
 
 	public boolean isValidName(String name) {
@@ -3,13 +3,17 @@ package com.nisovin.shopkeepers.shopkeeper;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Predicate;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
@@ -20,6 +24,7 @@ import org.bukkit.block.Block;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
+import org.bukkit.util.BoundingBox;
 
 import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.Settings;
@@ -30,13 +35,19 @@ import com.nisovin.shopkeepers.api.shopkeeper.ShopType;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
 import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperCreateException;
 import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
-import com.nisovin.shopkeepers.api.shopkeeper.player.PlayerShopkeeper;
-import com.nisovin.shopkeepers.api.shopobjects.ShopObjectType;
 import com.nisovin.shopkeepers.api.util.ChunkCoords;
-import com.nisovin.shopkeepers.shopobjects.block.AbstractBlockShopObjectType;
-import com.nisovin.shopkeepers.shopobjects.entity.AbstractEntityShopObjectType;
+import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopType;
+import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopkeeper;
+import com.nisovin.shopkeepers.shopobjects.AbstractShopObject;
+import com.nisovin.shopkeepers.shopobjects.AbstractShopObjectType;
+import com.nisovin.shopkeepers.shopobjects.block.AbstractBlockShopObject;
+import com.nisovin.shopkeepers.shopobjects.entity.AbstractEntityShopObject;
 import com.nisovin.shopkeepers.storage.SKShopkeeperStorage;
+import com.nisovin.shopkeepers.util.ConversionUtils;
 import com.nisovin.shopkeepers.util.Log;
+import com.nisovin.shopkeepers.util.LongObjectHashMap;
+import com.nisovin.shopkeepers.util.PositionKeys;
+import com.nisovin.shopkeepers.util.PrefixTrie;
 import com.nisovin.shopkeepers.util.StringUtils;
 import com.nisovin.shopkeepers.util.Utils;
 
@@ -48,110 +59,81 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	private final Map<UUID, AbstractShopkeeper> shopkeepersByUUID = new LinkedHashMap<>();
 	private final Collection<AbstractShopkeeper> allShopkeepersView = Collections.unmodifiableCollection(shopkeepersByUUID.values());
 	private final Map<Integer, AbstractShopkeeper> shopkeepersById = new LinkedHashMap<>();
-	private final Map<ChunkCoords, List<AbstractShopkeeper>> shopkeepersByChunk = new HashMap<>();
-	// unmodifiable entries:
-	private final Map<ChunkCoords, List<AbstractShopkeeper>> shopkeeperViewsByChunk = new HashMap<>();
-	// unmodifiable map with unmodifiable entries:
-	private final Map<ChunkCoords, List<AbstractShopkeeper>> shopkeepersByChunkView = Collections.unmodifiableMap(shopkeeperViewsByChunk);
+	// the shopkeepers and shopkeeper stubs by world and (packed) chunk coordinates:
+	private final Map<String, WorldShopkeepers> shopkeepersByWorld = new HashMap<>();
+	// player shopkeepers by their owner:
+	private final Map<UUID, List<AbstractPlayerShopkeeper>> shopkeepersByOwner = new HashMap<>();
 	private final Map<String, AbstractShopkeeper> activeShopkeepers = new HashMap<>(); // TODO remove this (?)
+	// the active shopkeepers by their entity unique ids and by their (per world) packed block positions:
+	// these allow lookups without having to create object ids for all shop object types first
+	private final Map<UUID, AbstractShopkeeper> activeShopkeepersByEntity = new HashMap<>();
+	private final Map<String, LongObjectHashMap<AbstractShopkeeper>> activeShopkeepersByBlock = new HashMap<>();
+	// the entity or block keys by object id, in order to remove them again on deactivation:
+	private final Map<String, ActiveObjectKey> activeObjectKeys = new HashMap<>();
+	// the normalized names, ids and unique ids of all shopkeepers (including the not yet loaded ones), mapped to the
+	// shopkeeper ids:
+	private final PrefixTrie<Integer> shopkeeperIdsByName = new PrefixTrie<>();
+	private final PrefixTrie<Integer> shopkeeperIdsById = new PrefixTrie<>();
+	private final PrefixTrie<Integer> shopkeeperIdsByUniqueId = new PrefixTrie<>();
 	private final Collection<AbstractShopkeeper> activeShopkeepersView = Collections.unmodifiableCollection(activeShopkeepers.values());
 
+	// shopkeepers that have not been loaded yet (see Settings#lazyShopkeeperLoading):
+	private final Map<Integer, ShopkeeperStub> stubsById = new LinkedHashMap<>();
+	private final Collection<ShopkeeperStub> stubsView = Collections.unmodifiableCollection(stubsById.values());
+	private final Map<UUID, ShopkeeperStub> stubsByUUID = new HashMap<>();
+	private final Map<UUID, List<ShopkeeperStub>> stubsByOwner = new HashMap<>();
+
+	private final ShopkeeperActivationQueue activationQueue;
+	private final ShopkeeperChecker shopkeeperChecker;
+	private final ShopkeeperSpawnVerifier spawnVerifier;
+
 	public SKShopkeeperRegistry(SKShopkeepersPlugin plugin) {
 		this.plugin = plugin;
+		this.activationQueue = new ShopkeeperActivationQueue(plugin, this);
+		this.shopkeeperChecker = new ShopkeeperChecker(plugin, this);
+		this.spawnVerifier = new ShopkeeperSpawnVerifier(plugin, this);
 	}
 
 	public void onEnable() {
-		// start teleporter task:
-		this.startTeleporterTask();
+		// start activation queue:
+		activationQueue.start();
 
-		// start verifier task:
+		// start shopkeeper checks:
+		shopkeeperChecker.start();
+
+		// start spawn verifier:
 		if (Settings.enableSpawnVerifier) {
-			this.startSpawnVerifierTask();
+			spawnVerifier.start();
 		}
 
 		Bukkit.getPluginManager().registerEvents(new WorldListener(plugin, this), plugin);
 	}
 
 	public void onDisable() {
+		// stop activation queue, shopkeeper checks and spawn verifier:
+		activationQueue.stop();
+		shopkeeperChecker.stop();
+		spawnVerifier.stop();
+
 		// unload all shopkeepers:
 		this.unloadAllShopkeepers();
 		assert this.getAllShopkeepers().isEmpty();
 
 		// reset, clearing (just in case):
+		this.clearShopkeeperStubs();
 		activeShopkeepers.clear();
-		shopkeepersByChunk.clear();
-		shopkeeperViewsByChunk.clear();
+		activeShopkeepersByEntity.clear();
+		activeShopkeepersByBlock.clear();
+		activeObjectKeys.clear();
+		shopkeepersByOwner.clear();
+		shopkeeperIdsByName.clear();
+		shopkeeperIdsById.clear();
+		shopkeeperIdsByUniqueId.clear();
+		shopkeepersByWorld.clear();
 		shopkeepersByUUID.clear();
 		shopkeepersById.clear();
 	}
 
-	private void startTeleporterTask() {
-		Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-			List<AbstractShopkeeper> readd = new ArrayList<>();
-			Iterator<Map.Entry<String, AbstractShopkeeper>> iter = activeShopkeepers.entrySet().iterator();
-			while (iter.hasNext()) {
-				AbstractShopkeeper shopkeeper = iter.next().getValue();
-				boolean update = shopkeeper.check();
-				if (update) {
-					// if the shopkeeper had to be respawned its shop id changed:
-					// this removes the entry which was stored with the old shop id and later adds back the
-					// shopkeeper with its new id
-					readd.add(shopkeeper);
-					iter.remove();
-				}
-			}
-			if (!readd.isEmpty()) {
-				boolean dirty = false;
-				for (AbstractShopkeeper shopkeeper : readd) {
-					if (shopkeeper.isActive()) {
-						this._activateShopkeeper(shopkeeper);
-					}
-					if (shopkeeper.isDirty()) dirty = true;
-				}
-
-				// shop objects might have been removed or respawned, request a save:
-				if (dirty) {
-					this.getShopkeeperStorage().save();
-				}
-			}
-		}, 200, 200); // 10 seconds
-	}
-
-	private void startSpawnVerifierTask() {
-		Bukkit.getScheduler().runTaskTimer(plugin, () -> {
-			int count = 0;
-			boolean dirty = false;
-			for (Entry<ChunkCoords, List<AbstractShopkeeper>> chunkEntry : this.getAllShopkeepersByChunks().entrySet()) {
-				ChunkCoords chunk = chunkEntry.getKey();
-				if (!chunk.isChunkLoaded()) continue;
-
-				List<AbstractShopkeeper> shopkeepers = chunkEntry.getValue();
-				for (AbstractShopkeeper shopkeeper : shopkeepers) {
-					if (!shopkeeper.needsSpawning() || shopkeeper.isActive()) continue;
-
-					// deactivate by old object id:
-					this._deactivateShopkeeper(shopkeeper);
-					// respawn:
-					boolean spawned = shopkeeper.spawn();
-					if (!spawned) {
-						Log.debug("Failed to spawn shopkeeper at " + shopkeeper.getPositionString());
-						continue;
-					}
-					// activate with new object id:
-					this._activateShopkeeper(shopkeeper);
-					count++;
-					if (shopkeeper.isDirty()) dirty = true;
-				}
-			}
-			if (count > 0) {
-				Log.debug("Spawn verifier: " + count + " shopkeepers respawned");
-				if (dirty) {
-					this.getShopkeeperStorage().save();
-				}
-			}
-		}, 600, 1200); // 30,60 seconds
-	}
-
 	// SHOPKEEPER CREATION
 
 	private SKShopkeeperStorage getShopkeeperStorage() {
@@ -172,7 +154,7 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		}
 		// success:
 		shopkeeperStorage.onShopkeeperIdUsed(id);
-		if (shopkeeper.isDirty()) shopkeeperStorage.markDirty();
+		if (shopkeeper.isDirty()) shopkeeperStorage.markDirty(shopkeeper);
 		this.addShopkeeper(shopkeeper, ShopkeeperAddedEvent.Cause.CREATED);
 		return shopkeeper;
 	}
@@ -209,6 +191,204 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		return shopkeeper;
 	}
 
+	/**
+	 * Registers a {@link ShopkeeperStub} for the shopkeeper with the given saved data, instead of loading the
+	 * shopkeeper right away.
+	 * <p>
+	 * The shopkeeper gets loaded once its chunk (or the chunk of its shop chest) gets loaded, or once it gets accessed.
+	 * Shopkeepers which are located in loaded chunks, which do not need to be spawned, or whose data is incomplete are
+	 * not stubbed, but need to be loaded right away.
+	 * 
+	 * @param shopType
+	 *            the shop type
+	 * @param id
+	 *            the shopkeepers id
+	 * @param configSection
+	 *            the config section to load the shopkeeper data from later, does not get modified until then
+	 * @return the stub, or <code>null</code> if the shopkeeper needs to be loaded right away
+	 */
+	public ShopkeeperStub addShopkeeperStub(ShopType<?> shopType, int id, ConfigurationSection configSection) {
+		AbstractShopType<?> abstractShopType = this.validateShopType(shopType);
+		Validate.notNull(configSection, "Missing config section!");
+		Validate.isTrue(id >= 1, "Invalid id '" + id + "': Id has to be positive!");
+		Validate.isTrue(!shopkeepersById.containsKey(id) && !stubsById.containsKey(id),
+				"There is already a shopkeeper existing with this id: " + id);
+
+		UUID uniqueId = ConversionUtils.parseUUID(configSection.getString("uniqueId"));
+		if (uniqueId == null || shopkeepersByUUID.containsKey(uniqueId) || stubsByUUID.containsKey(uniqueId)) return null;
+		String worldName = configSection.getString("world");
+		if (StringUtils.isEmpty(worldName)) return null;
+
+		// shopkeepers which do not need to be spawned are active all the time:
+		ConfigurationSection objectSection = configSection.getConfigurationSection("object");
+		if (objectSection == null) return null; // legacy data
+		AbstractShopObjectType<?> objectType = plugin.getShopObjectTypeRegistry().get(objectSection.getString("type"));
+		if (objectType == null || !objectType.needsSpawning()) return null;
+
+		UUID ownerUUID = null;
+		ChunkCoords chestChunkCoords = null;
+		if (abstractShopType instanceof AbstractPlayerShopType) {
+			ownerUUID = ConversionUtils.parseUUID(configSection.getString("owner uuid"));
+			if (ownerUUID == null || !configSection.isInt("chestx") || !configSection.isInt("chestz")) return null;
+			chestChunkCoords = ChunkCoords.fromBlockPos(worldName, configSection.getInt("chestx"), configSection.getInt("chestz"));
+		}
+
+		ShopkeeperStub stub = new ShopkeeperStub(abstractShopType, id, uniqueId, worldName, configSection.getInt("x"),
+				configSection.getInt("y"), configSection.getInt("z"), ownerUUID, chestChunkCoords, configSection);
+		ChunkCoords chunkCoords = stub.getChunkCoords();
+		if (chunkCoords.isChunkLoaded() || (chestChunkCoords != null && chestChunkCoords.isChunkLoaded())) {
+			return null;
+		}
+
+		stubsById.put(id, stub);
+		stubsByUUID.put(uniqueId, stub);
+		this.addStubToChunk(stub, chunkCoords);
+		if (chestChunkCoords != null && !chestChunkCoords.equals(chunkCoords)) {
+			this.addStubToChunk(stub, chestChunkCoords);
+		}
+		if (ownerUUID != null) {
+			this.addStubToOwner(stub, ownerUUID);
+		}
+		// the stored name is decolorized:
+		this.addToLookupIndex(id, uniqueId, Utils.colorize(stub.getName()));
+		return stub;
+	}
+
+	private void addStubToChunk(ShopkeeperStub stub, ChunkCoords chunkCoords) {
+		WorldShopkeepers worldShopkeepers = this.getOrCreateWorldShopkeepers(chunkCoords.getWorldName());
+		long chunkKey = PositionKeys.chunkKey(chunkCoords.getChunkX(), chunkCoords.getChunkZ());
+		List<ShopkeeperStub> byChunk = worldShopkeepers.stubsByChunk.get(chunkKey);
+		if (byChunk == null) {
+			byChunk = new ArrayList<>(1);
+			worldShopkeepers.stubsByChunk.put(chunkKey, byChunk);
+		}
+		byChunk.add(stub);
+	}
+
+	private void removeStubFromChunk(ShopkeeperStub stub, ChunkCoords chunkCoords) {
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(chunkCoords.getWorldName());
+		if (worldShopkeepers == null) return;
+		long chunkKey = PositionKeys.chunkKey(chunkCoords.getChunkX(), chunkCoords.getChunkZ());
+		List<ShopkeeperStub> byChunk = worldShopkeepers.stubsByChunk.get(chunkKey);
+		if (byChunk == null) return;
+		if (byChunk.remove(stub) && byChunk.isEmpty()) {
+			worldShopkeepers.stubsByChunk.remove(chunkKey);
+			this.removeIfEmpty(chunkCoords.getWorldName(), worldShopkeepers);
+		}
+	}
+
+	private void addStubToOwner(ShopkeeperStub stub, UUID ownerUUID) {
+		List<ShopkeeperStub> byOwner = stubsByOwner.get(ownerUUID);
+		if (byOwner == null) {
+			byOwner = new ArrayList<>(1);
+			stubsByOwner.put(ownerUUID, byOwner);
+		}
+		byOwner.add(stub);
+	}
+
+	private void removeStubFromOwner(ShopkeeperStub stub, UUID ownerUUID) {
+		List<ShopkeeperStub> byOwner = stubsByOwner.get(ownerUUID);
+		if (byOwner == null) return;
+		if (byOwner.remove(stub) && byOwner.isEmpty()) {
+			stubsByOwner.remove(ownerUUID);
+		}
+	}
+
+	/**
+	 * Loads the shopkeeper of the given stub.
+	 * 
+	 * @param stub
+	 *            the shopkeeper stub
+	 * @return the loaded shopkeeper, or <code>null</code> if the stub is no longer registered or the shopkeeper could
+	 *         not be loaded
+	 */
+	public AbstractShopkeeper materializeShopkeeper(ShopkeeperStub stub) {
+		Validate.notNull(stub, "Stub is null!");
+		if (stubsById.get(stub.getId()) != stub) return null; // not registered
+		// unregister the stub first:
+		stubsById.remove(stub.getId());
+		stubsByUUID.remove(stub.getUniqueId());
+		this.removeStubFromChunk(stub, stub.getChunkCoords());
+		if (stub.getChestChunkCoords() != null) {
+			this.removeStubFromChunk(stub, stub.getChestChunkCoords());
+		}
+		if (stub.getOwnerUUID() != null) {
+			this.removeStubFromOwner(stub, stub.getOwnerUUID());
+		}
+		// the loaded shopkeeper gets indexed again once it is added:
+		this.removeFromLookupIndex(stub.getId(), stub.getUniqueId(), Utils.colorize(stub.getName()));
+
+		try {
+			return this.loadShopkeeper(stub.getShopType(), stub.getId(), stub.getData());
+		} catch (ShopkeeperCreateException e) {
+			Log.warning("Failed to load shopkeeper '" + stub.getId() + "': " + e.getMessage());
+		} catch (Exception e) {
+			Log.warning("Failed to load shopkeeper '" + stub.getId() + "'", e);
+		}
+		return null;
+	}
+
+	private void materializeShopkeepersInChunk(String worldName, long chunkKey) {
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers == null) return;
+		List<ShopkeeperStub> byChunk = worldShopkeepers.stubsByChunk.get(chunkKey);
+		if (byChunk == null) return;
+		for (ShopkeeperStub stub : new ArrayList<>(byChunk)) {
+			this.materializeShopkeeper(stub);
+		}
+	}
+
+	private void materializeShopkeepersInWorld(String worldName) {
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers == null) return;
+		for (long chunkKey : worldShopkeepers.stubsByChunk.keys()) {
+			// stubs that are also indexed by the chunk of their shop chest are already loaded then:
+			this.materializeShopkeepersInChunk(worldName, chunkKey);
+		}
+	}
+
+	/**
+	 * Loads the shopkeepers of all stubs of the given owner.
+	 * 
+	 * @param ownerUUID
+	 *            the owner's unique id
+	 */
+	public void materializeShopkeepersOfOwner(UUID ownerUUID) {
+		List<ShopkeeperStub> byOwner = stubsByOwner.get(ownerUUID);
+		if (byOwner == null) return;
+		for (ShopkeeperStub stub : new ArrayList<>(byOwner)) {
+			this.materializeShopkeeper(stub);
+		}
+	}
+
+	/**
+	 * Loads the shopkeepers of all remaining stubs.
+	 */
+	public void materializeAllShopkeepers() {
+		if (stubsById.isEmpty()) return;
+		Log.debug("Loading all " + stubsById.size() + " remaining shopkeeper stubs.");
+		for (ShopkeeperStub stub : new ArrayList<>(stubsById.values())) {
+			this.materializeShopkeeper(stub);
+		}
+	}
+
+	private void clearShopkeeperStubs() {
+		for (ShopkeeperStub stub : stubsById.values()) {
+			this.removeFromLookupIndex(stub.getId(), stub.getUniqueId(), Utils.colorize(stub.getName()));
+		}
+		stubsById.clear();
+		stubsByUUID.clear();
+		Iterator<WorldShopkeepers> worldsIterator = shopkeepersByWorld.values().iterator();
+		while (worldsIterator.hasNext()) {
+			WorldShopkeepers worldShopkeepers = worldsIterator.next();
+			worldShopkeepers.stubsByChunk.clear();
+			if (worldShopkeepers.isEmpty()) {
+				worldsIterator.remove();
+			}
+		}
+		stubsByOwner.clear();
+	}
+
 	private AbstractShopType<?> validateShopType(ShopType<?> shopType) {
 		Validate.notNull(shopType, "Missing shop type!");
 		Validate.isTrue(shopType instanceof AbstractShopType,
@@ -229,6 +409,15 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		ChunkCoords chunkCoords = shopkeeper.getChunkCoords();
 		this.addShopkeeperToChunk(shopkeeper, chunkCoords);
 
+		// add shopkeeper to owner:
+		if (shopkeeper instanceof AbstractPlayerShopkeeper) {
+			AbstractPlayerShopkeeper playerShopkeeper = (AbstractPlayerShopkeeper) shopkeeper;
+			this.addShopkeeperToOwner(playerShopkeeper, playerShopkeeper.getOwnerUUID());
+		}
+
+		// add shopkeeper to lookup index:
+		this.addToLookupIndex(shopkeeper.getId(), shopkeeper.getUniqueId(), shopkeeper.getName());
+
 		// inform shopkeeper:
 		shopkeeper.informAdded(cause);
 
@@ -240,8 +429,14 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 			// activate shopkeeper once at registration:
 			this._activateShopkeeper(shopkeeper);
 		} else if (chunkCoords.isChunkLoaded()) {
-			// activate shopkeeper due to loaded chunk:
-			this.activateShopkeeper(shopkeeper);
+			if (cause == ShopkeeperAddedEvent.Cause.CREATED) {
+				// activate shopkeeper due to loaded chunk:
+				this.activateShopkeeper(shopkeeper);
+			} else {
+				// loaded shopkeepers get activated together with the other shopkeepers of their chunk:
+				World world = Bukkit.getWorld(chunkCoords.getWorldName());
+				activationQueue.add(world.getChunkAt(chunkCoords.getChunkX(), chunkCoords.getChunkZ()), false);
+			}
 		}
 	}
 
@@ -265,8 +460,17 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		ChunkCoords chunkCoords = shopkeeper.getChunkCoords();
 		this.removeShopkeeperFromChunk(shopkeeper, chunkCoords);
 
+		// remove shopkeeper from owner:
+		if (shopkeeper instanceof AbstractPlayerShopkeeper) {
+			AbstractPlayerShopkeeper playerShopkeeper = (AbstractPlayerShopkeeper) shopkeeper;
+			this.removeShopkeeperFromOwner(playerShopkeeper, playerShopkeeper.getOwnerUUID());
+		}
+
+		// remove shopkeeper from lookup index:
+		this.removeFromLookupIndex(shopkeeper.getId(), shopkeeper.getUniqueId(), shopkeeper.getName());
+
 		// remove shopkeeper from storage:
-		this.getShopkeeperStorage().clearShopkeeperData(shopkeeper);
+		this.getShopkeeperStorage().clearShopkeeperData(shopkeeper, cause == ShopkeeperRemoveEvent.Cause.DELETE);
 	}
 
 	private void unloadShopkeeper(AbstractShopkeeper shopkeeper) {
@@ -275,7 +479,9 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	}
 
 	public void unloadAllShopkeepers() {
-		for (AbstractShopkeeper shopkeeper : new ArrayList<>(this.getAllShopkeepers())) {
+		// shopkeeper stubs have not been loaded yet and can be discarded:
+		this.clearShopkeeperStubs();
+		for (AbstractShopkeeper shopkeeper : new ArrayList<>(this.getMaterializedShopkeepers())) {
 			this.unloadShopkeeper(shopkeeper);
 		}
 	}
@@ -292,22 +498,58 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		}
 	}
 
+	private static final class WorldShopkeepers {
+
+		private final LongObjectHashMap<ChunkShopkeepers> shopkeepersByChunk = new LongObjectHashMap<>();
+		// also contains the stubs by the chunks of their shop chests:
+		private final LongObjectHashMap<List<ShopkeeperStub>> stubsByChunk = new LongObjectHashMap<>();
+
+		boolean isEmpty() {
+			return shopkeepersByChunk.isEmpty() && stubsByChunk.isEmpty();
+		}
+	}
+
+	private static final class ChunkShopkeepers {
+
+		private final List<AbstractShopkeeper> shopkeepers = new ArrayList<>();
+		private final List<AbstractShopkeeper> shopkeepersView = Collections.unmodifiableList(shopkeepers);
+	}
+
+	private WorldShopkeepers getOrCreateWorldShopkeepers(String worldName) {
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers == null) {
+			worldShopkeepers = new WorldShopkeepers();
+			shopkeepersByWorld.put(worldName, worldShopkeepers);
+		}
+		return worldShopkeepers;
+	}
+
+	private void removeIfEmpty(String worldName, WorldShopkeepers worldShopkeepers) {
+		if (worldShopkeepers.isEmpty()) {
+			shopkeepersByWorld.remove(worldName);
+		}
+	}
+
 	private void addShopkeeperToChunk(AbstractShopkeeper shopkeeper, ChunkCoords chunkCoords) {
-		List<AbstractShopkeeper> byChunk = shopkeepersByChunk.get(chunkCoords);
+		WorldShopkeepers worldShopkeepers = this.getOrCreateWorldShopkeepers(chunkCoords.getWorldName());
+		long chunkKey = PositionKeys.chunkKey(chunkCoords.getChunkX(), chunkCoords.getChunkZ());
+		ChunkShopkeepers byChunk = worldShopkeepers.shopkeepersByChunk.get(chunkKey);
 		if (byChunk == null) {
-			byChunk = new ArrayList<>();
-			shopkeepersByChunk.put(chunkCoords, byChunk);
-			shopkeeperViewsByChunk.put(chunkCoords, Collections.unmodifiableList(byChunk));
+			byChunk = new ChunkShopkeepers();
+			worldShopkeepers.shopkeepersByChunk.put(chunkKey, byChunk);
 		}
-		byChunk.add(shopkeeper);
+		byChunk.shopkeepers.add(shopkeeper);
 	}
 
 	private void removeShopkeeperFromChunk(AbstractShopkeeper shopkeeper, ChunkCoords chunkCoords) {
-		List<AbstractShopkeeper> byChunk = shopkeepersByChunk.get(chunkCoords);
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(chunkCoords.getWorldName());
+		if (worldShopkeepers == null) return;
+		long chunkKey = PositionKeys.chunkKey(chunkCoords.getChunkX(), chunkCoords.getChunkZ());
+		ChunkShopkeepers byChunk = worldShopkeepers.shopkeepersByChunk.get(chunkKey);
 		if (byChunk == null) return;
-		if (byChunk.remove(shopkeeper) && byChunk.isEmpty()) {
-			shopkeepersByChunk.remove(chunkCoords);
-			shopkeeperViewsByChunk.remove(chunkCoords);
+		if (byChunk.shopkeepers.remove(shopkeeper) && byChunk.shopkeepers.isEmpty()) {
+			worldShopkeepers.shopkeepersByChunk.remove(chunkKey);
+			this.removeIfEmpty(chunkCoords.getWorldName(), worldShopkeepers);
 		}
 	}
 
@@ -329,6 +571,7 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		} else {
 			// activate shopkeeper:
 			activeShopkeepers.put(objectId, shopkeeper);
+			this.addActiveObjectKey(objectId, shopkeeper);
 			return true;
 		}
 	}
@@ -343,11 +586,81 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		assert shopkeeper != null;
 		if (objectId != null && activeShopkeepers.get(objectId) == shopkeeper) {
 			activeShopkeepers.remove(objectId);
+			this.removeActiveObjectKey(objectId, shopkeeper);
 			return true;
 		}
 		return false;
 	}
 
+	private static final class ActiveObjectKey {
+
+		// null for block shop objects:
+		private final UUID entityUniqueId;
+		// null for entity shop objects:
+		private final String worldName;
+		private final long blockKey;
+
+		ActiveObjectKey(UUID entityUniqueId) {
+			this.entityUniqueId = entityUniqueId;
+			this.worldName = null;
+			this.blockKey = 0L;
+		}
+
+		ActiveObjectKey(String worldName, long blockKey) {
+			this.entityUniqueId = null;
+			this.worldName = worldName;
+			this.blockKey = blockKey;
+		}
+	}
+
+	private void addActiveObjectKey(String objectId, AbstractShopkeeper shopkeeper) {
+		AbstractShopObject shopObject = shopkeeper.getShopObject();
+		ActiveObjectKey objectKey = null;
+		if (shopObject instanceof AbstractEntityShopObject) {
+			UUID entityUniqueId = ((AbstractEntityShopObject) shopObject).getObjectUniqueId();
+			if (entityUniqueId != null && !activeShopkeepersByEntity.containsKey(entityUniqueId)) {
+				objectKey = new ActiveObjectKey(entityUniqueId);
+				activeShopkeepersByEntity.put(entityUniqueId, shopkeeper);
+			}
+		} else if (shopObject instanceof AbstractBlockShopObject) {
+			Block block = ((AbstractBlockShopObject) shopObject).getBlock();
+			if (block != null) {
+				String worldName = block.getWorld().getName();
+				long blockKey = PositionKeys.blockKey(block.getX(), block.getY(), block.getZ());
+				LongObjectHashMap<AbstractShopkeeper> byBlock = activeShopkeepersByBlock.get(worldName);
+				if (byBlock == null) {
+					byBlock = new LongObjectHashMap<>();
+					activeShopkeepersByBlock.put(worldName, byBlock);
+				}
+				if (!byBlock.containsKey(blockKey)) {
+					objectKey = new ActiveObjectKey(worldName, blockKey);
+					byBlock.put(blockKey, shopkeeper);
+				}
+			}
+		}
+		if (objectKey != null) {
+			activeObjectKeys.put(objectId, objectKey);
+		}
+	}
+
+	private void removeActiveObjectKey(String objectId, AbstractShopkeeper shopkeeper) {
+		ActiveObjectKey objectKey = activeObjectKeys.remove(objectId);
+		if (objectKey == null) return;
+		if (objectKey.entityUniqueId != null) {
+			if (activeShopkeepersByEntity.get(objectKey.entityUniqueId) == shopkeeper) {
+				activeShopkeepersByEntity.remove(objectKey.entityUniqueId);
+			}
+		} else {
+			LongObjectHashMap<AbstractShopkeeper> byBlock = activeShopkeepersByBlock.get(objectKey.worldName);
+			if (byBlock != null && byBlock.get(objectKey.blockKey) == shopkeeper) {
+				byBlock.remove(objectKey.blockKey);
+				if (byBlock.isEmpty()) {
+					activeShopkeepersByBlock.remove(objectKey.worldName);
+				}
+			}
+		}
+	}
+
 	private void activateShopkeeper(AbstractShopkeeper shopkeeper) {
 		assert shopkeeper != null;
 		if (!shopkeeper.needsSpawning()) return;
@@ -364,6 +677,7 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 				activate = true;
 			} else {
 				Log.warning("Failed to spawn shopkeeper at " + shopkeeper.getPositionString());
+				spawnVerifier.mark(shopkeeper, ShopkeeperSpawnVerifier.RETRY_DELAY);
 			}
 		} else if (this.getActiveShopkeeper(shopkeeper.getObjectId()) == null) {
 			// already active but missing activation, activate with current object id:
@@ -392,6 +706,80 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		}
 	}
 
+	// SHOPKEEPER CHECKS
+
+	/**
+	 * Requests a check of the given shopkeeper (see {@link AbstractShopkeeper#check()}) during the next tick.
+	 * <p>
+	 * This can be used if the shopkeeper's shop object might have been displaced or modified. Shopkeepers that are not
+	 * active are ignored.
+	 * 
+	 * @param shopkeeper
+	 *            the shopkeeper
+	 */
+	public void requestShopkeeperCheck(AbstractShopkeeper shopkeeper) {
+		Validate.notNull(shopkeeper, "Shopkeeper is null!");
+		String objectId = shopkeeper.getObjectId();
+		if (objectId == null || activeShopkeepers.get(objectId) != shopkeeper) return;
+		shopkeeperChecker.requestCheck(objectId);
+	}
+
+	// gets a copy of the object ids of the active shopkeepers:
+	List<String> getActiveObjectIds() {
+		return new ArrayList<>(activeShopkeepers.keySet());
+	}
+
+	// checks the shopkeeper that is active with the given object id:
+	// returns true if the shopkeeper got updated and is dirty
+	boolean checkActiveShopkeeper(String objectId) {
+		AbstractShopkeeper shopkeeper = activeShopkeepers.get(objectId);
+		if (shopkeeper == null) return false; // no longer active
+		boolean update = shopkeeper.check();
+		if (!update) return false;
+
+		// if the shopkeeper had to be respawned its shop id changed:
+		// this removes the entry which was stored with the old shop id and adds back the shopkeeper with its new id
+		this._deactivateShopkeeper(shopkeeper, objectId);
+		if (shopkeeper.isActive()) {
+			this._activateShopkeeper(shopkeeper);
+		} else {
+			spawnVerifier.mark(shopkeeper, ShopkeeperSpawnVerifier.RETRY_DELAY);
+		}
+		return shopkeeper.isDirty();
+	}
+
+	// SPAWN VERIFICATION
+
+	/**
+	 * Requests a verification of the chunk of the given shopkeeper, since its shop object might no longer be active
+	 * (ex. because its entity died).
+	 * <p>
+	 * This has no effect if the spawn verifier is disabled (see {@link Settings#enableSpawnVerifier}).
+	 * 
+	 * @param shopkeeper
+	 *            the shopkeeper
+	 */
+	public void requestSpawnVerification(AbstractShopkeeper shopkeeper) {
+		Validate.notNull(shopkeeper, "Shopkeeper is null!");
+		spawnVerifier.mark(shopkeeper, ShopkeeperSpawnVerifier.VERIFY_DELAY);
+	}
+
+	// gets called by the spawn verifier: returns true if the shopkeeper got spawned
+	boolean respawnShopkeeper(AbstractShopkeeper shopkeeper) {
+		assert shopkeeper != null;
+		// deactivate by old object id:
+		this._deactivateShopkeeper(shopkeeper);
+		// respawn:
+		boolean spawned = shopkeeper.spawn();
+		if (!spawned) {
+			Log.debug("Failed to spawn shopkeeper at " + shopkeeper.getPositionString());
+			return false;
+		}
+		// activate with new object id:
+		this._activateShopkeeper(shopkeeper);
+		return true;
+	}
+
 	// this can be used if the shopkeeper's object id has changed for some reason
 	public void onShopkeeperObjectIdChanged(AbstractShopkeeper shopkeeper, String oldObjectId) {
 		// deactivate by old object id:
@@ -400,6 +788,161 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		this._activateShopkeeper(shopkeeper);
 	}
 
+	// SHOPKEEPERS BY OWNER
+
+	private void addShopkeeperToOwner(AbstractPlayerShopkeeper shopkeeper, UUID ownerUUID) {
+		List<AbstractPlayerShopkeeper> byOwner = shopkeepersByOwner.get(ownerUUID);
+		if (byOwner == null) {
+			byOwner = new ArrayList<>(1);
+			shopkeepersByOwner.put(ownerUUID, byOwner);
+		}
+		byOwner.add(shopkeeper);
+	}
+
+	private void removeShopkeeperFromOwner(AbstractPlayerShopkeeper shopkeeper, UUID ownerUUID) {
+		List<AbstractPlayerShopkeeper> byOwner = shopkeepersByOwner.get(ownerUUID);
+		if (byOwner == null) return;
+		if (byOwner.remove(shopkeeper) && byOwner.isEmpty()) {
+			shopkeepersByOwner.remove(ownerUUID);
+		}
+	}
+
+	public void onShopkeeperOwnerChanged(AbstractPlayerShopkeeper shopkeeper, UUID oldOwnerUUID) {
+		assert oldOwnerUUID != null;
+		UUID newOwnerUUID = shopkeeper.getOwnerUUID();
+		if (!oldOwnerUUID.equals(newOwnerUUID)) {
+			// remove from old owner:
+			this.removeShopkeeperFromOwner(shopkeeper, oldOwnerUUID);
+
+			// add to new owner:
+			this.addShopkeeperToOwner(shopkeeper, newOwnerUUID);
+		}
+	}
+
+	// SHOPKEEPERS BY NAME
+
+	// returns null if the name is empty
+	private static String normalizeShopName(String shopName) {
+		if (shopName == null) return null;
+		String normalizedName = StringUtils.normalize(Utils.stripColor(shopName));
+		return (normalizedName.isEmpty() ? null : normalizedName);
+	}
+
+	private void addToLookupIndex(int id, UUID uniqueId, String shopName) {
+		Integer shopkeeperId = id;
+		String normalizedName = normalizeShopName(shopName);
+		if (normalizedName != null) {
+			shopkeeperIdsByName.add(normalizedName, shopkeeperId);
+		}
+		shopkeeperIdsById.add(String.valueOf(id), shopkeeperId);
+		shopkeeperIdsByUniqueId.add(uniqueId.toString(), shopkeeperId);
+	}
+
+	private void removeFromLookupIndex(int id, UUID uniqueId, String shopName) {
+		Integer shopkeeperId = id;
+		String normalizedName = normalizeShopName(shopName);
+		if (normalizedName != null) {
+			shopkeeperIdsByName.remove(normalizedName, shopkeeperId);
+		}
+		shopkeeperIdsById.remove(String.valueOf(id), shopkeeperId);
+		shopkeeperIdsByUniqueId.remove(uniqueId.toString(), shopkeeperId);
+	}
+
+	public void onShopkeeperNameChanged(AbstractShopkeeper shopkeeper, String oldName) {
+		String oldNormalizedName = normalizeShopName(oldName);
+		String newNormalizedName = normalizeShopName(shopkeeper.getName());
+		if (oldNormalizedName == null ? newNormalizedName == null : oldNormalizedName.equals(newNormalizedName)) return;
+		Integer shopkeeperId = shopkeeper.getId();
+		if (oldNormalizedName != null) {
+			shopkeeperIdsByName.remove(oldNormalizedName, shopkeeperId);
+		}
+		if (newNormalizedName != null) {
+			shopkeeperIdsByName.add(newNormalizedName, shopkeeperId);
+		}
+	}
+
+	/**
+	 * Gets the shopkeepers whose normalized name starts with the given prefix.
+	 * <p>
+	 * Shopkeepers which have not been loaded yet only get loaded if they are needed to test the filter.
+	 * 
+	 * @param namePrefix
+	 *            the name prefix, gets normalized, an empty prefix matches all shopkeepers with a name
+	 * @param filter
+	 *            the filter, or <code>null</code> to accept all shopkeepers
+	 * @param limit
+	 *            the maximum number of shopkeepers to return
+	 * @return the matching shopkeepers, ordered by their normalized names
+	 */
+	public List<AbstractShopkeeper> getShopkeepersByNamePrefix(String namePrefix, Predicate<? super AbstractShopkeeper> filter, int limit) {
+		Validate.notNull(namePrefix, "Name prefix is null!");
+		namePrefix = StringUtils.normalize(Utils.stripColor(namePrefix));
+		return this.getShopkeepersByPrefix(shopkeeperIdsByName, namePrefix, filter, limit);
+	}
+
+	/**
+	 * Gets the shopkeepers whose id starts with the given prefix.
+	 * 
+	 * @param idPrefix
+	 *            the id prefix
+	 * @param filter
+	 *            the filter, or <code>null</code> to accept all shopkeepers
+	 * @param limit
+	 *            the maximum number of shopkeepers to return
+	 * @return the matching shopkeepers
+	 * @see #getShopkeepersByNamePrefix(String, Predicate, int)
+	 */
+	public List<AbstractShopkeeper> getShopkeepersByIdPrefix(String idPrefix, Predicate<? super AbstractShopkeeper> filter, int limit) {
+		Validate.notNull(idPrefix, "Id prefix is null!");
+		return this.getShopkeepersByPrefix(shopkeeperIdsById, idPrefix, filter, limit);
+	}
+
+	/**
+	 * Gets the shopkeepers whose unique id starts with the given (lower case) prefix.
+	 * 
+	 * @param uniqueIdPrefix
+	 *            the unique id prefix
+	 * @param filter
+	 *            the filter, or <code>null</code> to accept all shopkeepers
+	 * @param limit
+	 *            the maximum number of shopkeepers to return
+	 * @return the matching shopkeepers
+	 * @see #getShopkeepersByNamePrefix(String, Predicate, int)
+	 */
+	public List<AbstractShopkeeper> getShopkeepersByUniqueIdPrefix(String uniqueIdPrefix, Predicate<? super AbstractShopkeeper> filter, int limit) {
+		Validate.notNull(uniqueIdPrefix, "Unique id prefix is null!");
+		return this.getShopkeepersByPrefix(shopkeeperIdsByUniqueId, uniqueIdPrefix, filter, limit);
+	}
+
+	private List<AbstractShopkeeper> getShopkeepersByPrefix(PrefixTrie<Integer> index, String prefix, Predicate<? super AbstractShopkeeper> filter,
+			int limit) {
+		List<AbstractShopkeeper> shopkeepers = new ArrayList<>();
+		if (limit <= 0) return shopkeepers;
+		// loading shopkeepers modifies the index: stubs get only loaded after the index has been visited, and only if
+		// the loaded shopkeepers do not already reach the limit
+		List<ShopkeeperStub> stubs = new ArrayList<>();
+		index.forEachWithPrefix(prefix, (shopkeeperId) -> {
+			AbstractShopkeeper shopkeeper = shopkeepersById.get(shopkeeperId);
+			if (shopkeeper == null) {
+				ShopkeeperStub stub = stubsById.get(shopkeeperId);
+				if (stub != null) stubs.add(stub);
+				return true;
+			}
+			if (filter == null || filter.test(shopkeeper)) {
+				shopkeepers.add(shopkeeper);
+			}
+			return (shopkeepers.size() < limit);
+		});
+		for (ShopkeeperStub stub : stubs) {
+			if (shopkeepers.size() >= limit) break;
+			AbstractShopkeeper shopkeeper = this.materializeShopkeeper(stub);
+			if (shopkeeper != null && (filter == null || filter.test(shopkeeper))) {
+				shopkeepers.add(shopkeeper);
+			}
+		}
+		return shopkeepers;
+	}
+
 	// SHOPKEEPERS BY CHUNK
 
 	public void onShopkeeperMove(AbstractShopkeeper shopkeeper, ChunkCoords oldChunk) {
@@ -415,52 +958,91 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	}
 
 	/**
-	 * Loads (activates) all shopkeepers in the given chunk.
+	 * Queues the loading (activation) of all shopkeepers in the given chunk.
 	 * 
 	 * @param chunk
 	 *            the chunk
-	 * @return the number of shops in the affected chunk
+	 * @see ShopkeeperActivationQueue
 	 */
-	public int loadShopkeepersInChunk(Chunk chunk) {
-		return this.loadShopkeepersInChunk(chunk, false);
+	public void loadShopkeepersInChunk(Chunk chunk) {
+		this.loadShopkeepersInChunk(chunk, false);
 	}
 
 	/**
-	 * Loads (activates) all shopkeepers in the given chunk.
+	 * Queues the loading (activation) of all shopkeepers in the given chunk.
 	 * 
 	 * @param chunk
 	 *            the chunk
 	 * @param worldSaving
 	 *            whether the shopkeepers get loaded due to the world saving finished
-	 * @return the number of shops in the affected chunk
+	 * @see ShopkeeperActivationQueue
 	 */
-	public int loadShopkeepersInChunk(Chunk chunk, boolean worldSaving) {
+	public void loadShopkeepersInChunk(Chunk chunk, boolean worldSaving) {
+		assert chunk != null;
+		// skip chunks without shopkeepers (shopkeepers that get added later get activated by addShopkeeper):
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(chunk.getWorld().getName());
+		if (worldShopkeepers == null) return;
+		long chunkKey = PositionKeys.chunkKey(chunk.getX(), chunk.getZ());
+		if (!worldShopkeepers.shopkeepersByChunk.containsKey(chunkKey) && !worldShopkeepers.stubsByChunk.containsKey(chunkKey)) {
+			return;
+		}
+		activationQueue.add(chunk, worldSaving);
+	}
+
+	/**
+	 * Gets the number of chunks whose shopkeepers are queued to be activated.
+	 * 
+	 * @return the number of queued chunks
+	 */
+	public int getQueuedActivationChunksCount() {
+		return activationQueue.getQueuedChunksCount();
+	}
+
+	/**
+	 * Gets the number of chunks that are marked to be verified by the spawn verifier.
+	 * 
+	 * @return the number of marked chunks
+	 */
+	public int getSpawnVerificationChunksCount() {
+		return spawnVerifier.getMarkedChunksCount();
+	}
+
+	// gets called by the activation queue: informs the shopkeepers in the given chunk about the chunk load, and
+	// returns the shopkeepers to activate
+	List<AbstractShopkeeper> prepareShopkeepersInChunk(Chunk chunk, boolean worldSaving) {
 		assert chunk != null;
-		int affectedShops = 0;
 		List<AbstractShopkeeper> shopkeepers = this.getShopkeepersInChunk(chunk);
-		if (!shopkeepers.isEmpty()) {
-			affectedShops = shopkeepers.size();
-			Log.debug("Loading " + affectedShops + " shopkeepers in chunk "
-					+ chunk.getWorld().getName() + "," + chunk.getX() + "," + chunk.getZ()
-					+ (worldSaving ? " (world saving finished)" : ""));
-			boolean dirty = false;
-			for (AbstractShopkeeper shopkeeper : shopkeepers) {
-				// inform shopkeeper about chunk load:
-				shopkeeper.onChunkLoad(worldSaving);
+		if (shopkeepers.isEmpty()) return Collections.emptyList();
 
-				// activate:
-				this.activateShopkeeper(shopkeeper);
-				if (shopkeeper.isDirty()) {
-					dirty = true;
-				}
+		Log.debug("Loading " + shopkeepers.size() + " shopkeepers in chunk "
+				+ chunk.getWorld().getName() + "," + chunk.getX() + "," + chunk.getZ()
+				+ (worldSaving ? " (world saving finished)" : ""));
+		// copy: the shopkeepers might get moved or removed until they get activated
+		shopkeepers = new ArrayList<>(shopkeepers);
+		boolean dirty = false;
+		for (AbstractShopkeeper shopkeeper : shopkeepers) {
+			// inform shopkeeper about chunk load:
+			shopkeeper.onChunkLoad(worldSaving);
+			if (shopkeeper.isDirty()) {
+				dirty = true;
 			}
+		}
 
-			if (dirty) {
-				// save delayed:
-				plugin.getShopkeeperStorage().saveDelayed();
-			}
+		if (dirty) {
+			// save delayed:
+			plugin.getShopkeeperStorage().saveDelayed();
 		}
-		return affectedShops;
+		return shopkeepers;
+	}
+
+	// gets called by the activation queue: returns true if the shopkeeper had to be spawned
+	boolean activateQueuedShopkeeper(AbstractShopkeeper shopkeeper) {
+		assert shopkeeper != null;
+		// the shopkeeper might have been removed or moved in the meantime:
+		if (!shopkeeper.isValid() || !shopkeeper.needsSpawning() || !shopkeeper.getChunkCoords().isChunkLoaded()) return false;
+		boolean spawning = !shopkeeper.isActive();
+		this.activateShopkeeper(shopkeeper);
+		return spawning;
 	}
 
 	/**
@@ -485,6 +1067,9 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	 */
 	public int unloadShopkeepersInChunk(Chunk chunk, boolean worldSaving) {
 		assert chunk != null;
+		// skip any pending activation of the shopkeepers in that chunk:
+		activationQueue.remove(chunk);
+		spawnVerifier.unmark(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
 		int affectedShops = 0;
 		List<AbstractShopkeeper> shopkeepers = this.getShopkeepersInChunk(chunk);
 		if (!shopkeepers.isEmpty()) {
@@ -511,34 +1096,55 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	}
 
 	/**
-	 * Loads all shopkeepers in the given world.
+	 * Queues the loading (activation) of all shopkeepers in the loaded chunks of the given world.
 	 * 
 	 * @param world
 	 *            the world
-	 * @return the number of loaded shopkeepers
+	 * @return the number of queued chunks
 	 */
 	public int loadShopkeepersInWorld(World world) {
 		return this.loadShopkeepersInWorld(world, false);
 	}
 
 	/**
-	 * Loads all shopkeepers in the given world.
+	 * Queues the loading (activation) of all shopkeepers in the loaded chunks of the given world.
 	 * 
 	 * @param world
 	 *            the world
 	 * @param worldSaving
 	 *            whether the shopkeepers get loaded due to the world saving finished
-	 * @return the number of loaded shopkeepers
+	 * @return the number of queued chunks
 	 */
 	public int loadShopkeepersInWorld(World world, boolean worldSaving) {
 		assert world != null;
-		int affectedShops = 0;
-		for (Chunk chunk : world.getLoadedChunks()) {
-			affectedShops += this.loadShopkeepersInChunk(chunk, worldSaving);
+		int queuedChunks = 0;
+		// only checks the chunks containing shopkeepers or stubs:
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(world.getName());
+		if (worldShopkeepers != null) {
+			for (long chunkKey : worldShopkeepers.shopkeepersByChunk.keys()) {
+				if (this.queueChunkActivation(world, chunkKey, worldSaving)) {
+					queuedChunks++;
+				}
+			}
+			for (long chunkKey : worldShopkeepers.stubsByChunk.keys()) {
+				// skip chunks that also contain loaded shopkeepers, these have already been queued:
+				if (worldShopkeepers.shopkeepersByChunk.containsKey(chunkKey)) continue;
+				if (this.queueChunkActivation(world, chunkKey, worldSaving)) {
+					queuedChunks++;
+				}
+			}
 		}
-		Log.debug("Loaded " + affectedShops + " shopkeepers in world " + world.getName()
+		Log.debug("Queued the loading of shopkeepers in " + queuedChunks + " chunks in world " + world.getName()
 				+ (worldSaving ? " (world saving finished)" : ""));
-		return affectedShops;
+		return queuedChunks;
+	}
+
+	private boolean queueChunkActivation(World world, long chunkKey, boolean worldSaving) {
+		int chunkX = PositionKeys.getChunkX(chunkKey);
+		int chunkZ = PositionKeys.getChunkZ(chunkKey);
+		if (!world.isChunkLoaded(chunkX, chunkZ)) return false;
+		this.loadShopkeepersInChunk(world.getChunkAt(chunkX, chunkZ), worldSaving);
+		return true;
 	}
 
 	public void loadShopkeepersInAllWorlds() {
@@ -570,9 +1176,19 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	 */
 	public int unloadShopkeepersInWorld(World world, boolean worldSaving) {
 		assert world != null;
+		// skip any pending activations of shopkeepers in that world:
+		activationQueue.removeWorld(world.getName());
+		spawnVerifier.unmarkWorld(world.getName());
 		int affectedShops = 0;
-		for (Chunk chunk : world.getLoadedChunks()) {
-			affectedShops += this.unloadShopkeepersInChunk(chunk, worldSaving);
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(world.getName());
+		if (worldShopkeepers != null) {
+			// only checks the chunks containing shopkeepers (stubs are never active):
+			for (long chunkKey : worldShopkeepers.shopkeepersByChunk.keys()) {
+				int chunkX = PositionKeys.getChunkX(chunkKey);
+				int chunkZ = PositionKeys.getChunkZ(chunkKey);
+				if (!world.isChunkLoaded(chunkX, chunkZ)) continue;
+				affectedShops += this.unloadShopkeepersInChunk(world.getChunkAt(chunkX, chunkZ), worldSaving);
+			}
 		}
 		Log.debug("Unloaded " + affectedShops + " shopkeepers in world " + world.getName()
 				+ (worldSaving ? " (world saving)" : ""));
@@ -583,25 +1199,58 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 
 	@Override
 	public AbstractShopkeeper getShopkeeperByUniqueId(UUID shopkeeperUUID) {
+		AbstractShopkeeper shopkeeper = shopkeepersByUUID.get(shopkeeperUUID);
+		if (shopkeeper == null) {
+			ShopkeeperStub stub = stubsByUUID.get(shopkeeperUUID);
+			if (stub != null) {
+				shopkeeper = this.materializeShopkeeper(stub);
+			}
+		}
+		return shopkeeper;
+	}
+
+	/**
+	 * Checks if there is a shopkeeper with the given unique id, without loading it if it has not been loaded yet.
+	 * 
+	 * @param shopkeeperUUID
+	 *            the shopkeeper's unique id
+	 * @return <code>true</code> if there is such a shopkeeper
+	 */
+	public boolean containsShopkeeper(UUID shopkeeperUUID) {
+		return shopkeepersByUUID.containsKey(shopkeeperUUID) || stubsByUUID.containsKey(shopkeeperUUID);
+	}
+
+	/**
+	 * Gets the shopkeeper with the given unique id, if it has already been loaded.
+	 * 
+	 * @param shopkeeperUUID
+	 *            the shopkeeper's unique id
+	 * @return the shopkeeper, or <code>null</code> if there is no such shopkeeper, or if it has not been loaded yet
+	 */
+	public AbstractShopkeeper getMaterializedShopkeeper(UUID shopkeeperUUID) {
 		return shopkeepersByUUID.get(shopkeeperUUID);
 	}
 
 	@Override
 	public AbstractShopkeeper getShopkeeperById(int shopkeeperId) {
-		return shopkeepersById.get(shopkeeperId);
+		AbstractShopkeeper shopkeeper = shopkeepersById.get(shopkeeperId);
+		if (shopkeeper == null) {
+			ShopkeeperStub stub = stubsById.get(shopkeeperId);
+			if (stub != null) {
+				shopkeeper = this.materializeShopkeeper(stub);
+			}
+		}
+		return shopkeeper;
 	}
 
 	@Override
 	public AbstractShopkeeper getShopkeeperByName(String shopName) {
-		if (shopName == null) return null;
-		shopName = Utils.stripColor(shopName);
-		shopName = StringUtils.normalize(shopName);
-		for (AbstractShopkeeper shopkeeper : this.getAllShopkeepers()) {
-			String shopkeeperName = shopkeeper.getName();
-			if (shopkeeperName == null) continue;
-			shopkeeperName = Utils.stripColor(shopkeeperName);
-			shopkeeperName = StringUtils.normalize(shopkeeperName);
-			if (shopkeeperName.equals(shopName)) {
+		String normalizedName = normalizeShopName(shopName);
+		if (normalizedName == null) return null;
+		// copy: loading a shopkeeper modifies the index
+		for (Integer shopkeeperId : new ArrayList<>(shopkeeperIdsByName.get(normalizedName))) {
+			AbstractShopkeeper shopkeeper = this.getShopkeeperById(shopkeeperId);
+			if (shopkeeper != null) {
 				return shopkeeper;
 			}
 		}
@@ -616,12 +1265,13 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	@Override
 	public AbstractShopkeeper getShopkeeperByEntity(Entity entity) {
 		if (entity == null) return null;
-		for (ShopObjectType<?> shopObjectType : plugin.getShopObjectTypeRegistry().getRegisteredTypes()) {
-			if (shopObjectType instanceof AbstractEntityShopObjectType) {
-				String objectId = ((AbstractEntityShopObjectType<?>) shopObjectType).createObjectId(entity);
-				AbstractShopkeeper shopkeeper = this.getActiveShopkeeper(objectId);
-				if (shopkeeper != null) return shopkeeper;
-			}
+		AbstractShopkeeper shopkeeper = activeShopkeepersByEntity.get(entity.getUniqueId());
+		if (shopkeeper != null) return shopkeeper;
+		// citizens shopkeepers are identified by the unique ids of their npcs, which might differ from the unique ids
+		// of their entities:
+		UUID npcUniqueId = plugin.getCitizensShops().getNPCUniqueId(entity);
+		if (npcUniqueId != null) {
+			return activeShopkeepersByEntity.get(npcUniqueId);
 		}
 		return null;
 	}
@@ -634,14 +1284,9 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 	@Override
 	public AbstractShopkeeper getShopkeeperByBlock(Block block) {
 		if (block == null) return null;
-		for (ShopObjectType<?> shopObjectType : plugin.getShopObjectTypeRegistry().getRegisteredTypes()) {
-			if (shopObjectType instanceof AbstractBlockShopObjectType) {
-				String objectId = ((AbstractBlockShopObjectType<?>) shopObjectType).createObjectId(block);
-				AbstractShopkeeper shopkeeper = this.getActiveShopkeeper(objectId);
-				if (shopkeeper != null) return shopkeeper;
-			}
-		}
-		return null;
+		LongObjectHashMap<AbstractShopkeeper> byBlock = activeShopkeepersByBlock.get(block.getWorld().getName());
+		if (byBlock == null) return null;
+		return byBlock.get(PositionKeys.blockKey(block.getX(), block.getY(), block.getZ()));
 	}
 
 	@Override
@@ -651,12 +1296,105 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 
 	@Override
 	public Collection<AbstractShopkeeper> getAllShopkeepers() {
+		this.materializeAllShopkeepers();
 		return allShopkeepersView;
 	}
 
+	/**
+	 * Gets all shopkeepers which have already been loaded, without loading the shopkeepers of any remaining
+	 * {@link ShopkeeperStub stubs}.
+	 * 
+	 * @return an unmodifiable view on the loaded shopkeepers
+	 */
+	public Collection<AbstractShopkeeper> getMaterializedShopkeepers() {
+		return allShopkeepersView;
+	}
+
+	/**
+	 * Gets the names of all worlds that contain shopkeepers, including not yet loaded shopkeepers.
+	 * 
+	 * @return an unmodifiable view on the world names
+	 */
+	public Set<String> getWorldsWithShopkeepers() {
+		return Collections.unmodifiableSet(shopkeepersByWorld.keySet());
+	}
+
+	/**
+	 * Gets the number of chunks that contain loaded shopkeepers.
+	 * 
+	 * @return the number of chunks with loaded shopkeepers
+	 */
+	public int getMaterializedShopkeeperChunkCount() {
+		int count = 0;
+		for (WorldShopkeepers worldShopkeepers : shopkeepersByWorld.values()) {
+			count += worldShopkeepers.shopkeepersByChunk.size();
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the chunks in the specified world that contain loaded shopkeepers, without loading the shopkeepers of any
+	 * remaining {@link ShopkeeperStub stubs}.
+	 * 
+	 * @param worldName
+	 *            the world name
+	 * @return the {@link PositionKeys#chunkKey(int, int) packed chunk coordinates}, empty if there are no loaded
+	 *         shopkeepers in that world
+	 */
+	public long[] getMaterializedShopkeeperChunkKeys(String worldName) {
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers == null) return new long[0];
+		return worldShopkeepers.shopkeepersByChunk.keys();
+	}
+
+	/**
+	 * Gets the loaded shopkeepers in the specified chunk, without loading the shopkeepers of any remaining
+	 * {@link ShopkeeperStub stubs}.
+	 * 
+	 * @param worldName
+	 *            the world name
+	 * @param chunkKey
+	 *            the {@link PositionKeys#chunkKey(int, int) packed chunk coordinates}
+	 * @return an unmodifiable view on the loaded shopkeepers in the chunk, empty if there are none
+	 */
+	public List<AbstractShopkeeper> getMaterializedShopkeepersInChunk(String worldName, long chunkKey) {
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers == null) return Collections.emptyList();
+		ChunkShopkeepers chunkShopkeepers = worldShopkeepers.shopkeepersByChunk.get(chunkKey);
+		if (chunkShopkeepers == null) return Collections.emptyList();
+		return chunkShopkeepers.shopkeepersView;
+	}
+
+	/**
+	 * Gets the stubs of all shopkeepers which have not been loaded yet.
+	 * 
+	 * @return an unmodifiable view on the shopkeeper stubs
+	 */
+	public Collection<ShopkeeperStub> getShopkeeperStubs() {
+		return stubsView;
+	}
+
+	/**
+	 * Gets the number of all shopkeepers, including the ones which have not been loaded yet.
+	 * 
+	 * @return the number of shopkeepers
+	 */
+	public int getShopkeeperCount() {
+		return shopkeepersByUUID.size() + stubsById.size();
+	}
+
 	@Override
 	public Map<ChunkCoords, List<AbstractShopkeeper>> getAllShopkeepersByChunks() {
-		return shopkeepersByChunkView;
+		this.materializeAllShopkeepers();
+		Map<ChunkCoords, List<AbstractShopkeeper>> shopkeepersByChunk = new HashMap<>();
+		for (Entry<String, WorldShopkeepers> worldEntry : shopkeepersByWorld.entrySet()) {
+			String worldName = worldEntry.getKey();
+			worldEntry.getValue().shopkeepersByChunk.forEach((chunkKey, chunkShopkeepers) -> {
+				ChunkCoords chunkCoords = new ChunkCoords(worldName, PositionKeys.getChunkX(chunkKey), PositionKeys.getChunkZ(chunkKey));
+				shopkeepersByChunk.put(chunkCoords, chunkShopkeepers.shopkeepersView);
+			});
+		}
+		return Collections.unmodifiableMap(shopkeepersByChunk);
 	}
 
 	@Override
@@ -672,54 +1410,287 @@ public class SKShopkeeperRegistry implements ShopkeeperRegistry {
 		int x = location.getBlockX();
 		int y = location.getBlockY();
 		int z = location.getBlockZ();
+		long chunkKey = PositionKeys.chunkKey(x >> 4, z >> 4);
+
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers == null) return new ArrayList<>();
+
+		// load the stubs at that location:
+		List<ShopkeeperStub> stubsInChunk = worldShopkeepers.stubsByChunk.get(chunkKey);
+		if (stubsInChunk != null) {
+			for (ShopkeeperStub stub : new ArrayList<>(stubsInChunk)) {
+				if (stub.getX() == x && stub.getY() == y && stub.getZ() == z) {
+					this.materializeShopkeeper(stub);
+				}
+			}
+			// loading the stubs might have replaced the world entry:
+			worldShopkeepers = shopkeepersByWorld.get(worldName);
+			if (worldShopkeepers == null) return new ArrayList<>();
+		}
 
 		List<AbstractShopkeeper> shopkeepers = new ArrayList<>();
-		for (AbstractShopkeeper shopkeeper : this.getAllShopkeepers()) {
-			if (shopkeeper.getWorldName().equals(worldName) && shopkeeper.getX() == x && shopkeeper.getY() == y && shopkeeper.getZ() == z) {
-				shopkeepers.add(shopkeeper);
+		ChunkShopkeepers inChunk = worldShopkeepers.shopkeepersByChunk.get(chunkKey);
+		if (inChunk != null) {
+			for (AbstractShopkeeper shopkeeper : inChunk.shopkeepers) {
+				if (shopkeeper.getX() == x && shopkeeper.getY() == y && shopkeeper.getZ() == z) {
+					shopkeepers.add(shopkeeper);
+				}
 			}
 		}
 		return shopkeepers;
 	}
 
+	// SPATIAL QUERIES
+
+	// distances are measured to the centers of the shopkeepers' blocks:
+	private static double getDistanceSquared(AbstractShopkeeper shopkeeper, double x, double y, double z) {
+		double dx = (shopkeeper.getX() + 0.5D) - x;
+		double dy = (shopkeeper.getY() + 0.5D) - y;
+		double dz = (shopkeeper.getZ() + 0.5D) - z;
+		return dx * dx + dy * dy + dz * dz;
+	}
+
+	/**
+	 * Gets the shopkeepers in the specified chunk range that match the given filter.
+	 * <p>
+	 * Depending on which is smaller, either the chunks of the range, or the chunks of the world which contain
+	 * shopkeepers get checked.
+	 * 
+	 * @param worldName
+	 *            the world name
+	 * @param minChunkX
+	 *            the minimum chunk x coordinate
+	 * @param minChunkZ
+	 *            the minimum chunk z coordinate
+	 * @param maxChunkX
+	 *            the maximum chunk x coordinate
+	 * @param maxChunkZ
+	 *            the maximum chunk z coordinate
+	 * @param filter
+	 *            the filter
+	 * @param loadStubs
+	 *            <code>true</code> to also load and include the not yet loaded shopkeepers in that range
+	 * @return the matching shopkeepers
+	 */
+	private List<AbstractShopkeeper> getShopkeepersInChunkRange(String worldName, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ,
+			Predicate<AbstractShopkeeper> filter, boolean loadStubs) {
+		List<AbstractShopkeeper> shopkeepers = new ArrayList<>();
+		long rangeSize = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers == null) return shopkeepers;
+
+		if (loadStubs && !worldShopkeepers.stubsByChunk.isEmpty()) {
+			if (rangeSize <= worldShopkeepers.stubsByChunk.size()) {
+				for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+					for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+						this.materializeShopkeepersInChunk(worldName, PositionKeys.chunkKey(chunkX, chunkZ));
+					}
+				}
+			} else {
+				for (long chunkKey : worldShopkeepers.stubsByChunk.keys()) {
+					int chunkX = PositionKeys.getChunkX(chunkKey);
+					int chunkZ = PositionKeys.getChunkZ(chunkKey);
+					if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+						this.materializeShopkeepersInChunk(worldName, chunkKey);
+					}
+				}
+			}
+			// loading the stubs might have replaced the world entry:
+			worldShopkeepers = shopkeepersByWorld.get(worldName);
+			if (worldShopkeepers == null) return shopkeepers;
+		}
+
+		LongObjectHashMap<ChunkShopkeepers> shopkeepersByChunk = worldShopkeepers.shopkeepersByChunk;
+		if (rangeSize <= shopkeepersByChunk.size()) {
+			for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+				for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+					ChunkShopkeepers inChunk = shopkeepersByChunk.get(PositionKeys.chunkKey(chunkX, chunkZ));
+					if (inChunk == null) continue;
+					for (AbstractShopkeeper shopkeeper : inChunk.shopkeepers) {
+						if (filter.test(shopkeeper)) shopkeepers.add(shopkeeper);
+					}
+				}
+			}
+		} else {
+			shopkeepersByChunk.forEach((chunkKey, inChunk) -> {
+				int chunkX = PositionKeys.getChunkX(chunkKey);
+				int chunkZ = PositionKeys.getChunkZ(chunkKey);
+				if (chunkX < minChunkX || chunkX > maxChunkX || chunkZ < minChunkZ || chunkZ > maxChunkZ) return;
+				for (AbstractShopkeeper shopkeeper : inChunk.shopkeepers) {
+					if (filter.test(shopkeeper)) shopkeepers.add(shopkeeper);
+				}
+			});
+		}
+		return shopkeepers;
+	}
+
+	@Override
+	public List<AbstractShopkeeper> getShopkeepersInRadius(Location location, double radius) {
+		return this.getShopkeepersInRadius(location, radius, true);
+	}
+
+	/**
+	 * Gets the shopkeepers within the specified distance of the given location.
+	 * 
+	 * @param location
+	 *            the location
+	 * @param radius
+	 *            the radius
+	 * @param loadStubs
+	 *            <code>true</code> to also load and include the not yet loaded shopkeepers within that distance
+	 * @return the shopkeepers within that distance, in no particular order
+	 * @see #getShopkeepersInRadius(Location, double)
+	 */
+	public List<AbstractShopkeeper> getShopkeepersInRadius(Location location, double radius, boolean loadStubs) {
+		Validate.notNull(location, "Location is null!");
+		Validate.notNull(location.getWorld(), "Location's world is null!");
+		Validate.isTrue(radius >= 0.0D, "Radius cannot be negative!");
+		double x = location.getX();
+		double y = location.getY();
+		double z = location.getZ();
+		double radiusSquared = radius * radius;
+		return this.getShopkeepersInChunkRange(location.getWorld().getName(),
+				Location.locToBlock(x - radius) >> 4, Location.locToBlock(z - radius) >> 4,
+				Location.locToBlock(x + radius) >> 4, Location.locToBlock(z + radius) >> 4,
+				(shopkeeper) -> getDistanceSquared(shopkeeper, x, y, z) <= radiusSquared, loadStubs);
+	}
+
+	@Override
+	public List<AbstractShopkeeper> getShopkeepersInBox(World world, BoundingBox box) {
+		Validate.notNull(world, "World is null!");
+		Validate.notNull(box, "Bounding box is null!");
+		return this.getShopkeepersInChunkRange(world.getName(),
+				Location.locToBlock(box.getMinX()) >> 4, Location.locToBlock(box.getMinZ()) >> 4,
+				Location.locToBlock(box.getMaxX()) >> 4, Location.locToBlock(box.getMaxZ()) >> 4,
+				(shopkeeper) -> box.contains(shopkeeper.getX() + 0.5D, shopkeeper.getY() + 0.5D, shopkeeper.getZ() + 0.5D), true);
+	}
+
+	@Override
+	public List<AbstractShopkeeper> getNearestShopkeepers(Location location, int count, double maxDistance) {
+		Validate.isTrue(count >= 0, "Count cannot be negative!");
+		List<AbstractShopkeeper> shopkeepers = this.getShopkeepersInRadius(location, maxDistance, true);
+		double x = location.getX();
+		double y = location.getY();
+		double z = location.getZ();
+		shopkeepers.sort(Comparator.comparingDouble((shopkeeper) -> getDistanceSquared(shopkeeper, x, y, z)));
+		if (shopkeepers.size() > count) {
+			shopkeepers.subList(count, shopkeepers.size()).clear();
+		}
+		return shopkeepers;
+	}
+
 	@Override
 	public List<AbstractShopkeeper> getShopkeepersInChunk(Chunk chunk) {
-		return this.getShopkeepersInChunk(new ChunkCoords(chunk));
+		Validate.notNull(chunk, "Chunk is null!");
+		return this.getShopkeepersInChunk(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
 	}
 
 	@Override
 	public List<AbstractShopkeeper> getShopkeepersInChunk(ChunkCoords chunkCoords) {
-		List<AbstractShopkeeper> byChunk = shopkeepersByChunkView.get(chunkCoords);
+		Validate.notNull(chunkCoords, "Chunk coordinates are null!");
+		return this.getShopkeepersInChunk(chunkCoords.getWorldName(), chunkCoords.getChunkX(), chunkCoords.getChunkZ());
+	}
+
+	/**
+	 * Gets all shopkeepers in the specified chunk.
+	 * 
+	 * @param worldName
+	 *            the world name
+	 * @param chunkX
+	 *            the chunk x coordinate
+	 * @param chunkZ
+	 *            the chunk z coordinate
+	 * @return an unmodifiable view on the shopkeepers in the specified chunk, empty if there are none
+	 */
+	public List<AbstractShopkeeper> getShopkeepersInChunk(String worldName, int chunkX, int chunkZ) {
+		long chunkKey = PositionKeys.chunkKey(chunkX, chunkZ);
+		this.materializeShopkeepersInChunk(worldName, chunkKey);
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers == null) return Collections.emptyList();
+		ChunkShopkeepers byChunk = worldShopkeepers.shopkeepersByChunk.get(chunkKey);
 		if (byChunk == null) return Collections.emptyList();
-		return byChunk; // unmodifiable already
+		return byChunk.shopkeepersView;
 	}
 
 	@Override
 	public List<AbstractShopkeeper> getShopkeepersInWorld(World world, boolean onlyLoadedChunks) {
 		Validate.notNull(world, "World is null!");
+		String worldName = world.getName();
 		List<AbstractShopkeeper> shopkeepersInWorld = new ArrayList<>();
 		if (onlyLoadedChunks) {
-			for (Chunk chunk : world.getLoadedChunks()) {
-				shopkeepersInWorld.addAll(this.getShopkeepersInChunk(chunk));
+			WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+			if (worldShopkeepers != null) {
+				// stubs are only located in unloaded chunks, or in the loaded chunks of their shop chests:
+				for (long chunkKey : worldShopkeepers.stubsByChunk.keys()) {
+					if (world.isChunkLoaded(PositionKeys.getChunkX(chunkKey), PositionKeys.getChunkZ(chunkKey))) {
+						this.materializeShopkeepersInChunk(worldName, chunkKey);
+					}
+				}
 			}
 		} else {
-			String worldName = world.getName();
-			for (Entry<ChunkCoords, List<AbstractShopkeeper>> byChunkEntry : this.getAllShopkeepersByChunks().entrySet()) {
-				if (byChunkEntry.getKey().getWorldName().equals(worldName)) {
-					shopkeepersInWorld.addAll(byChunkEntry.getValue());
+			// load the stubs in that world:
+			this.materializeShopkeepersInWorld(worldName);
+		}
+
+		// loading the stubs might have replaced the world entry:
+		WorldShopkeepers worldShopkeepers = shopkeepersByWorld.get(worldName);
+		if (worldShopkeepers != null) {
+			worldShopkeepers.shopkeepersByChunk.forEach((chunkKey, chunkShopkeepers) -> {
+				if (!onlyLoadedChunks || world.isChunkLoaded(PositionKeys.getChunkX(chunkKey), PositionKeys.getChunkZ(chunkKey))) {
+					shopkeepersInWorld.addAll(chunkShopkeepers.shopkeepers);
 				}
-			}
+			});
 		}
 		return Collections.unmodifiableList(shopkeepersInWorld);
 	}
 
+	/**
+	 * Gets the unique ids of all players who own shopkeepers, including the owners of not yet loaded shopkeepers.
+	 * 
+	 * @return the unique ids of the shop owners
+	 */
+	public Set<UUID> getShopOwners() {
+		Set<UUID> shopOwners = new HashSet<>(shopkeepersByOwner.keySet());
+		shopOwners.addAll(stubsByOwner.keySet());
+		return shopOwners;
+	}
+
+	@Override
+	public List<AbstractPlayerShopkeeper> getShopkeepersOfPlayer(UUID ownerUUID) {
+		Validate.notNull(ownerUUID, "Owner uuid is null!");
+		this.materializeShopkeepersOfOwner(ownerUUID);
+		return this.getMaterializedShopkeepersOfPlayer(ownerUUID);
+	}
+
+	/**
+	 * Gets the loaded shopkeepers of the specified owner.
+	 * 
+	 * @param ownerUUID
+	 *            the owner's unique id
+	 * @return an unmodifiable view on the loaded shopkeepers of the specified owner, can be empty
+	 */
+	public List<AbstractPlayerShopkeeper> getMaterializedShopkeepersOfPlayer(UUID ownerUUID) {
+		List<AbstractPlayerShopkeeper> byOwner = shopkeepersByOwner.get(ownerUUID);
+		if (byOwner == null) return Collections.emptyList();
+		return Collections.unmodifiableList(byOwner);
+	}
+
+	/**
+	 * Gets the not yet loaded shopkeepers of the specified owner.
+	 * 
+	 * @param ownerUUID
+	 *            the owner's unique id
+	 * @return an unmodifiable view on the shopkeeper stubs of the specified owner, can be empty
+	 */
+	public List<ShopkeeperStub> getShopkeeperStubsOfPlayer(UUID ownerUUID) {
+		List<ShopkeeperStub> byOwner = stubsByOwner.get(ownerUUID);
+		if (byOwner == null) return Collections.emptyList();
+		return Collections.unmodifiableList(byOwner);
+	}
+
 	public int countShopsOfPlayer(Player player) {
-		int count = 0;
-		for (Shopkeeper shopkeeper : this.getAllShopkeepers()) {
-			if (shopkeeper instanceof PlayerShopkeeper && ((PlayerShopkeeper) shopkeeper).isOwner(player)) {
-				count++;
-			}
-		}
-		return count;
+		// does not load the shopkeepers which have not been loaded yet:
+		UUID playerUUID = player.getUniqueId();
+		return this.getMaterializedShopkeepersOfPlayer(playerUUID).size() + this.getShopkeeperStubsOfPlayer(playerUUID).size();
 	}
 }
@@ -0,0 +1,296 @@
+package com.nisovin.shopkeepers.shopkeeper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.Settings;
+import com.nisovin.shopkeepers.util.LongObjectHashMap;
+import com.nisovin.shopkeepers.util.PositionKeys;
+
+/**
+ * Activates the shopkeepers of loaded chunks over the course of multiple ticks.
+ * <p>
+ * Loaded chunks get queued and are processed once a short delay has passed. The shopkeepers get spawned within a per
+ * tick budget (see {@link Settings#spawnQueueMaxSpawnsPerTick} and {@link Settings#spawnQueueMaxTimePerTick}),
+ * starting with the chunks closest to players. Queued chunks get removed again once they get unloaded.
+ * <p>
+ * The order of the ready chunks only gets updated when new chunks became ready or players moved to other chunks.
+ */
+class ShopkeeperActivationQueue {
+
+	// the delay in ticks before the shopkeepers of a loaded chunk get activated:
+	private static final int CHUNK_LOAD_DELAY = 2;
+
+	private static final class QueuedChunk {
+
+		private final String worldName;
+		private final int chunkX;
+		private final int chunkZ;
+		private final long readyTick;
+		private boolean worldSaving;
+		// the shopkeepers to spawn, null if the chunk was not yet prepared:
+		private List<AbstractShopkeeper> pending = null;
+		private int nextPendingIndex = 0;
+		// the squared chunk distance to the nearest player, updated whenever the ready chunks get ordered:
+		private long distanceSquared;
+		// whether the chunk got removed from the queue (it gets skipped and dropped from the lists lazily):
+		private boolean removed = false;
+
+		QueuedChunk(String worldName, int chunkX, int chunkZ, long readyTick, boolean worldSaving) {
+			this.worldName = worldName;
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+			this.readyTick = readyTick;
+			this.worldSaving = worldSaving;
+		}
+	}
+
+	private final SKShopkeepersPlugin plugin;
+	private final SKShopkeeperRegistry shopkeeperRegistry;
+	private final Map<String, LongObjectHashMap<QueuedChunk>> queuedChunks = new HashMap<>();
+	private int queuedChunksCount = 0;
+	// the queued chunks which are not yet ready, in the order in which they become ready:
+	private final Deque<QueuedChunk> waitingChunks = new ArrayDeque<>();
+	// the ready chunks, ordered by their distance to the nearest player:
+	private final List<QueuedChunk> readyChunks = new ArrayList<>();
+	// whether the ready chunks need to be ordered again:
+	private boolean orderOutdated = false;
+	private long currentTick = 0L;
+	private BukkitTask task = null;
+	// the worlds and chunk coordinates of the online players, updated every tick in which chunks get processed:
+	private final List<String> playerWorlds = new ArrayList<>();
+	private int[] playerChunkXs = new int[0];
+	private int[] playerChunkZs = new int[0];
+
+	ShopkeeperActivationQueue(SKShopkeepersPlugin plugin, SKShopkeeperRegistry shopkeeperRegistry) {
+		this.plugin = plugin;
+		this.shopkeeperRegistry = shopkeeperRegistry;
+	}
+
+	void start() {
+		if (task != null) return;
+		task = Bukkit.getScheduler().runTaskTimer(plugin, this::process, 1L, 1L);
+	}
+
+	void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		queuedChunks.clear();
+		queuedChunksCount = 0;
+		waitingChunks.clear();
+		readyChunks.clear();
+		playerWorlds.clear();
+	}
+
+	/**
+	 * Gets the number of queued chunks.
+	 *
+	 * @return the number of queued chunks
+	 */
+	int getQueuedChunksCount() {
+		return queuedChunksCount;
+	}
+
+	/**
+	 * Queues the activation of the shopkeepers in the given chunk.
+	 *
+	 * @param chunk
+	 *            the chunk
+	 * @param worldSaving
+	 *            whether the shopkeepers get loaded due to the world saving finished
+	 */
+	void add(Chunk chunk, boolean worldSaving) {
+		String worldName = chunk.getWorld().getName();
+		long chunkKey = PositionKeys.chunkKey(chunk.getX(), chunk.getZ());
+		LongObjectHashMap<QueuedChunk> byChunk = queuedChunks.get(worldName);
+		if (byChunk == null) {
+			byChunk = new LongObjectHashMap<>();
+			queuedChunks.put(worldName, byChunk);
+		}
+		QueuedChunk queuedChunk = byChunk.get(chunkKey);
+		if (queuedChunk != null) {
+			// already queued:
+			queuedChunk.worldSaving |= worldSaving;
+			return;
+		}
+		queuedChunk = new QueuedChunk(worldName, chunk.getX(), chunk.getZ(), currentTick + CHUNK_LOAD_DELAY, worldSaving);
+		byChunk.put(chunkKey, queuedChunk);
+		queuedChunksCount++;
+		// all chunks get queued with the same delay, so the waiting chunks stay ordered by the tick they become ready:
+		waitingChunks.add(queuedChunk);
+	}
+
+	void remove(Chunk chunk) {
+		String worldName = chunk.getWorld().getName();
+		LongObjectHashMap<QueuedChunk> byChunk = queuedChunks.get(worldName);
+		if (byChunk == null) return;
+		QueuedChunk queuedChunk = byChunk.remove(PositionKeys.chunkKey(chunk.getX(), chunk.getZ()));
+		if (queuedChunk != null) {
+			queuedChunk.removed = true;
+			queuedChunksCount--;
+			if (byChunk.isEmpty()) {
+				queuedChunks.remove(worldName);
+			}
+		}
+	}
+
+	void removeWorld(String worldName) {
+		LongObjectHashMap<QueuedChunk> byChunk = queuedChunks.remove(worldName);
+		if (byChunk != null) {
+			byChunk.forEach((chunkKey, queuedChunk) -> queuedChunk.removed = true);
+			queuedChunksCount -= byChunk.size();
+		}
+	}
+
+	private void process() {
+		currentTick++;
+		if (queuedChunksCount == 0) {
+			// only removed chunks might be left:
+			waitingChunks.clear();
+			readyChunks.clear();
+			return;
+		}
+		// the ordering of the chunks also counts towards the time budget:
+		long startNanos = System.nanoTime();
+
+		// move the chunks which became ready:
+		while (!waitingChunks.isEmpty() && waitingChunks.peek().readyTick <= currentTick) {
+			QueuedChunk queuedChunk = waitingChunks.poll();
+			if (queuedChunk.removed) continue;
+			readyChunks.add(queuedChunk);
+			orderOutdated = true;
+		}
+		if (readyChunks.isEmpty()) return;
+
+		// order the ready chunks by their distance to the nearest player:
+		if (this.updatePlayerChunks()) {
+			orderOutdated = true;
+		}
+		if (orderOutdated) {
+			orderOutdated = false;
+			readyChunks.removeIf((queuedChunk) -> queuedChunk.removed);
+			for (QueuedChunk queuedChunk : readyChunks) {
+				queuedChunk.distanceSquared = this.getDistanceSquaredToNearestPlayer(queuedChunk);
+			}
+			readyChunks.sort((c1, c2) -> Long.compare(c1.distanceSquared, c2.distanceSquared));
+		}
+
+		int maxSpawns = Settings.spawnQueueMaxSpawnsPerTick;
+		long maxNanos = Settings.spawnQueueMaxTimePerTick * 1000000L;
+		int spawns = 0;
+		boolean dirty = false;
+		// the number of chunks at the front of the ready chunks that got completed (or removed):
+		int completedChunks = 0;
+		boolean budgetExhausted = false;
+		for (QueuedChunk queuedChunk : readyChunks) {
+			if (queuedChunk.removed) {
+				completedChunks++;
+				continue;
+			}
+			if (queuedChunk.pending == null) {
+				World world = Bukkit.getWorld(queuedChunk.worldName);
+				if (world == null || !world.isChunkLoaded(queuedChunk.chunkX, queuedChunk.chunkZ)) {
+					this.removeQueuedChunk(queuedChunk);
+					completedChunks++;
+					continue;
+				}
+				Chunk chunk = world.getChunkAt(queuedChunk.chunkX, queuedChunk.chunkZ);
+				queuedChunk.pending = shopkeeperRegistry.prepareShopkeepersInChunk(chunk, queuedChunk.worldSaving);
+			}
+
+			List<AbstractShopkeeper> pending = queuedChunk.pending;
+			while (queuedChunk.nextPendingIndex < pending.size()) {
+				if ((maxSpawns > 0 && spawns >= maxSpawns) || (maxNanos > 0L && System.nanoTime() - startNanos >= maxNanos)) {
+					// budget exhausted: continue during the next tick
+					budgetExhausted = true;
+					break;
+				}
+				AbstractShopkeeper shopkeeper = pending.get(queuedChunk.nextPendingIndex++);
+				if (shopkeeperRegistry.activateQueuedShopkeeper(shopkeeper)) {
+					spawns++;
+				}
+				if (shopkeeper.isDirty()) dirty = true;
+			}
+			if (budgetExhausted) break;
+			this.removeQueuedChunk(queuedChunk);
+			completedChunks++;
+		}
+		readyChunks.subList(0, completedChunks).clear();
+		if (dirty) plugin.getShopkeeperStorage().saveDelayed();
+	}
+
+	private void removeQueuedChunk(QueuedChunk queuedChunk) {
+		LongObjectHashMap<QueuedChunk> byChunk = queuedChunks.get(queuedChunk.worldName);
+		if (byChunk == null) return;
+		long chunkKey = PositionKeys.chunkKey(queuedChunk.chunkX, queuedChunk.chunkZ);
+		if (byChunk.get(chunkKey) != queuedChunk) return;
+		byChunk.remove(chunkKey);
+		queuedChunk.removed = true;
+		queuedChunksCount--;
+		if (byChunk.isEmpty()) {
+			queuedChunks.remove(queuedChunk.worldName);
+		}
+	}
+
+	// returns true if players moved to other chunks (or joined or left) since the last update
+	private boolean updatePlayerChunks() {
+		Collection<? extends Player> players = Bukkit.getOnlinePlayers();
+		boolean changed = (players.size() != playerWorlds.size());
+		if (playerChunkXs.length < players.size()) {
+			playerChunkXs = Arrays.copyOf(playerChunkXs, players.size());
+			playerChunkZs = Arrays.copyOf(playerChunkZs, players.size());
+		}
+		Location playerLocation = new Location(null, 0.0D, 0.0D, 0.0D);
+		int index = 0;
+		for (Player player : players) {
+			player.getLocation(playerLocation);
+			String worldName = player.getWorld().getName();
+			int chunkX = playerLocation.getBlockX() >> 4;
+			int chunkZ = playerLocation.getBlockZ() >> 4;
+			if (index < playerWorlds.size()) {
+				if (!changed && (chunkX != playerChunkXs[index] || chunkZ != playerChunkZs[index]
+						|| !worldName.equals(playerWorlds.get(index)))) {
+					changed = true;
+				}
+				playerWorlds.set(index, worldName);
+			} else {
+				playerWorlds.add(worldName);
+			}
+			playerChunkXs[index] = chunkX;
+			playerChunkZs[index] = chunkZ;
+			index++;
+		}
+		// remove the entries of players that left:
+		while (playerWorlds.size() > index) {
+			playerWorlds.remove(playerWorlds.size() - 1);
+		}
+		return changed;
+	}
+
+	private long getDistanceSquaredToNearestPlayer(QueuedChunk queuedChunk) {
+		long minDistanceSquared = Long.MAX_VALUE;
+		for (int index = 0; index < playerWorlds.size(); index++) {
+			if (!playerWorlds.get(index).equals(queuedChunk.worldName)) continue;
+			long dx = playerChunkXs[index] - queuedChunk.chunkX;
+			long dz = playerChunkZs[index] - queuedChunk.chunkZ;
+			minDistanceSquared = Math.min(minDistanceSquared, dx * dx + dz * dz);
+		}
+		return minDistanceSquared;
+	}
+}
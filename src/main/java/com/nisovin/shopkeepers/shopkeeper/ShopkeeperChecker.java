@@ -0,0 +1,107 @@
+package com.nisovin.shopkeepers.shopkeeper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+
+/**
+ * Checks the active shopkeepers (see {@link AbstractShopkeeper#check()}) over the course of multiple ticks.
+ * <p>
+ * Shopkeepers whose shop objects might have been displaced (ex. detected via events) get checked during the next tick.
+ * In addition, all active shopkeepers get checked in a round-robin fashion once every {@link #SWEEP_PERIOD} ticks,
+ * with each tick only checking a slice of them.
+ */
+class ShopkeeperChecker {
+
+	// the period in ticks in which all active shopkeepers get checked:
+	private static final int SWEEP_PERIOD = 200; // 10 seconds
+
+	private final SKShopkeepersPlugin plugin;
+	private final SKShopkeeperRegistry shopkeeperRegistry;
+	// the object ids of the shopkeepers to check during the next tick:
+	private final Set<String> requestedChecks = new LinkedHashSet<>();
+	// the object ids of the shopkeepers that were active at the start of the current sweep:
+	private List<String> sweepObjectIds = Collections.emptyList();
+	private int sweepIndex = 0;
+	private int sweepSliceSize = 0;
+	private long sweepStartTick = 0L;
+	private long currentTick = 0L;
+	private BukkitTask task = null;
+
+	ShopkeeperChecker(SKShopkeepersPlugin plugin, SKShopkeeperRegistry shopkeeperRegistry) {
+		this.plugin = plugin;
+		this.shopkeeperRegistry = shopkeeperRegistry;
+	}
+
+	void start() {
+		if (task != null) return;
+		currentTick = 0L;
+		// start the first sweep after one period:
+		sweepStartTick = 0L;
+		task = Bukkit.getScheduler().runTaskTimer(plugin, this::process, 1L, 1L);
+	}
+
+	void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		requestedChecks.clear();
+		sweepObjectIds = Collections.emptyList();
+		sweepIndex = 0;
+	}
+
+	/**
+	 * Requests a check of the shopkeeper with the given object id during the next tick.
+	 *
+	 * @param objectId
+	 *            the object id of the active shopkeeper
+	 */
+	void requestCheck(String objectId) {
+		requestedChecks.add(objectId);
+	}
+
+	private void process() {
+		currentTick++;
+		boolean dirty = false;
+
+		// requested checks:
+		if (!requestedChecks.isEmpty()) {
+			List<String> objectIds = new ArrayList<>(requestedChecks);
+			requestedChecks.clear();
+			for (String objectId : objectIds) {
+				if (shopkeeperRegistry.checkActiveShopkeeper(objectId)) dirty = true;
+			}
+		}
+
+		// round-robin sweep:
+		if (sweepIndex >= sweepObjectIds.size() && currentTick - sweepStartTick >= SWEEP_PERIOD) {
+			// start the next sweep:
+			sweepObjectIds = shopkeeperRegistry.getActiveObjectIds();
+			sweepIndex = 0;
+			sweepSliceSize = (sweepObjectIds.size() + SWEEP_PERIOD - 1) / SWEEP_PERIOD;
+			sweepStartTick = currentTick;
+		}
+		int sliceEnd = Math.min(sweepIndex + sweepSliceSize, sweepObjectIds.size());
+		while (sweepIndex < sliceEnd) {
+			String objectId = sweepObjectIds.get(sweepIndex++);
+			if (shopkeeperRegistry.checkActiveShopkeeper(objectId)) dirty = true;
+		}
+		if (sweepIndex >= sweepObjectIds.size() && !sweepObjectIds.isEmpty()) {
+			sweepObjectIds = Collections.emptyList();
+			sweepIndex = 0;
+		}
+
+		// shop objects might have been removed or respawned, request a save:
+		if (dirty) {
+			plugin.getShopkeeperStorage().save();
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package com.nisovin.shopkeepers.shopkeeper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.Settings;
+import com.nisovin.shopkeepers.util.LongObjectHashMap;
+import com.nisovin.shopkeepers.util.Log;
+import com.nisovin.shopkeepers.util.PositionKeys;
+
+/**
+ * Respawns the shopkeepers that should be active but are not (see {@link Settings#enableSpawnVerifier}).
+ * <p>
+ * Instead of periodically checking all chunks that contain shopkeepers, only the chunks that were marked (ex. due to
+ * spawn failures or the death of shop entities) get verified, a few chunks per tick. Marks get removed again once their
+ * chunks get unloaded.
+ */
+class ShopkeeperSpawnVerifier {
+
+	// the delay in ticks before a marked chunk gets verified:
+	static final int VERIFY_DELAY = 20; // 1 second
+	// the delay in ticks before a chunk gets verified again if some of its shopkeepers could not be spawned:
+	static final int RETRY_DELAY = 1200; // 60 seconds
+	private static final int MAX_CHUNKS_PER_TICK = 2;
+
+	private static final class MarkedChunk {
+
+		private final String worldName;
+		private final int chunkX;
+		private final int chunkZ;
+		private long readyTick;
+
+		MarkedChunk(String worldName, int chunkX, int chunkZ, long readyTick) {
+			this.worldName = worldName;
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+			this.readyTick = readyTick;
+		}
+	}
+
+	private final SKShopkeepersPlugin plugin;
+	private final SKShopkeeperRegistry shopkeeperRegistry;
+	private final Map<String, LongObjectHashMap<MarkedChunk>> markedChunks = new HashMap<>();
+	// the marked chunks ordered by the tick at which they are ready to get verified:
+	private final PriorityQueue<MarkedChunk> verificationQueue = new PriorityQueue<>(Comparator.comparingLong((markedChunk) -> markedChunk.readyTick));
+	private long currentTick = 0L;
+	private BukkitTask task = null;
+
+	ShopkeeperSpawnVerifier(SKShopkeepersPlugin plugin, SKShopkeeperRegistry shopkeeperRegistry) {
+		this.plugin = plugin;
+		this.shopkeeperRegistry = shopkeeperRegistry;
+	}
+
+	void start() {
+		if (task != null) return;
+		task = Bukkit.getScheduler().runTaskTimer(plugin, this::process, 1L, 1L);
+	}
+
+	void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+		markedChunks.clear();
+		verificationQueue.clear();
+	}
+
+	/**
+	 * Gets the number of marked chunks.
+	 *
+	 * @return the number of marked chunks
+	 */
+	int getMarkedChunksCount() {
+		return verificationQueue.size();
+	}
+
+	/**
+	 * Marks the chunk of the given shopkeeper to get verified after the given delay.
+	 * <p>
+	 * This has no effect if the spawn verifier is not running. If the chunk is already marked, the earlier of both
+	 * verifications is kept.
+	 *
+	 * @param shopkeeper
+	 *            the shopkeeper
+	 * @param delay
+	 *            the delay in ticks
+	 */
+	void mark(AbstractShopkeeper shopkeeper, int delay) {
+		if (task == null) return;
+		String worldName = shopkeeper.getWorldName();
+		int chunkX = shopkeeper.getX() >> 4;
+		int chunkZ = shopkeeper.getZ() >> 4;
+		long chunkKey = PositionKeys.chunkKey(chunkX, chunkZ);
+		LongObjectHashMap<MarkedChunk> byChunk = markedChunks.get(worldName);
+		if (byChunk == null) {
+			byChunk = new LongObjectHashMap<>();
+			markedChunks.put(worldName, byChunk);
+		}
+		long readyTick = currentTick + delay;
+		MarkedChunk markedChunk = byChunk.get(chunkKey);
+		if (markedChunk != null) {
+			// already marked:
+			if (readyTick < markedChunk.readyTick) {
+				// re-insert, so that the chunk gets moved to its new position inside the queue:
+				verificationQueue.remove(markedChunk);
+				markedChunk.readyTick = readyTick;
+				verificationQueue.add(markedChunk);
+			}
+			return;
+		}
+		markedChunk = new MarkedChunk(worldName, chunkX, chunkZ, readyTick);
+		byChunk.put(chunkKey, markedChunk);
+		verificationQueue.add(markedChunk);
+	}
+
+	void unmark(String worldName, int chunkX, int chunkZ) {
+		MarkedChunk markedChunk = this.removeMark(worldName, chunkX, chunkZ);
+		if (markedChunk != null) {
+			verificationQueue.remove(markedChunk);
+		}
+	}
+
+	// only removes the chunk from the marked chunks, but not from the verification queue:
+	private MarkedChunk removeMark(String worldName, int chunkX, int chunkZ) {
+		LongObjectHashMap<MarkedChunk> byChunk = markedChunks.get(worldName);
+		if (byChunk == null) return null;
+		MarkedChunk markedChunk = byChunk.remove(PositionKeys.chunkKey(chunkX, chunkZ));
+		if (byChunk.isEmpty()) {
+			markedChunks.remove(worldName);
+		}
+		return markedChunk;
+	}
+
+	void unmarkWorld(String worldName) {
+		LongObjectHashMap<MarkedChunk> byChunk = markedChunks.remove(worldName);
+		if (byChunk == null) return;
+		verificationQueue.removeIf((markedChunk) -> markedChunk.worldName.equals(worldName));
+	}
+
+	private void process() {
+		currentTick++;
+		if (verificationQueue.isEmpty()) return;
+
+		int count = 0;
+		boolean dirty = false;
+		for (int remainingChunks = MAX_CHUNKS_PER_TICK; remainingChunks > 0; remainingChunks--) {
+			MarkedChunk markedChunk = verificationQueue.peek();
+			// none of the remaining chunks is ready yet:
+			if (markedChunk == null || markedChunk.readyTick > currentTick) break;
+			verificationQueue.poll();
+			this.removeMark(markedChunk.worldName, markedChunk.chunkX, markedChunk.chunkZ);
+
+			// shopkeepers in unloaded chunks get spawned once their chunk gets loaded again:
+			World world = Bukkit.getWorld(markedChunk.worldName);
+			if (world == null || !world.isChunkLoaded(markedChunk.chunkX, markedChunk.chunkZ)) continue;
+
+			List<AbstractShopkeeper> shopkeepers = new ArrayList<>(shopkeeperRegistry.getShopkeepersInChunk(markedChunk.worldName, markedChunk.chunkX, markedChunk.chunkZ));
+			for (AbstractShopkeeper shopkeeper : shopkeepers) {
+				if (!shopkeeper.needsSpawning() || shopkeeper.isActive()) continue;
+				if (shopkeeperRegistry.respawnShopkeeper(shopkeeper)) {
+					count++;
+					if (shopkeeper.isDirty()) dirty = true;
+				} else {
+					// try again later:
+					this.mark(shopkeeper, RETRY_DELAY);
+				}
+			}
+		}
+		if (count > 0) {
+			Log.debug("Spawn verifier: " + count + " shopkeepers respawned");
+			if (dirty) {
+				plugin.getShopkeeperStorage().save();
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.nisovin.shopkeepers.shopkeeper;
+
+import java.util.UUID;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import com.nisovin.shopkeepers.api.util.ChunkCoords;
+
+/**
+ * A lightweight placeholder for a shopkeeper that has not yet been loaded.
+ * <p>
+ * Only keeps the data that is required to find the shopkeeper, and a reference to its save data. The actual shopkeeper
+ * gets created from that data once it is needed (see {@link SKShopkeeperRegistry#materializeShopkeeper(ShopkeeperStub)}).
+ */
+public final class ShopkeeperStub {
+
+	private final AbstractShopType<?> shopType;
+	private final int id;
+	private final UUID uniqueId;
+	private final String worldName;
+	private final int x;
+	private final int y;
+	private final int z;
+	private final ChunkCoords chunkCoords;
+	// null for non-player shops:
+	private final UUID ownerUUID;
+	// the chunk of the shop's chest, or null for non-player shops:
+	private final ChunkCoords chestChunkCoords;
+	private final ConfigurationSection data;
+
+	ShopkeeperStub(AbstractShopType<?> shopType, int id, UUID uniqueId, String worldName, int x, int y, int z,
+			UUID ownerUUID, ChunkCoords chestChunkCoords, ConfigurationSection data) {
+		this.shopType = shopType;
+		this.id = id;
+		this.uniqueId = uniqueId;
+		this.worldName = worldName;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.chunkCoords = ChunkCoords.fromBlockPos(worldName, x, z);
+		this.ownerUUID = ownerUUID;
+		this.chestChunkCoords = chestChunkCoords;
+		this.data = data;
+	}
+
+	public AbstractShopType<?> getShopType() {
+		return shopType;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public UUID getUniqueId() {
+		return uniqueId;
+	}
+
+	public String getWorldName() {
+		return worldName;
+	}
+
+	public int getX() {
+		return x;
+	}
+
+	public int getY() {
+		return y;
+	}
+
+	public int getZ() {
+		return z;
+	}
+
+	public ChunkCoords getChunkCoords() {
+		return chunkCoords;
+	}
+
+	/**
+	 * Gets the owner of the shopkeeper.
+	 *
+	 * @return the owner's unique id, or <code>null</code> if this is no player shopkeeper
+	 */
+	public UUID getOwnerUUID() {
+		return ownerUUID;
+	}
+
+	/**
+	 * Gets the owner name, as stored in the save data.
+	 *
+	 * @return the owner name, or <code>null</code> if this is no player shopkeeper
+	 */
+	public String getOwnerName() {
+		if (ownerUUID == null) return null;
+		return data.getString("owner", "unknown");
+	}
+
+	/**
+	 * Gets the chunk of the shop's chest.
+	 *
+	 * @return the chest chunk, or <code>null</code> if this is no player shopkeeper
+	 */
+	public ChunkCoords getChestChunkCoords() {
+		return chestChunkCoords;
+	}
+
+	/**
+	 * Gets the name of the shopkeeper, as stored in its save data.
+	 *
+	 * @return the name, can be empty
+	 */
+	public String getName() {
+		return data.getString("name", "");
+	}
+
+	ConfigurationSection getData() {
+		return data;
+	}
+}
@@ -29,12 +29,8 @@ class WorldListener implements Listener {
 
 	@EventHandler(priority = EventPriority.MONITOR)
 	void onChunkLoad(ChunkLoadEvent event) {
-		Chunk chunk = event.getChunk();
-		Bukkit.getScheduler().runTaskLater(plugin, () -> {
-			if (chunk.isLoaded()) {
-				shopkeeperRegistry.loadShopkeepersInChunk(chunk);
-			}
-		}, 2);
+		// the shopkeepers get activated with a small delay (see ShopkeeperActivationQueue):
+		shopkeeperRegistry.loadShopkeepersInChunk(event.getChunk());
 	}
 
 	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -17,6 +17,7 @@ import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.SKDefaultShopTypes;
 import com.nisovin.shopkeepers.shopkeeper.admin.AbstractAdminShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.offers.TradingOffer;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 
 /**
  * Represents a shopkeeper that is managed by the server. This shopkeeper will have unlimited supply and will not store
@@ -71,10 +72,10 @@ public class RegularAdminShopkeeper extends AbstractAdminShopkeeper {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
 		// save offers:
-		TradingOffer.saveToConfig(configSection, "recipes", this.getOffers());
+		TradingOffer.saveToConfig(snapshotSection, "recipes", this.getOffers());
 	}
 
 	@Override
@@ -7,6 +7,8 @@ import java.util.List;
 import org.apache.commons.lang.Validate;
 import org.bukkit.configuration.ConfigurationSection;
 
+import com.nisovin.shopkeepers.storage.SnapshotSection;
+
 /**
  * Stores information about a type of book being sold for a certain price.
  */
@@ -35,8 +37,8 @@ public class BookOffer {
 	// STATIC UTILITIES
 	// //////////
 
-	public static void saveToConfig(ConfigurationSection config, String node, Collection<BookOffer> offers) {
-		ConfigurationSection offersSection = config.createSection(node);
+	public static void saveToConfig(SnapshotSection snapshotSection, String node, Collection<BookOffer> offers) {
+		SnapshotSection offersSection = snapshotSection.createSection(node);
 		for (BookOffer offer : offers) {
 			offersSection.set(offer.getBookTitle(), offer.getPrice());
 		}
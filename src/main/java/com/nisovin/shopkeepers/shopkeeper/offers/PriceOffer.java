@@ -8,6 +8,7 @@ import org.apache.commons.lang.Validate;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.inventory.ItemStack;
 
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.ItemUtils;
 
 /**
@@ -37,12 +38,12 @@ public class PriceOffer {
 	// STATIC UTILITIES
 	// //////////
 
-	public static void saveToConfig(ConfigurationSection config, String node, Collection<PriceOffer> offers) {
-		ConfigurationSection offersSection = config.createSection(node);
+	public static void saveToConfig(SnapshotSection snapshotSection, String node, Collection<PriceOffer> offers) {
+		SnapshotSection offersSection = snapshotSection.createSection(node);
 		int id = 0;
 		for (PriceOffer offer : offers) {
 			ItemStack item = offer.getItem(); // is a clone
-			ConfigurationSection offerSection = offersSection.createSection(String.valueOf(id));
+			SnapshotSection offerSection = offersSection.createSection(String.valueOf(id));
 			offerSection.set("item", item);
 			offerSection.set("price", offer.getPrice());
 			id++;
@@ -8,6 +8,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.inventory.ItemStack;
 
 import com.nisovin.shopkeepers.shopkeeper.SKTradingRecipe;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.ItemUtils;
 
 /**
@@ -24,8 +25,8 @@ public class TradingOffer extends SKTradingRecipe {
 	// STATIC UTILITIES
 	// //////////
 
-	public static void saveToConfig(ConfigurationSection config, String node, Collection<TradingOffer> offers) {
-		ConfigurationSection offersSection = config.createSection(node);
+	public static void saveToConfig(SnapshotSection snapshotSection, String node, Collection<TradingOffer> offers) {
+		SnapshotSection offersSection = snapshotSection.createSection(node);
 		int id = 0;
 		for (TradingOffer offer : offers) {
 			// note: the items are clones
@@ -33,7 +34,7 @@ public class TradingOffer extends SKTradingRecipe {
 			ItemStack item2 = offer.getItem2();
 			ItemStack resultItem = offer.getResultItem();
 
-			ConfigurationSection offerSection = offersSection.createSection(String.valueOf(id));
+			SnapshotSection offerSection = offersSection.createSection(String.valueOf(id));
 			offerSection.set("item1", item1);
 			offerSection.set("item2", item2);
 			offerSection.set("resultItem", resultItem);
@@ -3,6 +3,7 @@ package com.nisovin.shopkeepers.shopkeeper.player;
 import java.util.List;
 import java.util.UUID;
 
+import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
 import org.bukkit.block.Block;
 import org.bukkit.block.Chest;
@@ -29,6 +30,7 @@ import com.nisovin.shopkeepers.api.ui.DefaultUITypes;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.citizens.SKCitizensShopObject;
 import com.nisovin.shopkeepers.shopobjects.sign.SKSignShopObject;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.Filter;
 import com.nisovin.shopkeepers.util.ItemCount;
 import com.nisovin.shopkeepers.util.ItemUtils;
@@ -109,15 +111,15 @@ public abstract class AbstractPlayerShopkeeper extends AbstractShopkeeper implem
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		configSection.set("owner uuid", ownerUUID.toString());
-		configSection.set("owner", ownerName);
-		configSection.set("chestx", chestX);
-		configSection.set("chesty", chestY);
-		configSection.set("chestz", chestZ);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		snapshotSection.set("owner uuid", ownerUUID.toString());
+		snapshotSection.set("owner", ownerName);
+		snapshotSection.set("chestx", chestX);
+		snapshotSection.set("chesty", chestY);
+		snapshotSection.set("chestz", chestZ);
 		if (hireCost != null) {
-			configSection.set("hirecost", hireCost);
+			snapshotSection.set("hirecost", hireCost.clone());
 		}
 	}
 
@@ -183,9 +185,15 @@ public abstract class AbstractPlayerShopkeeper extends AbstractShopkeeper implem
 
 	@Override
 	public void setOwner(UUID ownerUUID, String ownerName) {
+		Validate.notNull(ownerUUID, "Owner uuid is null!");
 		this.markDirty();
+		UUID oldOwnerUUID = this.ownerUUID;
 		this.ownerUUID = ownerUUID;
 		this.ownerName = ownerName;
+		if (this.isValid()) {
+			// update shopkeeper in owner map:
+			SKShopkeepersPlugin.getInstance().getShopkeeperRegistry().onShopkeeperOwnerChanged(this, oldOwnerUUID);
+		}
 		// TODO do this in a more abstract way
 		if (!Settings.allowRenamingOfPlayerNpcShops && this.getShopObject().getType() == DefaultShopObjectTypes.CITIZEN()) {
 			// update the npc's name:
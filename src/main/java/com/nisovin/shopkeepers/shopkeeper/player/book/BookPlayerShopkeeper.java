@@ -26,6 +26,7 @@ import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.SKDefaultShopTypes;
 import com.nisovin.shopkeepers.shopkeeper.offers.BookOffer;
 import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopkeeper;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.Filter;
 import com.nisovin.shopkeepers.util.ItemCount;
 import com.nisovin.shopkeepers.util.ItemUtils;
@@ -93,10 +94,10 @@ public class BookPlayerShopkeeper extends AbstractPlayerShopkeeper {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
 		// save offers:
-		BookOffer.saveToConfig(configSection, "offers", this.getOffers());
+		BookOffer.saveToConfig(snapshotSection, "offers", this.getOffers());
 	}
 
 	@Override
@@ -20,6 +20,7 @@ import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.SKDefaultShopTypes;
 import com.nisovin.shopkeepers.shopkeeper.offers.PriceOffer;
 import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopkeeper;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.Filter;
 import com.nisovin.shopkeepers.util.ItemCount;
 import com.nisovin.shopkeepers.util.ItemUtils;
@@ -79,10 +80,10 @@ public class BuyingPlayerShopkeeper extends AbstractPlayerShopkeeper {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
 		// save offers:
-		PriceOffer.saveToConfig(configSection, "offers", this.getOffers());
+		PriceOffer.saveToConfig(snapshotSection, "offers", this.getOffers());
 	}
 
 	@Override
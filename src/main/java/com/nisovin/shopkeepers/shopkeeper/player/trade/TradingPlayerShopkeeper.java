@@ -18,6 +18,7 @@ import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.SKDefaultShopTypes;
 import com.nisovin.shopkeepers.shopkeeper.offers.TradingOffer;
 import com.nisovin.shopkeepers.shopkeeper.player.AbstractPlayerShopkeeper;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.ItemCount;
 import com.nisovin.shopkeepers.util.ItemUtils;
 
@@ -68,10 +69,10 @@ public class TradingPlayerShopkeeper extends AbstractPlayerShopkeeper {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
 		// save offers:
-		TradingOffer.saveToConfig(configSection, "offers", this.getOffers());
+		TradingOffer.saveToConfig(snapshotSection, "offers", this.getOffers());
 	}
 
 	@Override
@@ -10,6 +10,7 @@ import com.nisovin.shopkeepers.api.shopkeeper.ShopCreationData;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
 import com.nisovin.shopkeepers.api.shopobjects.ShopObject;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 
 /**
@@ -37,17 +38,17 @@ public abstract class AbstractShopObject implements ShopObject {
 	}
 
 	/**
-	 * Saves the shop object's data to the specified configuration section.
+	 * Saves the shop object's data to the specified snapshot section.
 	 * <p>
-	 * Note: The serialization of the inserted data may happen asynchronously, so make sure that this is not a problem
-	 * (ex. only insert immutable objects, or always create copies of the data you insert and/or make sure to not modify
-	 * the inserted objects).
+	 * This gets called on the main thread, but the configuration section form of the inserted data gets built and
+	 * serialized asynchronously. Only insert plain values (strings, numbers, booleans) or copies of items, and don't
+	 * modify the inserted objects afterwards.
 	 * 
-	 * @param configSection
-	 *            the config section
+	 * @param snapshotSection
+	 *            the snapshot section
 	 */
-	public void save(ConfigurationSection configSection) {
-		configSection.set("type", this.getType().getIdentifier());
+	public void save(SnapshotSection snapshotSection) {
+		snapshotSection.set("type", this.getType().getIdentifier());
 	}
 
 	/**
@@ -15,8 +15,8 @@ import org.bukkit.plugin.Plugin;
 import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.Settings;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
-import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperRegistry;
 import com.nisovin.shopkeepers.pluginhandlers.CitizensHandler;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.util.Log;
 
 import net.citizensnpcs.api.CitizensAPI;
@@ -172,9 +172,10 @@ public class CitizensShops {
 			// cannot determine backing npcs if citizens isn't running:
 			return;
 		}
-		ShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
+		SKShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
 		boolean dirty = false;
-		for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
+		// citizens shopkeepers are always loaded:
+		for (Shopkeeper shopkeeper : shopkeeperRegistry.getMaterializedShopkeepers()) {
 			if (shopkeeper.getShopObject() instanceof SKCitizensShopObject) {
 				SKCitizensShopObject citizensShop = (SKCitizensShopObject) shopkeeper.getShopObject();
 				citizensShop.convertLegacyId();
@@ -193,9 +194,10 @@ public class CitizensShops {
 			// cannot determine which shopkeepers have a backing npc if citizens isn't running:
 			return;
 		}
-		ShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
+		SKShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
 		List<Shopkeeper> forRemoval = new ArrayList<>();
-		for (Shopkeeper shopkeeper : shopkeeperRegistry.getAllShopkeepers()) {
+		// citizens shopkeepers are always loaded:
+		for (Shopkeeper shopkeeper : shopkeeperRegistry.getMaterializedShopkeepers()) {
 			if (shopkeeper.getShopObject() instanceof SKCitizensShopObject) {
 				SKCitizensShopObject citizensShop = (SKCitizensShopObject) shopkeeper.getShopObject();
 				UUID npcUniqueId = citizensShop.getNPCUniqueId();
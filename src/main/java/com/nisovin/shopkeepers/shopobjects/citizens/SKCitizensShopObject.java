@@ -18,6 +18,7 @@ import com.nisovin.shopkeepers.api.shopobjects.citizens.CitizensShopObject;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.SKDefaultShopObjectTypes;
 import com.nisovin.shopkeepers.shopobjects.entity.AbstractEntityShopObject;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.ConversionUtils;
 import com.nisovin.shopkeepers.util.Log;
 
@@ -97,13 +98,13 @@ public class SKCitizensShopObject extends AbstractEntityShopObject implements Ci
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
 		if (npcUniqueId != null) {
-			configSection.set("npcId", npcUniqueId.toString());
+			snapshotSection.set("npcId", npcUniqueId.toString());
 		} else if (npcLegacyId != null) {
 			// TODO remove again at some point
-			configSection.set("npcId", npcLegacyId);
+			snapshotSection.set("npcId", npcLegacyId);
 		}
 	}
 
@@ -180,6 +181,12 @@ public class SKCitizensShopObject extends AbstractEntityShopObject implements Ci
 		return (this.getNPC() != null);
 	}
 
+	// citizens shopkeepers are identified by their npc, even while the npc's entity is not spawned:
+	@Override
+	public UUID getObjectUniqueId() {
+		return npcUniqueId;
+	}
+
 	@Override
 	public String getId() {
 		if (npcUniqueId == null) {
@@ -1,5 +1,9 @@
 package com.nisovin.shopkeepers.shopobjects.entity;
 
+import java.util.UUID;
+
+import org.bukkit.entity.Entity;
+
 import com.nisovin.shopkeepers.api.shopkeeper.ShopCreationData;
 import com.nisovin.shopkeepers.api.shopobjects.entity.EntityShopObject;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
@@ -10,4 +14,16 @@ public abstract class AbstractEntityShopObject extends AbstractShopObject implem
 	protected AbstractEntityShopObject(AbstractShopkeeper shopkeeper, ShopCreationData creationData) {
 		super(shopkeeper, creationData);
 	}
+
+	/**
+	 * Gets the unique id by which the shopkeeper registry can find this shop object while it is active.
+	 * <p>
+	 * By default this is the unique id of the entity.
+	 * 
+	 * @return the unique id, or <code>null</code> if the shop object isn't active currently
+	 */
+	public UUID getObjectUniqueId() {
+		Entity entity = this.getEntity();
+		return (entity != null ? entity.getUniqueId() : null);
+	}
 }
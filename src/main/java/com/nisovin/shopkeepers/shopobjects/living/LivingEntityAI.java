@@ -1,17 +1,20 @@
 package com.nisovin.shopkeepers.shopobjects.living;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.UUID;
 
 import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
-import org.bukkit.Chunk;
+import org.bukkit.GameMode;
 import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitTask;
@@ -20,6 +23,9 @@ import com.nisovin.shopkeepers.Settings;
 import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.util.ChunkCoords;
 import com.nisovin.shopkeepers.compat.NMSManager;
+import com.nisovin.shopkeepers.util.Log;
+import com.nisovin.shopkeepers.util.LongObjectHashMap;
+import com.nisovin.shopkeepers.util.PositionKeys;
 import com.nisovin.shopkeepers.util.Utils;
 
 /**
@@ -27,12 +33,20 @@ import com.nisovin.shopkeepers.util.Utils;
  * <p>
  * It is assumed that entities usually don't change their initial chunk: Their gravity and AI activation depend on
  * whether their initial chunk has players nearby, rather than whether their current chunk has players nearby.
+ * <p>
+ * The entities are grouped by their chunks. The chunks of the online players get tracked (see
+ * {@link LivingEntityAIListener}), and only the chunks with players nearby get processed.
  */
 public class LivingEntityAI {
 
 	// The look-at-players ai goal only targets players in 12 block radius, so we can limit the ai ticking to the direct
 	// chunks around the player:
 	private static final int AI_ACTIVATION_CHUNK_RANGE = 1;
+	// the range of the look-at-players behavior (same as the vanilla look-at-player goal of shop entities):
+	private static final double LOOK_AT_RANGE = 12.0D;
+	private static final double LOOK_AT_RANGE_SQUARED = LOOK_AT_RANGE * LOOK_AT_RANGE;
+	// the vanilla goal only considers players within this vertical distance to the entity's bounding box:
+	private static final double LOOK_AT_VERTICAL_RANGE = 3.0D;
 	// Regarding gravity activation range:
 	// Players can see shop entities from further away, so we use a large enough range for the activation of falling
 	// checks (configurable in the config, default 4)
@@ -53,20 +67,45 @@ public class LivingEntityAI {
 	// speed, and to be able to detect the end of the falling without having to check for block collisions another time
 	// in the next tick
 	private static final double GRAVITY_COLLISION_CHECK_RANGE = MAX_FALLING_DISTANCE_PER_TICK + 0.1D;
+	// the number of ticks between falling checks of entities that are not falling:
+	private static final int FALLING_CHECK_INTERVAL = 10;
+
+	// Adaptive throttling (see Settings#adaptiveMobAiThrottling):
+	// With each throttle level the AI tick rates and falling check intervals get doubled, and the gravity chunk range
+	// gets halved. Starting at level 2, the AI only gets activated in the chunks that contain players.
+	private static final int MAX_THROTTLE_LEVEL = 3;
+	// the server is considered to fall behind, if the average tick duration is above this (normally 50 ms):
+	private static final long THROTTLE_TICK_DURATION_NANOS = 55000000L; // 55 ms
+	// the throttle level also gets raised if our own handling takes longer than this on average:
+	private static final long THROTTLE_OWN_TIME_NANOS = 5000000L; // 5 ms
+	// the number of consecutive checks (one per second) without any lag before the throttle level gets lowered again:
+	private static final int THROTTLE_RECOVERY_CHECKS = 10;
 
 	private static final Random RANDOM = new Random();
 
 	private final ShopkeepersPlugin plugin;
 
 	private static class EntityData {
+		private final LivingEntity entity;
 		private final ChunkData chunkData;
+		// the index of this entity inside the entities array of its chunk:
+		private int index = -1;
 		// random initial delay to distribute falling checks of entities among ticks:
-		public int skipFallingCheckTicks = RANDOM.nextInt(10);
+		public int skipFallingCheckTicks = RANDOM.nextInt(FALLING_CHECK_INTERVAL);
 		public boolean falling = false;
 		public double distanceToGround = 0.0D;
-
-		public EntityData(ChunkData chunkData) {
+		// whether the entity was found to be on the ground, and no block changes below it were detected since then:
+		public boolean onValidGround = false;
+		// the AI gets ticked once every aiTickRate ticks (scaled by the throttle level), during the ticks of the
+		// entity's bucket (determined via the aiTickId):
+		private final int aiTickRate;
+		private final int aiTickId;
+
+		public EntityData(LivingEntity entity, ChunkData chunkData) {
+			this.entity = entity;
 			this.chunkData = chunkData;
+			this.aiTickRate = Settings.getMobAiTickRate(entity.getType());
+			this.aiTickId = (entity.getEntityId() & Integer.MAX_VALUE);
 		}
 	}
 
@@ -74,19 +113,76 @@ public class LivingEntityAI {
 	private final Map<LivingEntity, EntityData> entities = new HashMap<>();
 
 	private static class ChunkData {
-		private final Chunk chunk;
+		private final String worldName;
+		private final int chunkX;
+		private final int chunkZ;
+		// the entities of this chunk, stored contiguously:
+		private EntityData[] entities = new EntityData[4];
 		private int entityCount = 0;
-		// active by default for fast initial reactions in case players are nearby:
-		public boolean activeGravity;
-		public boolean activeAI = true;
+		// the number of players whose ai / gravity activation ranges contain this chunk:
+		public int aiPlayers = 0;
+		public int gravityPlayers = 0;
+		// the index of this chunk inside the active chunks, -1 if not active:
+		private int activeIndex = -1;
+
+		public ChunkData(String worldName, int chunkX, int chunkZ) {
+			this.worldName = worldName;
+			this.chunkX = chunkX;
+			this.chunkZ = chunkZ;
+		}
+
+		public boolean isActive() {
+			return (aiPlayers > 0 || gravityPlayers > 0);
+		}
+
+		public void addEntity(EntityData entityData) {
+			if (entityCount == entities.length) {
+				entities = Arrays.copyOf(entities, entityCount * 2);
+			}
+			entityData.index = entityCount;
+			entities[entityCount++] = entityData;
+		}
 
-		public ChunkData(Chunk chunk, boolean activeGravity) {
-			this.chunk = chunk;
-			this.activeGravity = activeGravity;
+		public void removeEntity(EntityData entityData) {
+			assert entities[entityData.index] == entityData;
+			// move the last entity into the freed slot:
+			EntityData lastEntityData = entities[--entityCount];
+			entities[entityData.index] = lastEntityData;
+			lastEntityData.index = entityData.index;
+			entities[entityCount] = null;
+			entityData.index = -1;
 		}
 	}
 
-	private final Map<Chunk, ChunkData> activeChunks = new HashMap<>();
+	// the chunks with entities, by world and packed chunk coordinates:
+	private final Map<String, LongObjectHashMap<ChunkData>> chunksByWorld = new HashMap<>();
+	// the chunks with players nearby:
+	private final List<ChunkData> activeChunks = new ArrayList<>();
+
+	private static class PlayerData {
+		private String worldName;
+		private int chunkX;
+		private int chunkZ;
+		// the chunk ranges that got applied for this player, -1 if gravity is not active:
+		private int aiChunkRange;
+		private int gravityChunkRange;
+	}
+
+	// the chunks of the online players:
+	private final Map<UUID, PlayerData> players = new HashMap<>();
+	// the online players and their locations, gathered once per tick if the look-at-players behavior gets handled by
+	// us (instead of by the vanilla AI goal of each entity):
+	private int playerCount = 0;
+	private Player[] playerEntities = new Player[0];
+	private String[] playerWorldNames = new String[0];
+	private double[] playerXs = new double[0];
+	private double[] playerYs = new double[0];
+	private double[] playerZs = new double[0];
+	// the indices of the players near the currently processed chunk:
+	private int chunkPlayerCount = 0;
+	private int[] chunkPlayerIndices = new int[0];
+	// entities that got detected to be no longer valid during the current tick:
+	private final List<EntityData> invalidEntities = new ArrayList<>();
 
 	// temporarily re-used Location object:
 	private final Location tempLocation = new Location(null, 0, 0, 0);
@@ -95,6 +191,16 @@ public class LivingEntityAI {
 	private boolean currentlyRunning = false;
 	private int tickCounter = 0;
 
+	// adaptive throttling:
+	private int throttleLevel = 0;
+	private int throttleRecoveryChecks = 0;
+	private long lastTickNanos = 0L;
+	private long tickDurationsNanos = 0L;
+	private int tickDurationsCount = 0;
+	// our own time spent per tick since the last throttle level update:
+	private long ownTimeNanos = 0L;
+	private int ownTimeCount = 0;
+
 	// statistics:
 	private int activeAIChunksCount = 0;
 	private int activeAIEntityCount = 0;
@@ -207,101 +313,137 @@ public class LivingEntityAI {
 		if (this.isActive()) return;
 		else if (aiTask != null) this.stop(); // not active, but already setup: perform cleanup
 
+		// the player chunks might be outdated (ex. if players joined before the plugin got enabled):
+		this.updateAllPlayers();
+		lastTickNanos = 0L;
+		tickDurationsNanos = 0L;
+		tickDurationsCount = 0;
+		ownTimeNanos = 0L;
+		ownTimeCount = 0;
+
 		// start ai task:
 		aiTask = Bukkit.getScheduler().runTaskTimer(plugin, () -> {
 			currentlyRunning = true;
 			tickCounter++;
 
+			// measure the duration of server ticks:
+			long nowNanos = System.nanoTime();
+			if (lastTickNanos != 0L) {
+				tickDurationsNanos += (nowNanos - lastTickNanos);
+				tickDurationsCount++;
+			}
+			lastTickNanos = nowNanos;
+
 			// start timings:
 			totalTimings.start();
 			gravityTimings.startPaused();
 			aiTimings.startPaused();
 
-			// freshly determine active chunks/entities (near players) every 20 ticks:
+			// the player chunks get updated when players move across chunks, but we additionally verify them every 20
+			// ticks (ex. for players riding vehicles, or if the gravity settings have changed):
 			boolean activationPhase = (tickCounter % 20 == 0);
 			if (activationPhase) {
 				activationTimings.start();
-
-				// deactivate all chunks:
-				for (ChunkData chunkData : activeChunks.values()) {
-					chunkData.activeAI = false;
-					chunkData.activeGravity = false;
-				}
-				activeAIChunksCount = 0;
-				activeGravityChunksCount = 0;
-
-				// activate chunks with nearby players:
-				boolean gravityActive = this.isGravityActive();
-				int gravityChunkRange = Math.max(Settings.gravityChunkRange, 0);
-				for (Player player : Bukkit.getOnlinePlayers()) {
-					Chunk centerChunk = player.getLocation(tempLocation).getChunk();
-					this.activateNearbyChunks(centerChunk, AI_ACTIVATION_CHUNK_RANGE, ActivationType.AI);
-					if (gravityActive) {
-						this.activateNearbyChunks(centerChunk, gravityChunkRange, ActivationType.GRAVITY);
-					}
-				}
+				this.updateThrottleLevel();
+				this.updateAllPlayers();
 				activationTimings.stop();
 			}
+			int aiTickRateFactor = (1 << throttleLevel);
+			int fallingCheckInterval = (FALLING_CHECK_INTERVAL << throttleLevel);
 
+			activeAIChunksCount = 0;
+			activeGravityChunksCount = 0;
 			activeAIEntityCount = 0;
 			activeGravityEntityCount = 0;
-			Iterator<Entry<LivingEntity, EntityData>> iterator = entities.entrySet().iterator();
-			while (iterator.hasNext()) {
-				Entry<LivingEntity, EntityData> entry = iterator.next();
-				LivingEntity entity = entry.getKey();
-				EntityData entityData = entry.getValue();
-				// entity still alive and loaded?
-				if (entity.isDead() || !entity.isValid() || !ChunkCoords.isChunkLoaded(entity.getLocation(tempLocation))) {
-					iterator.remove();
-					this.onEntityRemoved(entity, entityData);
-					continue;
+			// determine the targets of the look-at-players behavior ourselves, if supported:
+			boolean sharedLookAt = (!activeChunks.isEmpty() && NMSManager.getProvider().supportsLookAt());
+			if (sharedLookAt) {
+				this.gatherPlayers();
+			}
+			// only the chunks with players nearby get processed:
+			for (int chunkIndex = 0; chunkIndex < activeChunks.size(); chunkIndex++) {
+				ChunkData chunkData = activeChunks.get(chunkIndex);
+				boolean activeGravity = (chunkData.gravityPlayers > 0);
+				boolean activeAI = (chunkData.aiPlayers > 0);
+				if (activeAI && sharedLookAt) {
+					this.gatherChunkPlayers(chunkData);
 				}
-				ChunkData chunkData = entityData.chunkData;
-
-				// handle gravity:
-				gravityTimings.resume();
-				if (chunkData.activeGravity) {
-					activeGravityEntityCount++;
-
-					// check periodically, or if already falling, if the entity is meant to (continue to) fall:
-					entityData.skipFallingCheckTicks--;
-					if ((entityData.skipFallingCheckTicks <= 0) || entityData.falling) {
-						// falling, if the distance-to-ground is above the threshold:
-						Location entityLocation = entity.getLocation(tempLocation);
-						entityData.distanceToGround = Utils.getCollisionDistanceToGround(entityLocation, GRAVITY_COLLISION_CHECK_RANGE);
-						entityData.falling = (entityData.distanceToGround >= DISTANCE_TO_GROUND_THRESHOLD);
-
-						// handle falling:
-						if (entityData.falling) {
-							// prevents SPIGOT-3948 / MC-130725
-							NMSManager.getProvider().setOnGround(entity, false);
-							this.handleFalling(entity, entityData);
-						}
-						if (!entityData.falling) {
-							// prevents SPIGOT-3948 / MC-130725
-							NMSManager.getProvider().setOnGround(entity, true);
-						}
+				if (activeGravity) activeGravityChunksCount++;
+				if (activeAI) activeAIChunksCount++;
+
+				EntityData[] chunkEntities = chunkData.entities;
+				for (int entityIndex = 0; entityIndex < chunkData.entityCount; entityIndex++) {
+					EntityData entityData = chunkEntities[entityIndex];
+					LivingEntity entity = entityData.entity;
+					// entity still alive and loaded?
+					if (entity.isDead() || !entity.isValid() || !ChunkCoords.isChunkLoaded(entity.getLocation(tempLocation))) {
+						// removed after the iteration:
+						invalidEntities.add(entityData);
+						continue;
+					}
 
-						// wait 10 ticks before checking again:
-						entityData.skipFallingCheckTicks = 10;
+					// handle gravity:
+					gravityTimings.resume();
+					if (activeGravity) {
+						activeGravityEntityCount++;
+
+						// check if the entity is meant to (continue to) fall, if already falling, or periodically until the
+						// entity was found to be on the ground (and then again once the blocks below it have changed):
+						entityData.skipFallingCheckTicks--;
+						if ((entityData.skipFallingCheckTicks <= 0 && !entityData.onValidGround) || entityData.falling) {
+							// falling, if the distance-to-ground is above the threshold:
+							Location entityLocation = entity.getLocation(tempLocation);
+							entityData.distanceToGround = Utils.getCollisionDistanceToGround(entityLocation, GRAVITY_COLLISION_CHECK_RANGE);
+							entityData.falling = (entityData.distanceToGround >= DISTANCE_TO_GROUND_THRESHOLD);
+
+							// handle falling:
+							if (entityData.falling) {
+								// prevents SPIGOT-3948 / MC-130725
+								NMSManager.getProvider().setOnGround(entity, false);
+								this.handleFalling(entity, entityData);
+							}
+							if (!entityData.falling) {
+								// prevents SPIGOT-3948 / MC-130725
+								NMSManager.getProvider().setOnGround(entity, true);
+								entityData.onValidGround = true;
+							}
+
+							// wait 10 ticks (more if throttled) before checking again:
+							entityData.skipFallingCheckTicks = fallingCheckInterval;
+						}
 					}
-				}
-				gravityTimings.pause();
+					gravityTimings.pause();
 
-				// handle AI:
-				aiTimings.resume();
-				if (chunkData.activeAI) {
-					activeAIEntityCount++;
+					// handle AI:
+					aiTimings.resume();
+					if (activeAI) {
+						activeAIEntityCount++;
 
-					// only handle AI if not currently falling:
-					if (!entityData.falling) {
-						this.handleAI(entity);
+						// only handle AI if not currently falling, and during the ticks of the entity's bucket:
+						int aiTickRate = entityData.aiTickRate * aiTickRateFactor;
+						if (!entityData.falling && (tickCounter % aiTickRate) == (entityData.aiTickId % aiTickRate)) {
+							this.handleAI(entity, sharedLookAt);
+						}
 					}
+					aiTimings.pause();
 				}
-				aiTimings.pause();
 			}
 			// cleanup temporarily used location object:
 			tempLocation.setWorld(null);
+			// cleanup player references:
+			if (sharedLookAt) {
+				Arrays.fill(playerEntities, 0, playerCount, null);
+				playerCount = 0;
+			}
+
+			// remove invalid entities:
+			if (!invalidEntities.isEmpty()) {
+				for (EntityData entityData : invalidEntities) {
+					entities.remove(entityData.entity);
+					this.onEntityRemoved(entityData);
+				}
+				invalidEntities.clear();
+			}
 
 			// stop the task if there are no entities with AI anymore:
 			if (entities.isEmpty()) {
@@ -312,6 +454,8 @@ public class LivingEntityAI {
 			totalTimings.stop();
 			gravityTimings.stop();
 			aiTimings.stop();
+			ownTimeNanos += (System.nanoTime() - nowNanos);
+			ownTimeCount++;
 
 			currentlyRunning = false;
 		}, 1L, 1L);
@@ -321,6 +465,8 @@ public class LivingEntityAI {
 		if (aiTask == null) return;
 		aiTask.cancel();
 		aiTask = null;
+		throttleLevel = 0;
+		throttleRecoveryChecks = 0;
 		this.resetStatistics();
 	}
 
@@ -337,50 +483,89 @@ public class LivingEntityAI {
 		if (entities.containsKey(entity)) return;
 
 		// determine entity chunk (asserts that the entity won't move!):
-		Chunk entityChunk = entity.getLocation(tempLocation).getChunk();
+		Location entityLocation = entity.getLocation(tempLocation);
+		String worldName = entityLocation.getWorld().getName();
+		int chunkX = entityLocation.getBlockX() >> 4;
+		int chunkZ = entityLocation.getBlockZ() >> 4;
 		tempLocation.setWorld(null); // cleanup temporarily used location object
 
-		// active gravity handling?
-		boolean gravityActive = this.isGravityActive();
-
 		// add chunk entry:
-		ChunkData chunkData = activeChunks.get(entityChunk);
+		LongObjectHashMap<ChunkData> worldChunks = chunksByWorld.get(worldName);
+		if (worldChunks == null) {
+			worldChunks = new LongObjectHashMap<>();
+			chunksByWorld.put(worldName, worldChunks);
+		}
+		long chunkKey = PositionKeys.chunkKey(chunkX, chunkZ);
+		ChunkData chunkData = worldChunks.get(chunkKey);
 		if (chunkData == null) {
-			chunkData = new ChunkData(entityChunk, gravityActive);
-			activeChunks.put(entityChunk, chunkData);
+			chunkData = new ChunkData(worldName, chunkX, chunkZ);
+			worldChunks.put(chunkKey, chunkData);
+			// apply the activations of nearby players:
+			for (PlayerData playerData : players.values()) {
+				if (!playerData.worldName.equals(worldName)) continue;
+				this.updateChunkActivation(chunkData, playerData, 1);
+			}
+			this.updateActiveState(chunkData);
 		}
-		chunkData.entityCount++;
 
 		// add entity entry:
-		entities.put(entity, new EntityData(chunkData));
+		EntityData entityData = new EntityData(entity, chunkData);
+		chunkData.addEntity(entityData);
+		entities.put(entity, entityData);
 
 		// start the ai task, if it isn't already running:
 		this.start();
 	}
 
+	/**
+	 * Makes the gravity handling check again whether the given entity is meant to fall.
+	 * <p>
+	 * This needs to be called when the blocks below the entity have changed, or when the entity was moved.
+	 * 
+	 * @param entity
+	 *            the entity
+	 */
+	public void invalidateGround(LivingEntity entity) {
+		EntityData entityData = entities.get(entity);
+		if (entityData != null) {
+			entityData.onValidGround = false;
+		}
+	}
+
 	public void removeEntity(LivingEntity entity) {
 		Validate.isTrue(!currentlyRunning, "Cannot remove entities while the ai task is running!");
 		// remove entity:
 		EntityData entityData = entities.remove(entity);
 		if (entityData != null) {
-			this.onEntityRemoved(entity, entityData);
+			this.onEntityRemoved(entityData);
 		}
 	}
 
-	private void onEntityRemoved(LivingEntity entity, EntityData entityData) {
-		assert entity != null && entityData != null;
+	private void onEntityRemoved(EntityData entityData) {
+		assert entityData != null;
 		// update/remove chunk entry:
 		ChunkData chunkData = entityData.chunkData;
-		chunkData.entityCount--;
+		chunkData.removeEntity(entityData);
 		if (chunkData.entityCount <= 0) {
-			activeChunks.remove(chunkData.chunk);
+			LongObjectHashMap<ChunkData> worldChunks = chunksByWorld.get(chunkData.worldName);
+			if (worldChunks != null) {
+				worldChunks.remove(PositionKeys.chunkKey(chunkData.chunkX, chunkData.chunkZ));
+				if (worldChunks.isEmpty()) {
+					chunksByWorld.remove(chunkData.worldName);
+				}
+			}
+			chunkData.aiPlayers = 0;
+			chunkData.gravityPlayers = 0;
+			this.updateActiveState(chunkData);
 		}
 	}
 
 	public void reset() {
 		Validate.isTrue(!currentlyRunning, "Cannot reset while the ai task is running!");
 		entities.clear();
-		// activeChunks.clear();
+		chunksByWorld.clear();
+		activeChunks.clear();
+		players.clear();
 		this.resetStatistics();
 	}
 
@@ -438,45 +623,186 @@ public class LivingEntityAI {
 
 	// handling:
 
-	private static enum ActivationType {
-		GRAVITY,
-		AI;
-	}
-
-	private void activateNearbyChunks(Chunk centerChunk, int chunkRadius, ActivationType activationType) {
-		assert centerChunk != null && chunkRadius >= 0 && activationType != null;
-		World world = centerChunk.getWorld();
-		int minX = centerChunk.getX() - chunkRadius;
-		int minZ = centerChunk.getZ() - chunkRadius;
-		int maxX = centerChunk.getX() + chunkRadius;
-		int maxZ = centerChunk.getZ() + chunkRadius;
-		for (int x = minX; x <= maxX; x++) {
-			for (int z = minZ; z <= maxZ; z++) {
-				if (!world.isChunkLoaded(x, z)) continue;
-				Chunk chunk = world.getChunkAt(x, z);
-				ChunkData chunkData = activeChunks.get(chunk);
-				if (chunkData == null) continue;
-
-				switch (activationType) {
-				case GRAVITY:
-					if (!chunkData.activeGravity) {
-						chunkData.activeGravity = true;
-						activeGravityChunksCount++;
-					}
-					break;
-				case AI:
-					if (!chunkData.activeAI) {
-						chunkData.activeAI = true;
-						activeAIChunksCount++;
+	// adaptive throttling:
+
+	// gets run once per second, before the player chunks get updated (which applies the new chunk ranges):
+	private void updateThrottleLevel() {
+		if (!Settings.adaptiveMobAiThrottling) {
+			throttleLevel = 0;
+			return;
+		}
+		if (tickDurationsCount == 0) return;
+		long averageTickDurationNanos = (tickDurationsNanos / tickDurationsCount);
+		tickDurationsNanos = 0L;
+		tickDurationsCount = 0;
+		// only considers the ticks since the last update, so that a raised throttle level takes effect before the next
+		// level gets applied:
+		long averageOwnTimeNanos = (ownTimeCount == 0 ? 0L : (ownTimeNanos / ownTimeCount));
+		ownTimeNanos = 0L;
+		ownTimeCount = 0;
+
+		boolean lagging = (averageTickDurationNanos > THROTTLE_TICK_DURATION_NANOS
+				|| averageOwnTimeNanos > THROTTLE_OWN_TIME_NANOS);
+		if (lagging) {
+			throttleRecoveryChecks = 0;
+			if (throttleLevel < MAX_THROTTLE_LEVEL) {
+				throttleLevel++;
+				Log.debug("Living entity AI: Increased throttle level to " + throttleLevel + " (average tick duration: "
+						+ (averageTickDurationNanos / 1000000L) + " ms, average own time: "
+						+ (averageOwnTimeNanos / 1000000.0D) + " ms)");
+			}
+		} else if (throttleLevel > 0) {
+			throttleRecoveryChecks++;
+			if (throttleRecoveryChecks >= THROTTLE_RECOVERY_CHECKS) {
+				throttleRecoveryChecks = 0;
+				throttleLevel--;
+				Log.debug("Living entity AI: Decreased throttle level to " + throttleLevel);
+			}
+		}
+	}
+
+	/**
+	 * Gets the current throttle level.
+	 * <p>
+	 * The throttle level gets raised while the server is falling behind (see
+	 * {@link Settings#adaptiveMobAiThrottling}).
+	 * 
+	 * @return the throttle level, <code>0</code> if not throttled
+	 */
+	public int getThrottleLevel() {
+		return throttleLevel;
+	}
+
+	public int getMaxThrottleLevel() {
+		return MAX_THROTTLE_LEVEL;
+	}
+
+	// player chunks:
+
+	/**
+	 * Updates the chunk of the given player.
+	 * <p>
+	 * This activates the AI and gravity of the entities in the chunks around the player's new chunk, and deactivates
+	 * them in the chunks that are no longer in range of any player.
+	 * 
+	 * @param player
+	 *            the player
+	 * @param location
+	 *            the player's new location
+	 */
+	void updatePlayer(Player player, Location location) {
+		assert player != null && location != null && location.getWorld() != null;
+		UUID playerId = player.getUniqueId();
+		String worldName = location.getWorld().getName();
+		int chunkX = location.getBlockX() >> 4;
+		int chunkZ = location.getBlockZ() >> 4;
+		int aiChunkRange = (throttleLevel >= 2 ? 0 : AI_ACTIVATION_CHUNK_RANGE);
+		int gravityChunkRange = (this.isGravityActive() ? (Math.max(Settings.gravityChunkRange, 0) >> throttleLevel) : -1);
+
+		PlayerData playerData = players.get(playerId);
+		if (playerData == null) {
+			playerData = new PlayerData();
+			players.put(playerId, playerData);
+		} else {
+			if (playerData.chunkX == chunkX && playerData.chunkZ == chunkZ && playerData.aiChunkRange == aiChunkRange
+					&& playerData.gravityChunkRange == gravityChunkRange && playerData.worldName.equals(worldName)) {
+				return; // no change
+			}
+			// deactivate previous chunks:
+			this.updateChunkActivations(playerData, -1);
+		}
+		playerData.worldName = worldName;
+		playerData.chunkX = chunkX;
+		playerData.chunkZ = chunkZ;
+		playerData.aiChunkRange = aiChunkRange;
+		playerData.gravityChunkRange = gravityChunkRange;
+		// activate new chunks:
+		this.updateChunkActivations(playerData, 1);
+	}
+
+	void removePlayer(Player player) {
+		assert player != null;
+		PlayerData playerData = players.remove(player.getUniqueId());
+		if (playerData != null) {
+			this.updateChunkActivations(playerData, -1);
+		}
+	}
+
+	private void updateAllPlayers() {
+		Collection<? extends Player> onlinePlayers = Bukkit.getOnlinePlayers();
+		for (Player player : onlinePlayers) {
+			this.updatePlayer(player, player.getLocation(tempLocation));
+		}
+		tempLocation.setWorld(null); // cleanup temporarily used location object
+
+		// remove players that are no longer online:
+		if (players.size() > onlinePlayers.size()) {
+			Iterator<Entry<UUID, PlayerData>> iterator = players.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Entry<UUID, PlayerData> entry = iterator.next();
+				if (Bukkit.getPlayer(entry.getKey()) == null) {
+					iterator.remove();
+					this.updateChunkActivations(entry.getValue(), -1);
+				}
+			}
+		}
+	}
+
+	// adds (or removes) the activations of the given player to (or from) the chunks in its range:
+	private void updateChunkActivations(PlayerData playerData, int delta) {
+		LongObjectHashMap<ChunkData> worldChunks = chunksByWorld.get(playerData.worldName);
+		if (worldChunks == null) return;
+		int range = Math.max(playerData.aiChunkRange, playerData.gravityChunkRange);
+		int rangeSize = (2 * range + 1);
+		if (worldChunks.size() < rangeSize * rangeSize) {
+			// fewer chunks with entities than chunks in range:
+			worldChunks.forEach((chunkKey, chunkData) -> this.updateChunkActivation(chunkData, playerData, delta));
+		} else {
+			for (int chunkX = playerData.chunkX - range; chunkX <= playerData.chunkX + range; chunkX++) {
+				for (int chunkZ = playerData.chunkZ - range; chunkZ <= playerData.chunkZ + range; chunkZ++) {
+					ChunkData chunkData = worldChunks.get(PositionKeys.chunkKey(chunkX, chunkZ));
+					if (chunkData != null) {
+						this.updateChunkActivation(chunkData, playerData, delta);
 					}
-				default:
-					// not expected
-					break;
 				}
 			}
 		}
 	}
 
+	// doesn't check the world:
+	private void updateChunkActivation(ChunkData chunkData, PlayerData playerData, int delta) {
+		int chunkDistance = Math.max(Math.abs(chunkData.chunkX - playerData.chunkX), Math.abs(chunkData.chunkZ - playerData.chunkZ));
+		boolean changed = false;
+		if (chunkDistance <= playerData.aiChunkRange) {
+			chunkData.aiPlayers += delta;
+			changed = true;
+		}
+		if (chunkDistance <= playerData.gravityChunkRange) {
+			chunkData.gravityPlayers += delta;
+			changed = true;
+		}
+		if (changed) {
+			this.updateActiveState(chunkData);
+		}
+	}
+
+	private void updateActiveState(ChunkData chunkData) {
+		if (chunkData.isActive()) {
+			if (chunkData.activeIndex == -1) {
+				chunkData.activeIndex = activeChunks.size();
+				activeChunks.add(chunkData);
+			}
+		} else if (chunkData.activeIndex != -1) {
+			// move the last active chunk into the freed slot:
+			ChunkData lastChunkData = activeChunks.remove(activeChunks.size() - 1);
+			if (lastChunkData != chunkData) {
+				activeChunks.set(chunkData.activeIndex, lastChunkData);
+				lastChunkData.activeIndex = chunkData.activeIndex;
+			}
+			chunkData.activeIndex = -1;
+		}
+	}
+
 	// gets run every tick while falling:
 	private void handleFalling(LivingEntity entity, EntityData entityData) {
 		assert entityData.falling && entityData.distanceToGround >= DISTANCE_TO_GROUND_THRESHOLD;
@@ -500,8 +826,84 @@ public class LivingEntityAI {
 	}
 
 	// gets run every tick while in range of players:
-	private void handleAI(LivingEntity entity) {
-		// look at nearby players: implemented by manually running the vanilla ai goal
-		NMSManager.getProvider().tickAI(entity);
+	private void handleAI(LivingEntity entity, boolean sharedLookAt) {
+		if (sharedLookAt) {
+			// look at nearby players: only drives the look controller, with the target determined by us
+			NMSManager.getProvider().tickLookAt(entity, this.findLookAtTarget(entity));
+		} else {
+			// look at nearby players: implemented by manually running the vanilla ai goal
+			NMSManager.getProvider().tickAI(entity);
+		}
+	}
+
+	// look-at-players:
+
+	private void gatherPlayers() {
+		Collection<? extends Player> onlinePlayers = Bukkit.getOnlinePlayers();
+		int maxPlayerCount = onlinePlayers.size();
+		if (playerEntities.length < maxPlayerCount) {
+			playerEntities = new Player[maxPlayerCount];
+			playerWorldNames = new String[maxPlayerCount];
+			playerXs = new double[maxPlayerCount];
+			playerYs = new double[maxPlayerCount];
+			playerZs = new double[maxPlayerCount];
+			chunkPlayerIndices = new int[maxPlayerCount];
+		}
+		playerCount = 0;
+		for (Player player : onlinePlayers) {
+			// the vanilla goal ignores spectators:
+			if (player.isDead() || player.getGameMode() == GameMode.SPECTATOR) continue;
+			Location playerLocation = player.getLocation(tempLocation);
+			playerEntities[playerCount] = player;
+			playerWorldNames[playerCount] = playerLocation.getWorld().getName();
+			playerXs[playerCount] = playerLocation.getX();
+			playerYs[playerCount] = playerLocation.getY();
+			playerZs[playerCount] = playerLocation.getZ();
+			playerCount++;
+		}
+		tempLocation.setWorld(null); // cleanup temporarily used location object
+	}
+
+	// determines the players within look-at range of the given chunk:
+	private void gatherChunkPlayers(ChunkData chunkData) {
+		double minX = (chunkData.chunkX << 4) - LOOK_AT_RANGE;
+		double minZ = (chunkData.chunkZ << 4) - LOOK_AT_RANGE;
+		double maxX = (chunkData.chunkX << 4) + 16 + LOOK_AT_RANGE;
+		double maxZ = (chunkData.chunkZ << 4) + 16 + LOOK_AT_RANGE;
+		chunkPlayerCount = 0;
+		for (int playerIndex = 0; playerIndex < playerCount; playerIndex++) {
+			double x = playerXs[playerIndex];
+			double z = playerZs[playerIndex];
+			if (x < minX || x > maxX || z < minZ || z > maxZ) continue;
+			if (!playerWorldNames[playerIndex].equals(chunkData.worldName)) continue;
+			chunkPlayerIndices[chunkPlayerCount++] = playerIndex;
+		}
+	}
+
+	// finds the nearest player near the current chunk that is within look-at range of the given entity:
+	private Player findLookAtTarget(LivingEntity entity) {
+		if (chunkPlayerCount == 0) return null;
+		Location entityLocation = entity.getLocation(tempLocation);
+		double entityX = entityLocation.getX();
+		double entityY = entityLocation.getY();
+		double entityZ = entityLocation.getZ();
+		double minY = entityY - LOOK_AT_VERTICAL_RANGE;
+		double maxY = entityY + entity.getHeight() + LOOK_AT_VERTICAL_RANGE;
+		Player target = null;
+		double targetDistanceSquared = LOOK_AT_RANGE_SQUARED;
+		for (int index = 0; index < chunkPlayerCount; index++) {
+			int playerIndex = chunkPlayerIndices[index];
+			double y = playerYs[playerIndex];
+			if (y < minY || y > maxY) continue;
+			double dx = playerXs[playerIndex] - entityX;
+			double dy = y - entityY;
+			double dz = playerZs[playerIndex] - entityZ;
+			double distanceSquared = dx * dx + dy * dy + dz * dz;
+			if (distanceSquared <= targetDistanceSquared) {
+				target = playerEntities[playerIndex];
+				targetDistanceSquared = distanceSquared;
+			}
+		}
+		return target;
 	}
 }
@@ -0,0 +1,65 @@
+package com.nisovin.shopkeepers.shopobjects.living;
+
+import org.bukkit.Location;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+/**
+ * Keeps track of the chunks of the online players for the {@link LivingEntityAI}.
+ */
+class LivingEntityAIListener implements Listener {
+
+	private final LivingEntityAI livingEntityAI;
+
+	LivingEntityAIListener(LivingEntityAI livingEntityAI) {
+		this.livingEntityAI = livingEntityAI;
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onPlayerJoin(PlayerJoinEvent event) {
+		livingEntityAI.updatePlayer(event.getPlayer(), event.getPlayer().getLocation());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onPlayerQuit(PlayerQuitEvent event) {
+		livingEntityAI.removePlayer(event.getPlayer());
+	}
+
+	// teleports are handled separately, since the teleport event has its own handler list:
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onPlayerMove(PlayerMoveEvent event) {
+		Location from = event.getFrom();
+		Location to = event.getTo();
+		if (to == null) return;
+		// only handle moves across chunks:
+		if ((from.getBlockX() >> 4) == (to.getBlockX() >> 4) && (from.getBlockZ() >> 4) == (to.getBlockZ() >> 4)
+				&& from.getWorld() == to.getWorld()) {
+			return;
+		}
+		livingEntityAI.updatePlayer(event.getPlayer(), to);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onPlayerTeleport(PlayerTeleportEvent event) {
+		Location to = event.getTo();
+		if (to == null) return;
+		livingEntityAI.updatePlayer(event.getPlayer(), to);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onPlayerRespawn(PlayerRespawnEvent event) {
+		livingEntityAI.updatePlayer(event.getPlayer(), event.getRespawnLocation());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+		livingEntityAI.updatePlayer(event.getPlayer(), event.getPlayer().getLocation());
+	}
+}
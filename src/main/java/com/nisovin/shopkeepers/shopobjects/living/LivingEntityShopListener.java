@@ -1,9 +1,11 @@
 package com.nisovin.shopkeepers.shopobjects.living;
 
 import java.util.Collection;
+import java.util.List;
 
 import org.bukkit.Location;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
@@ -14,12 +16,23 @@ import org.bukkit.event.Event.Result;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockBurnEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockFadeEvent;
+import org.bukkit.event.block.BlockFromToEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPhysicsEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.block.EntityBlockFormEvent;
+import org.bukkit.event.block.LeavesDecayEvent;
 import org.bukkit.event.entity.CreeperPowerEvent;
 import org.bukkit.event.entity.CreeperPowerEvent.PowerCause;
 import org.bukkit.event.entity.EntityChangeBlockEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.entity.EntityDropItemEvent;
 import org.bukkit.event.entity.EntityExplodeEvent;
 import org.bukkit.event.entity.EntityPortalEvent;
@@ -37,6 +50,7 @@ import org.bukkit.event.player.PlayerBedEnterEvent.BedEnterResult;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
 import org.bukkit.event.vehicle.VehicleEnterEvent;
 import org.bukkit.event.weather.LightningStrikeEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.projectiles.ProjectileSource;
 
@@ -44,20 +58,34 @@ import com.nisovin.shopkeepers.Settings;
 import com.nisovin.shopkeepers.api.shopobjects.DefaultShopObjectTypes;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
+import com.nisovin.shopkeepers.shopobjects.AbstractShopObject;
+import com.nisovin.shopkeepers.shopobjects.entity.AbstractEntityShopObject;
 import com.nisovin.shopkeepers.util.Log;
-import com.nisovin.shopkeepers.util.Utils;
 
 class LivingEntityShopListener implements Listener {
 
 	// the radius around lightning strikes in which villagers turn into witches
 	private static final int VILLAGER_ZAP_RADIUS = 7; // minecraft wiki says 3-4, we use 7 to be safe
 
+	private final LivingShops livingShops;
 	private final SKShopkeeperRegistry shopkeeperRegistry;
 
-	LivingEntityShopListener(SKShopkeeperRegistry shopkeeperRegistry) {
+	LivingEntityShopListener(LivingShops livingShops, SKShopkeeperRegistry shopkeeperRegistry) {
+		this.livingShops = livingShops;
 		this.shopkeeperRegistry = shopkeeperRegistry;
 	}
 
+	// cheaply rejects most non-shopkeeper entities before querying the registry:
+	private boolean isShopkeeper(Entity entity) {
+		return livingShops.isPotentialShopEntity(entity) && shopkeeperRegistry.isShopkeeper(entity);
+	}
+
+	@EventHandler(priority = EventPriority.LOW)
+	void onChunkLoad(ChunkLoadEvent event) {
+		// shopkeepers get activated only after the chunk was loaded, so any tagged entities are left-overs:
+		livingShops.removeOrphanedShopEntities(event.getChunk());
+	}
+
 	@EventHandler(priority = EventPriority.NORMAL, ignoreCancelled = false)
 	void onEntityInteract(PlayerInteractEntityEvent event) {
 		if (!(event.getRightClicked() instanceof LivingEntity)) return;
@@ -67,7 +95,10 @@ class LivingEntityShopListener implements Listener {
 		Log.debug("Player " + playerName + " is interacting with entity at " + shopEntity.getLocation());
 
 		// also checks for citizens npc shopkeepers:
-		AbstractShopkeeper shopkeeper = shopkeeperRegistry.getShopkeeperByEntity(shopEntity);
+		AbstractShopkeeper shopkeeper = null;
+		if (livingShops.isPotentialShopEntity(shopEntity)) {
+			shopkeeper = shopkeeperRegistry.getShopkeeperByEntity(shopEntity);
+		}
 		if (shopkeeper == null) {
 			Log.debug("  Non-shopkeeper");
 			return;
@@ -98,7 +129,7 @@ class LivingEntityShopListener implements Listener {
 
 	@EventHandler(ignoreCancelled = true)
 	void onEntityTarget(EntityTargetEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity()) || shopkeeperRegistry.isShopkeeper(event.getTarget())) {
+		if (this.isShopkeeper(event.getEntity()) || this.isShopkeeper(event.getTarget())) {
 			event.setCancelled(true);
 		}
 	}
@@ -106,7 +137,7 @@ class LivingEntityShopListener implements Listener {
 	@EventHandler(ignoreCancelled = true)
 	void onEntityDamage(EntityDamageEvent event) {
 		Entity entity = event.getEntity();
-		if (!shopkeeperRegistry.isShopkeeper(entity)) return;
+		if (!this.isShopkeeper(entity)) return;
 
 		// block damaging of shopkeepers
 		event.setCancelled(true);
@@ -125,7 +156,7 @@ class LivingEntityShopListener implements Listener {
 	@EventHandler(ignoreCancelled = true)
 	void onEntityEnterVehicle(VehicleEnterEvent event) {
 		Entity entity = event.getEntered();
-		if (shopkeeperRegistry.isShopkeeper(entity)) {
+		if (this.isShopkeeper(entity)) {
 			event.setCancelled(true);
 		}
 	}
@@ -134,14 +165,14 @@ class LivingEntityShopListener implements Listener {
 
 	@EventHandler(ignoreCancelled = true)
 	void onExplodePrime(ExplosionPrimeEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
 
 	@EventHandler(ignoreCancelled = true)
 	void onExplode(EntityExplodeEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 			Log.debug("Cancelled event for living shop: " + event.getEventName());
 		}
@@ -149,7 +180,7 @@ class LivingEntityShopListener implements Listener {
 
 	@EventHandler(ignoreCancelled = true)
 	void onCreeperCharged(CreeperPowerEvent event) {
-		if (event.getCause() == PowerCause.LIGHTNING && shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (event.getCause() == PowerCause.LIGHTNING && this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
@@ -158,35 +189,41 @@ class LivingEntityShopListener implements Listener {
 
 	@EventHandler(ignoreCancelled = true)
 	void onEntityChangeBlock(EntityChangeBlockEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
 
 	@EventHandler(ignoreCancelled = true)
 	void onEntityTeleport(EntityTeleportEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
 
+	// the teleport might have been allowed by another plugin:
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onEntityTeleportMonitor(EntityTeleportEvent event) {
+		this.requestCheck(event.getEntity());
+	}
+
 	@EventHandler(ignoreCancelled = true)
 	void onEntityPortalTeleport(EntityPortalEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
 
 	@EventHandler(ignoreCancelled = true)
 	void onPigZap(PigZapEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
 
 	@EventHandler(ignoreCancelled = true)
 	void onSheepDyed(SheepDyeWoolEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
@@ -196,9 +233,14 @@ class LivingEntityShopListener implements Listener {
 		// workaround: preventing lightning strikes near villager shopkeepers
 		// because they would turn into witches
 		Location loc = event.getLightning().getLocation();
-		for (Entity entity : Utils.getNearbyEntities(loc, VILLAGER_ZAP_RADIUS, EntityType.VILLAGER)) {
-			if (shopkeeperRegistry.isShopkeeper(entity)) {
+		// the shop entities stay at the locations of their shopkeepers:
+		for (AbstractShopkeeper shopkeeper : shopkeeperRegistry.getShopkeepersInRadius(loc, VILLAGER_ZAP_RADIUS, false)) {
+			AbstractShopObject shopObject = shopkeeper.getShopObject();
+			if (!(shopObject instanceof AbstractEntityShopObject)) continue;
+			Entity entity = ((AbstractEntityShopObject) shopObject).getEntity();
+			if (entity != null && entity.getType() == EntityType.VILLAGER) {
 				event.setCancelled(true);
+				return;
 			}
 		}
 	}
@@ -206,7 +248,7 @@ class LivingEntityShopListener implements Listener {
 	@EventHandler(ignoreCancelled = true)
 	void onPotionSplash(PotionSplashEvent event) {
 		for (LivingEntity entity : event.getAffectedEntities()) {
-			if (shopkeeperRegistry.isShopkeeper(entity)) {
+			if (this.isShopkeeper(entity)) {
 				event.setIntensity(entity, 0.0D);
 			}
 		}
@@ -227,7 +269,7 @@ class LivingEntityShopListener implements Listener {
 		});
 
 		for (Entity entity : monsters) {
-			if (!shopkeeperRegistry.isShopkeeper(entity)) {
+			if (!this.isShopkeeper(entity)) {
 				// found non-shopkeeper entity: do nothing (keep bed entering prevented)
 				return;
 			}
@@ -242,7 +284,7 @@ class LivingEntityShopListener implements Listener {
 	@EventHandler(ignoreCancelled = true)
 	void onEntityLaunchProjectile(ProjectileLaunchEvent event) {
 		ProjectileSource source = event.getEntity().getShooter();
-		if (source instanceof LivingEntity && shopkeeperRegistry.isShopkeeper((LivingEntity) source)) {
+		if (source instanceof LivingEntity && this.isShopkeeper((LivingEntity) source)) {
 			event.setCancelled(true);
 		}
 	}
@@ -251,7 +293,7 @@ class LivingEntityShopListener implements Listener {
 
 	@EventHandler(ignoreCancelled = true)
 	void onEntityBlockForm(EntityBlockFormEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
@@ -260,7 +302,7 @@ class LivingEntityShopListener implements Listener {
 
 	@EventHandler(ignoreCancelled = true)
 	void onEntityDropItem(EntityDropItemEvent event) {
-		if (shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
@@ -268,8 +310,134 @@ class LivingEntityShopListener implements Listener {
 	// prevent shopkeeper entities from being affected by potion effects
 	@EventHandler(ignoreCancelled = true)
 	void onEntityPotionEffectEvent(EntityPotionEffectEvent event) {
-		if (event.getAction() == Action.ADDED && shopkeeperRegistry.isShopkeeper(event.getEntity())) {
+		if (event.getAction() == Action.ADDED && this.isShopkeeper(event.getEntity())) {
 			event.setCancelled(true);
 		}
 	}
+
+	// the potion effect might have been allowed by another plugin:
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onEntityPotionEffectMonitor(EntityPotionEffectEvent event) {
+		if (event.getAction() == Action.ADDED) {
+			this.requestCheck(event.getEntity());
+		}
+	}
+
+	// ex: killed via commands
+	@EventHandler(priority = EventPriority.MONITOR)
+	void onEntityDeath(EntityDeathEvent event) {
+		LivingEntity entity = event.getEntity();
+		if (!livingShops.isPotentialShopEntity(entity)) return;
+		AbstractShopkeeper shopkeeper = shopkeeperRegistry.getShopkeeperByEntity(entity);
+		if (shopkeeper != null) {
+			shopkeeperRegistry.requestSpawnVerification(shopkeeper);
+		}
+	}
+
+	// DISPLACEMENT
+
+	// requests a check of the shopkeeper of the given entity, which teleports the entity back if it got displaced:
+	private void requestCheck(Entity entity) {
+		if (!livingShops.isPotentialShopEntity(entity)) return;
+		AbstractShopkeeper shopkeeper = shopkeeperRegistry.getShopkeeperByEntity(entity);
+		if (shopkeeper != null) {
+			shopkeeperRegistry.requestShopkeeperCheck(shopkeeper);
+		}
+	}
+
+	// requests checks of the living shopkeepers whose entities might get displaced by changes of the given block:
+	private void requestChecks(Block block) {
+		this.onBlockChange(block, true);
+	}
+
+	// invalidates the cached ground of the living shopkeepers above the given block, and optionally requests checks of
+	// the living shopkeepers whose entities might get displaced by changes of the given block:
+	private void onBlockChange(Block block, boolean requestChecks) {
+		int blockX = block.getX();
+		int blockY = block.getY();
+		int blockZ = block.getZ();
+		List<AbstractShopkeeper> shopkeepers = shopkeeperRegistry.getShopkeepersInChunk(block.getWorld().getName(), blockX >> 4, blockZ >> 4);
+		for (AbstractShopkeeper shopkeeper : shopkeepers) {
+			if (shopkeeper.getX() != blockX || shopkeeper.getZ() != blockZ) continue;
+			if (blockY > shopkeeper.getY() + 1) continue;
+			AbstractShopObject shopObject = shopkeeper.getShopObject();
+			if (!(shopObject instanceof SKLivingShopObject)) continue;
+			if (blockY <= shopkeeper.getY()) {
+				// the block is located in the column below the shopkeeper:
+				((SKLivingShopObject<?>) shopObject).invalidateGround();
+			}
+			// the entity stands on the ground below its shopkeeper's location (within the spawn location range):
+			if (requestChecks && blockY >= shopkeeper.getY() - 2) {
+				shopkeeperRegistry.requestShopkeeperCheck(shopkeeper);
+			}
+		}
+	}
+
+	// ex: blocks that break due to their supporting block being removed
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockPhysics(BlockPhysicsEvent event) {
+		// physics updates are frequent and often don't change the block, so only the ground gets invalidated:
+		this.onBlockChange(event.getBlock(), false);
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockBreak(BlockBreakEvent event) {
+		this.requestChecks(event.getBlock());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockPlace(BlockPlaceEvent event) {
+		this.requestChecks(event.getBlock());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockBurn(BlockBurnEvent event) {
+		this.requestChecks(event.getBlock());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockFade(BlockFadeEvent event) {
+		this.requestChecks(event.getBlock());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onLeavesDecay(LeavesDecayEvent event) {
+		this.requestChecks(event.getBlock());
+	}
+
+	// ex: flowing water
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockFlow(BlockFromToEvent event) {
+		this.requestChecks(event.getToBlock());
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onPistonExtend(BlockPistonExtendEvent event) {
+		BlockFace direction = event.getDirection();
+		this.requestChecks(event.getBlock().getRelative(direction));
+		for (Block block : event.getBlocks()) {
+			this.requestChecks(block.getRelative(direction));
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onPistonRetract(BlockPistonRetractEvent event) {
+		for (Block block : event.getBlocks()) {
+			this.requestChecks(block);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onBlockExplodeMonitor(BlockExplodeEvent event) {
+		for (Block block : event.blockList()) {
+			this.requestChecks(block);
+		}
+	}
+
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	void onEntityExplodeMonitor(EntityExplodeEvent event) {
+		for (Block block : event.blockList()) {
+			this.requestChecks(block);
+		}
+	}
 }
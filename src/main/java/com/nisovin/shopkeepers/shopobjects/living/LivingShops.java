@@ -1,29 +1,48 @@
 package com.nisovin.shopkeepers.shopobjects.living;
 
+import java.util.UUID;
+
 import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.event.HandlerList;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
 
 import com.nisovin.shopkeepers.SKShopkeepersPlugin;
 import com.nisovin.shopkeepers.Settings;
+import com.nisovin.shopkeepers.pluginhandlers.CitizensHandler;
+import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
+import com.nisovin.shopkeepers.util.ConversionUtils;
+import com.nisovin.shopkeepers.util.Log;
 
 public class LivingShops {
 
 	private final SKShopkeepersPlugin plugin;
 	private final SKLivingShopObjectTypes livingEntityObjectTypes = new SKLivingShopObjectTypes(this);
 	private final LivingEntityAI livingEntityAI;
+	private final LivingEntityAIListener livingEntityAIListener;
 	private final LivingEntityShopListener livingEntityShopListener;
 	private final CreatureForceSpawnListener creatureForceSpawnListener = new CreatureForceSpawnListener();
+	// stores the unique id of the shopkeeper inside the persistent data of its entity:
+	private final NamespacedKey shopkeeperKey;
 
 	public LivingShops(SKShopkeepersPlugin plugin) {
 		this.plugin = plugin;
+		this.shopkeeperKey = new NamespacedKey(plugin, "shopkeeper");
 		livingEntityAI = new LivingEntityAI(plugin);
-		livingEntityShopListener = new LivingEntityShopListener(plugin.getShopkeeperRegistry());
+		livingEntityAIListener = new LivingEntityAIListener(livingEntityAI);
+		livingEntityShopListener = new LivingEntityShopListener(this, plugin.getShopkeeperRegistry());
 	}
 
 	public void onEnable() {
 		Bukkit.getPluginManager().registerEvents(livingEntityShopListener, plugin);
+		Bukkit.getPluginManager().registerEvents(livingEntityAIListener, plugin);
 		// register force-creature-spawn event handler:
 		if (Settings.bypassSpawnBlocking) {
 			Bukkit.getPluginManager().registerEvents(creatureForceSpawnListener, plugin);
@@ -32,6 +51,7 @@ public class LivingShops {
 
 	public void onDisable() {
 		HandlerList.unregisterAll(livingEntityShopListener);
+		HandlerList.unregisterAll(livingEntityAIListener);
 		HandlerList.unregisterAll(creatureForceSpawnListener);
 		// reset force spawning:
 		creatureForceSpawnListener.forceCreatureSpawn(null, null);
@@ -49,6 +69,79 @@ public class LivingShops {
 		return livingEntityAI;
 	}
 
+	// SHOP ENTITY TAGS
+
+	// unlike metadata, the tag gets saved together with the entity, so it is still present after server crashes
+	void tagShopEntity(Entity entity, UUID shopkeeperUniqueId) {
+		entity.getPersistentDataContainer().set(shopkeeperKey, PersistentDataType.STRING, shopkeeperUniqueId.toString());
+	}
+
+	void untagShopEntity(Entity entity) {
+		entity.getPersistentDataContainer().remove(shopkeeperKey);
+	}
+
+	/**
+	 * Gets the unique id of the shopkeeper the given entity got tagged with.
+	 * 
+	 * @param entity
+	 *            the entity
+	 * @return the shopkeeper's unique id, or <code>null</code> if the entity is not tagged
+	 */
+	public UUID getTaggedShopkeeperUniqueId(Entity entity) {
+		PersistentDataContainer dataContainer = entity.getPersistentDataContainer();
+		String uniqueIdString = dataContainer.get(shopkeeperKey, PersistentDataType.STRING);
+		if (uniqueIdString == null) return null;
+		return ConversionUtils.parseUUID(uniqueIdString);
+	}
+
+	/**
+	 * Quickly checks if the given entity might be a shopkeeper, without querying the shopkeeper registry.
+	 * <p>
+	 * Only the entities that got tagged by us, or that are Citizens NPCs, can be shopkeepers.
+	 * 
+	 * @param entity
+	 *            the entity, can be <code>null</code>
+	 * @return <code>false</code> if the entity is certainly no shopkeeper
+	 */
+	public boolean isPotentialShopEntity(Entity entity) {
+		if (entity == null) return false;
+		if (entity.getPersistentDataContainer().has(shopkeeperKey, PersistentDataType.STRING)) return true;
+		return plugin.getCitizensShops().isEnabled() && CitizensHandler.isNPC(entity);
+	}
+
+	/**
+	 * Removes the orphaned shop entities in all loaded chunks.
+	 * <p>
+	 * This is supposed to be called after the shopkeepers have been loaded, but before they get activated.
+	 */
+	public void removeOrphanedShopEntities() {
+		for (World world : Bukkit.getWorlds()) {
+			for (Chunk chunk : world.getLoadedChunks()) {
+				this.removeOrphanedShopEntities(chunk);
+			}
+		}
+	}
+
+	// removes tagged entities that are not used by any active shopkeeper (eg. left over after server crashes)
+	// if shop entities are persistent, entities of inactive shopkeepers are kept, because they get re-bound once their
+	// shopkeepers get activated
+	void removeOrphanedShopEntities(Chunk chunk) {
+		SKShopkeeperRegistry shopkeeperRegistry = plugin.getShopkeeperRegistry();
+		for (Entity entity : chunk.getEntities()) {
+			if (!entity.getPersistentDataContainer().has(shopkeeperKey, PersistentDataType.STRING)) continue;
+			if (shopkeeperRegistry.isShopkeeper(entity)) continue;
+			UUID shopkeeperUniqueId = this.getTaggedShopkeeperUniqueId(entity);
+			if (Settings.persistentShopEntities && shopkeeperUniqueId != null && shopkeeperRegistry.containsShopkeeper(shopkeeperUniqueId)) {
+				AbstractShopkeeper shopkeeper = shopkeeperRegistry.getMaterializedShopkeeper(shopkeeperUniqueId);
+				// the shopkeeper might already be active with another entity:
+				if (shopkeeper == null || !shopkeeper.isActive()) continue;
+			}
+			Log.debug("Removing orphaned shopkeeper entity " + entity.getType() + " (shopkeeper "
+					+ shopkeeperUniqueId + ") at " + entity.getLocation());
+			entity.remove();
+		}
+	}
+
 	// bypassing creature spawn blocking plugins ('region protection' plugins):
 	void forceCreatureSpawn(Location location, EntityType entityType) {
 		if (Settings.bypassSpawnBlocking) {
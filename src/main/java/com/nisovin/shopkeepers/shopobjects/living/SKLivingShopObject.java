@@ -5,6 +5,7 @@ import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Ageable;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.inventory.EntityEquipment;
@@ -19,7 +20,9 @@ import com.nisovin.shopkeepers.api.util.ChunkCoords;
 import com.nisovin.shopkeepers.compat.NMSManager;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.entity.AbstractEntityShopObject;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.util.Log;
+import com.nisovin.shopkeepers.util.PositionKeys;
 import com.nisovin.shopkeepers.util.Utils;
 
 public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntityShopObject implements LivingShopObject {
@@ -31,6 +34,12 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 	private final SKLivingShopObjectType<?> livingObjectType;
 	private E entity;
 	private int respawnAttempts = 0;
+	// whether the entity gets despawned due to its chunk being unloaded:
+	private boolean chunkUnloading = false;
+	// the distance of the spawn location to the ground, cached for the shopkeeper's position (NaN if not cached):
+	private double cachedDistanceToGround = Double.NaN;
+	private String cachedGroundWorldName = null;
+	private long cachedGroundBlockKey = 0L;
 
 	protected SKLivingShopObject(	LivingShops livingShops, SKLivingShopObjectType<?> livingObjectType,
 									AbstractShopkeeper shopkeeper, ShopCreationData creationData) {
@@ -60,8 +69,8 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
 	}
 
 	// ACTIVATION
@@ -91,21 +100,33 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 
 	protected void assignShopkeeperMetadata(E entity) {
 		entity.setMetadata("shopkeeper", new FixedMetadataValue(ShopkeepersPlugin.getInstance(), true));
+		livingShops.tagShopEntity(entity, shopkeeper.getUniqueId());
 	}
 
 	protected void removeShopkeeperMetadata(E entity) {
 		entity.removeMetadata("shopkeeper", ShopkeepersPlugin.getInstance());
+		livingShops.untagShopEntity(entity);
 	}
 
 	// places the entity at the exact location it would fall to, within a range of at most 1 block below the spawn block
 	// (because shopkeepers might have been placed 1 block above passable or non-full blocks)
+	// the distance to the ground gets cached until the blocks below the shopkeeper change (see invalidateGround)
 	private Location getSpawnLocation() {
 		World world = Bukkit.getWorld(shopkeeper.getWorldName());
 		Location spawnLocation = new Location(world, shopkeeper.getX() + 0.5D, shopkeeper.getY() + SPAWN_LOCATION_OFFSET, shopkeeper.getZ() + 0.5D);
-		double distanceToGround = Utils.getCollisionDistanceToGround(spawnLocation, SPAWN_LOCATION_RANGE);
-		if (distanceToGround == SPAWN_LOCATION_RANGE) {
-			// no collision within the checked range, remove offset from spawn location:
-			distanceToGround = SPAWN_LOCATION_OFFSET;
+		long blockKey = PositionKeys.blockKey(shopkeeper.getX(), shopkeeper.getY(), shopkeeper.getZ());
+		double distanceToGround;
+		if (!Double.isNaN(cachedDistanceToGround) && cachedGroundBlockKey == blockKey && shopkeeper.getWorldName().equals(cachedGroundWorldName)) {
+			distanceToGround = cachedDistanceToGround;
+		} else {
+			distanceToGround = Utils.getCollisionDistanceToGround(spawnLocation, SPAWN_LOCATION_RANGE);
+			if (distanceToGround == SPAWN_LOCATION_RANGE) {
+				// no collision within the checked range, remove offset from spawn location:
+				distanceToGround = SPAWN_LOCATION_OFFSET;
+			}
+			cachedDistanceToGround = distanceToGround;
+			cachedGroundWorldName = shopkeeper.getWorldName();
+			cachedGroundBlockKey = blockKey;
 		}
 		// adjust spawn location:
 		spawnLocation.add(0.0D, -distanceToGround, 0.0D);
@@ -117,21 +138,37 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 		// check if our current old entity is still valid:
 		if (this.isActive()) return true;
 		if (entity != null) {
-			// clean up metadata before replacing the currently stored entity with a new one:
+			// clean up AI and metadata before replacing the currently stored entity with a new one:
+			this.cleanupAI();
 			this.removeShopkeeperMetadata(entity);
 		}
 
+		chunkUnloading = false;
+
 		// prepare location:
 		World world = Bukkit.getWorld(shopkeeper.getWorldName());
 		Location spawnLocation = this.getSpawnLocation();
 
-		// spawn entity:
-		// TODO check if the block is passable before spawning there?
-		// try to bypass entity-spawn blocking plugins:
-		EntityType entityType = this.getEntityType();
-		livingShops.forceCreatureSpawn(spawnLocation, entityType);
+		// re-bind the entity that got saved together with the chunk, if there is one:
+		E persistedEntity = (Settings.persistentShopEntities ? this.findPersistedEntity(spawnLocation) : null);
+		if (persistedEntity != null) {
+			entity = persistedEntity;
+			Location entityLoc = entity.getLocation();
+			if (entityLoc.distanceSquared(spawnLocation) > 0.4D) {
+				spawnLocation.setYaw(entityLoc.getYaw());
+				spawnLocation.setPitch(entityLoc.getPitch());
+				entity.teleport(spawnLocation);
+			}
+			Log.debug("Re-bound persisted entity of shopkeeper at " + shopkeeper.getPositionString());
+		} else {
+			// spawn entity:
+			// TODO check if the block is passable before spawning there?
+			// try to bypass entity-spawn blocking plugins:
+			EntityType entityType = this.getEntityType();
+			livingShops.forceCreatureSpawn(spawnLocation, entityType);
 
-		entity = (E) world.spawnEntity(spawnLocation, entityType);
+			entity = (E) world.spawnEntity(spawnLocation, entityType);
+		}
 
 		if (this.isActive()) {
 			// assign metadata for easy identification by other plugins:
@@ -142,8 +179,8 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 			entity.eject(); // some entities might automatically mount on nearby entities (like baby zombies on chicken)
 			entity.setRemoveWhenFarAway(false);
 			entity.setCanPickupItems(false);
-			// don't save the entity to the world data:
-			entity.setPersistent(false);
+			// only save the entity to the world data if it gets re-bound on the next chunk load:
+			entity.setPersistent(Settings.persistentShopEntities);
 
 			// disable breeding:
 			if (entity instanceof Ageable) {
@@ -177,6 +214,22 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 		}
 	}
 
+	// finds the entity of this shopkeeper that got saved together with the chunk, and removes any duplicates
+	private E findPersistedEntity(Location spawnLocation) {
+		E persistedEntity = null;
+		for (Entity chunkEntity : spawnLocation.getChunk().getEntities()) {
+			if (chunkEntity.isDead()) continue;
+			if (!shopkeeper.getUniqueId().equals(livingShops.getTaggedShopkeeperUniqueId(chunkEntity))) continue;
+			if (persistedEntity == null && chunkEntity.getType() == this.getEntityType()) {
+				persistedEntity = (E) chunkEntity;
+			} else {
+				// duplicate entity, or the shop object type has changed:
+				chunkEntity.remove();
+			}
+		}
+		return persistedEntity;
+	}
+
 	// gets called after the entity was spawned; can be used to apply any additionally configured mob-specific setup
 	protected void onSpawn(E entity) {
 		// nothing to do by default
@@ -248,13 +301,32 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 		livingShops.getLivingEntityAI().removeEntity(entity);
 	}
 
+	@Override
+	public void onChunkUnload(boolean worldSaving) {
+		super.onChunkUnload(worldSaving);
+		if (!worldSaving) {
+			chunkUnloading = true;
+		}
+	}
+
 	@Override
 	public void despawn() {
 		if (entity == null) return;
+		boolean keepEntity = (chunkUnloading && Settings.persistentShopEntities && this.isInShopkeeperChunk(entity));
+		chunkUnloading = false;
+		// the blocks below the shopkeeper might change while it is not spawned:
+		cachedDistanceToGround = Double.NaN;
 
 		// disable AI:
 		this.cleanupAI();
 
+		if (keepEntity) {
+			// the entity gets saved together with its chunk and gets re-bound once the chunk gets loaded again:
+			entity.removeMetadata("shopkeeper", ShopkeepersPlugin.getInstance());
+			entity = null;
+			return;
+		}
+
 		// cleanup metadata:
 		this.removeShopkeeperMetadata(entity);
 
@@ -263,6 +335,13 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 		entity = null;
 	}
 
+	private boolean isInShopkeeperChunk(E entity) {
+		Location entityLoc = entity.getLocation();
+		return entityLoc.getWorld().getName().equals(shopkeeper.getWorldName())
+				&& (entityLoc.getBlockX() >> 4) == (shopkeeper.getX() >> 4)
+				&& (entityLoc.getBlockZ() >> 4) == (shopkeeper.getZ() >> 4);
+	}
+
 	@Override
 	public Location getLocation() {
 		if (this.isActive()) {
@@ -299,6 +378,7 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 				// teleport back:
 				entity.teleport(spawnLocation);
 				this.overwriteAI();
+				livingShops.getLivingEntityAI().invalidateGround(entity);
 				Log.debug("Shopkeeper (" + shopkeeper.getPositionString() + ") out of place, teleported back");
 			}
 
@@ -319,6 +399,20 @@ public class SKLivingShopObject<E extends LivingEntity> extends AbstractEntitySh
 		spawnLocation.setYaw(entityLoc.getYaw());
 		spawnLocation.setPitch(entityLoc.getPitch());
 		entity.teleport(spawnLocation);
+		livingShops.getLivingEntityAI().invalidateGround(entity);
+	}
+
+	/**
+	 * Discards the cached distance to the ground below the shopkeeper, and makes the gravity handling check again
+	 * whether the entity is meant to fall.
+	 * <p>
+	 * This gets called when the blocks below the shopkeeper have changed.
+	 */
+	public void invalidateGround() {
+		cachedDistanceToGround = Double.NaN;
+		if (this.isActive()) {
+			livingShops.getLivingEntityAI().invalidateGround(entity);
+		}
 	}
 
 	// NAMING
@@ -20,6 +20,7 @@ import com.nisovin.shopkeepers.property.Property;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.living.LivingShops;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObjectType;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 import com.nisovin.shopkeepers.util.Utils;
@@ -51,10 +52,10 @@ public class CatShop extends SittableShop<Cat> {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		PROPERTY_CAT_TYPE.save(shopkeeper, configSection, catType);
-		PROPERTY_COLLAR_COLOR.save(shopkeeper, configSection, collarColor);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		PROPERTY_CAT_TYPE.save(shopkeeper, snapshotSection, catType);
+		PROPERTY_COLLAR_COLOR.save(shopkeeper, snapshotSection, collarColor);
 	}
 
 	@Override
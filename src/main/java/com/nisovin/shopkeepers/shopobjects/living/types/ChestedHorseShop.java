@@ -17,6 +17,7 @@ import com.nisovin.shopkeepers.property.Property;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.living.LivingShops;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObjectType;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 
@@ -38,9 +39,9 @@ public class ChestedHorseShop<E extends ChestedHorse> extends BabyableShop<E> {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		PROPERTY_CARRYING_CHEST.save(shopkeeper, configSection, carryingChest);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		PROPERTY_CARRYING_CHEST.save(shopkeeper, snapshotSection, carryingChest);
 	}
 
 	@Override
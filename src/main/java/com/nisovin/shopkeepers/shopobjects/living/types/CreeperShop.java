@@ -18,6 +18,7 @@ import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.living.LivingShops;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObject;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObjectType;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 
@@ -39,9 +40,9 @@ public class CreeperShop extends SKLivingShopObject<Creeper> {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		PROPERTY_POWERED.save(shopkeeper, configSection, powered);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		PROPERTY_POWERED.save(shopkeeper, snapshotSection, powered);
 	}
 
 	@Override
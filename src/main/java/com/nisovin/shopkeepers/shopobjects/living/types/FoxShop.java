@@ -20,6 +20,7 @@ import com.nisovin.shopkeepers.property.Property;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.living.LivingShops;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObjectType;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 import com.nisovin.shopkeepers.util.Utils;
@@ -52,11 +53,11 @@ public class FoxShop extends SittableShop<Fox> {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		PROPERTY_FOX_TYPE.save(shopkeeper, configSection, foxType);
-		PROPERTY_SLEEPING.save(shopkeeper, configSection, sleeping);
-		PROPERTY_CROUCHING.save(shopkeeper, configSection, crouching);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		PROPERTY_FOX_TYPE.save(shopkeeper, snapshotSection, foxType);
+		PROPERTY_SLEEPING.save(shopkeeper, snapshotSection, sleeping);
+		PROPERTY_CROUCHING.save(shopkeeper, snapshotSection, crouching);
 	}
 
 	@Override
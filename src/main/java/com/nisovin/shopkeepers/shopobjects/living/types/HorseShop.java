@@ -22,6 +22,7 @@ import com.nisovin.shopkeepers.property.Property;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.living.LivingShops;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObjectType;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 import com.nisovin.shopkeepers.util.Utils;
@@ -72,11 +73,11 @@ public class HorseShop extends BabyableShop<Horse> {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		PROPERTY_COLOR.save(shopkeeper, configSection, color);
-		PROPERTY_STYLE.save(shopkeeper, configSection, style);
-		PROPERTY_ARMOR.save(shopkeeper, configSection, armor);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		PROPERTY_COLOR.save(shopkeeper, snapshotSection, color);
+		PROPERTY_STYLE.save(shopkeeper, snapshotSection, style);
+		PROPERTY_ARMOR.save(shopkeeper, snapshotSection, armor);
 	}
 
 	@Override
@@ -19,6 +19,7 @@ import com.nisovin.shopkeepers.property.Property;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.living.LivingShops;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObjectType;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 import com.nisovin.shopkeepers.util.Utils;
@@ -50,10 +51,10 @@ public class LlamaShop<E extends Llama> extends ChestedHorseShop<E> {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		PROPERTY_COLOR.save(shopkeeper, configSection, color);
-		PROPERTY_CARPET_COLOR.save(shopkeeper, configSection, carpetColor);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		PROPERTY_COLOR.save(shopkeeper, snapshotSection, color);
+		PROPERTY_CARPET_COLOR.save(shopkeeper, snapshotSection, carpetColor);
 	}
 
 	@Override
@@ -22,6 +22,7 @@ import com.nisovin.shopkeepers.property.Property;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.living.LivingShops;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObjectType;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 import com.nisovin.shopkeepers.util.Log;
@@ -83,11 +84,11 @@ public class VillagerShop extends BabyableShop<Villager> {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		PROPERTY_PROFESSION.save(shopkeeper, configSection, profession);
-		PROPERTY_VILLAGER_TYPE.save(shopkeeper, configSection, villagerType);
-		PROPERTY_VILLAGER_LEVEL.save(shopkeeper, configSection, villagerLevel);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		PROPERTY_PROFESSION.save(shopkeeper, snapshotSection, profession);
+		PROPERTY_VILLAGER_TYPE.save(shopkeeper, snapshotSection, villagerType);
+		PROPERTY_VILLAGER_LEVEL.save(shopkeeper, snapshotSection, villagerLevel);
 	}
 
 	@Override
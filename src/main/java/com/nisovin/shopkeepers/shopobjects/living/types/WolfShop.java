@@ -19,6 +19,7 @@ import com.nisovin.shopkeepers.property.Property;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.living.LivingShops;
 import com.nisovin.shopkeepers.shopobjects.living.SKLivingShopObjectType;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 import com.nisovin.shopkeepers.util.Utils;
@@ -50,10 +51,10 @@ public class WolfShop extends SittableShop<Wolf> {
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
-		PROPERTY_ANGRY.save(shopkeeper, configSection, angry);
-		PROPERTY_COLLAR_COLOR.save(shopkeeper, configSection, collarColor);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
+		PROPERTY_ANGRY.save(shopkeeper, snapshotSection, angry);
+		PROPERTY_COLLAR_COLOR.save(shopkeeper, snapshotSection, collarColor);
 	}
 
 	@Override
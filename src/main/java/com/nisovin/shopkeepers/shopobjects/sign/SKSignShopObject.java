@@ -24,6 +24,7 @@ import com.nisovin.shopkeepers.api.shopkeeper.player.PlayerShopkeeper;
 import com.nisovin.shopkeepers.api.shopobjects.sign.SignShopObject;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
 import com.nisovin.shopkeepers.shopobjects.block.AbstractBlockShopObject;
+import com.nisovin.shopkeepers.storage.SnapshotSection;
 import com.nisovin.shopkeepers.ui.defaults.EditorHandler;
 import com.nisovin.shopkeepers.util.ItemUtils;
 import com.nisovin.shopkeepers.util.Log;
@@ -103,17 +104,17 @@ public class SKSignShopObject extends AbstractBlockShopObject implements SignSho
 	}
 
 	@Override
-	public void save(ConfigurationSection configSection) {
-		super.save(configSection);
+	public void save(SnapshotSection snapshotSection) {
+		super.save(snapshotSection);
 
 		// sign type:
-		configSection.set("signType", signType.name());
+		snapshotSection.set("signType", signType.name());
 
 		// wall sign vs sign post:
-		configSection.set("wallSign", wallSign);
+		snapshotSection.set("wallSign", wallSign);
 
 		// sign facing:
-		configSection.set("signFacing", signFacing.name());
+		snapshotSection.set("signFacing", signFacing.name());
 	}
 
 	public boolean isWallSign() {
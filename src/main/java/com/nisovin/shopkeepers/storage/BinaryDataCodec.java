@@ -0,0 +1,238 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.configuration.serialization.ConfigurationSerializable;
+import org.bukkit.configuration.serialization.ConfigurationSerialization;
+import org.bukkit.inventory.ItemStack;
+
+import com.nisovin.shopkeepers.compat.NMSManager;
+import com.nisovin.shopkeepers.compat.api.NMSCallProvider;
+
+/**
+ * Encodes and decodes configuration data in a compact binary form.
+ * <p>
+ * Each value is stored as a type tag followed by its data. Item stacks are stored as their NBT data (if supported by
+ * the server version), which gets upgraded from the data version it got saved with when being read. Other serializable
+ * objects are stored via their serialized form, just like inside YAML files. Values of any other types are stored as
+ * embedded YAML.
+ */
+class BinaryDataCodec {
+
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_MAP = 1;
+	private static final byte TAG_LIST = 2;
+	private static final byte TAG_STRING = 3;
+	private static final byte TAG_BOOLEAN = 4;
+	private static final byte TAG_BYTE = 5;
+	private static final byte TAG_SHORT = 6;
+	private static final byte TAG_INT = 7;
+	private static final byte TAG_LONG = 8;
+	private static final byte TAG_FLOAT = 9;
+	private static final byte TAG_DOUBLE = 10;
+	private static final byte TAG_ITEM_STACK = 11;
+	private static final byte TAG_SERIALIZABLE = 12;
+	private static final byte TAG_YAML = 13;
+
+	private static final String YAML_VALUE_KEY = "value";
+
+	private BinaryDataCodec() {
+	}
+
+	// ENCODING
+
+	public static void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.writeByte(TAG_NULL);
+		} else if (value instanceof ConfigurationSection) {
+			writeMap(out, TAG_MAP, ((ConfigurationSection) value).getValues(false));
+		} else if (value instanceof Map && hasStringKeys((Map<?, ?>) value)) {
+			writeMap(out, TAG_MAP, (Map<?, ?>) value);
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			out.writeByte(TAG_LIST);
+			out.writeInt(list.size());
+			for (Object element : list) {
+				writeValue(out, element);
+			}
+		} else if (value instanceof String) {
+			out.writeByte(TAG_STRING);
+			writeString(out, (String) value);
+		} else if (value instanceof Boolean) {
+			out.writeByte(TAG_BOOLEAN);
+			out.writeBoolean((Boolean) value);
+		} else if (value instanceof Byte) {
+			out.writeByte(TAG_BYTE);
+			out.writeByte((Byte) value);
+		} else if (value instanceof Short) {
+			out.writeByte(TAG_SHORT);
+			out.writeShort((Short) value);
+		} else if (value instanceof Integer) {
+			out.writeByte(TAG_INT);
+			out.writeInt((Integer) value);
+		} else if (value instanceof Long) {
+			out.writeByte(TAG_LONG);
+			out.writeLong((Long) value);
+		} else if (value instanceof Float) {
+			out.writeByte(TAG_FLOAT);
+			out.writeFloat((Float) value);
+		} else if (value instanceof Double) {
+			out.writeByte(TAG_DOUBLE);
+			out.writeDouble((Double) value);
+		} else if (value instanceof ItemStack && writeItemStack(out, (ItemStack) value)) {
+			// written as NBT data
+		} else if (value instanceof ConfigurationSerializable) {
+			ConfigurationSerializable serializable = (ConfigurationSerializable) value;
+			Map<String, Object> serialized = new LinkedHashMap<>();
+			serialized.put(ConfigurationSerialization.SERIALIZED_TYPE_KEY, ConfigurationSerialization.getAlias(serializable.getClass()));
+			serialized.putAll(serializable.serialize());
+			writeMap(out, TAG_SERIALIZABLE, serialized);
+		} else {
+			// fallback: embedded yaml
+			YamlConfiguration yaml = new YamlConfiguration();
+			yaml.set(YAML_VALUE_KEY, value);
+			out.writeByte(TAG_YAML);
+			writeString(out, yaml.saveToString());
+		}
+	}
+
+	private static boolean hasStringKeys(Map<?, ?> map) {
+		for (Object key : map.keySet()) {
+			if (!(key instanceof String)) return false;
+		}
+		return true;
+	}
+
+	private static void writeMap(DataOutputStream out, byte tag, Map<?, ?> map) throws IOException {
+		out.writeByte(tag);
+		out.writeInt(map.size());
+		for (Entry<?, ?> entry : map.entrySet()) {
+			writeString(out, (String) entry.getKey());
+			writeValue(out, entry.getValue());
+		}
+	}
+
+	// returns false if not supported by the server version
+	private static boolean writeItemStack(DataOutputStream out, ItemStack itemStack) throws IOException {
+		byte[] itemData = NMSManager.getProvider().serializeItemStack(itemStack);
+		if (itemData == null) return false;
+		out.writeByte(TAG_ITEM_STACK);
+		out.writeInt(itemData.length);
+		out.write(itemData);
+		return true;
+	}
+
+	// not limited in length, unlike DataOutput#writeUTF
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	// DECODING
+
+	/**
+	 * Reads a value.
+	 * <p>
+	 * Maps are returned as {@link Map Maps} with String keys. When set via
+	 * {@link ConfigurationSection#createSection(String, Map)}, they get converted to configuration sections, just like
+	 * when loading YAML data.
+	 *
+	 * @param in
+	 *            the input
+	 * @param itemDataVersion
+	 *            the data version of the contained item data (see {@link NMSCallProvider#getItemDataVersion()})
+	 * @return the value
+	 * @throws IOException
+	 *             if the data is invalid or cannot be read
+	 */
+	public static Object readValue(DataInputStream in, int itemDataVersion) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case TAG_NULL:
+			return null;
+		case TAG_MAP:
+			return readMap(in, itemDataVersion);
+		case TAG_LIST:
+			int size = in.readInt();
+			List<Object> list = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				list.add(readValue(in, itemDataVersion));
+			}
+			return list;
+		case TAG_STRING:
+			return readString(in);
+		case TAG_BOOLEAN:
+			return in.readBoolean();
+		case TAG_BYTE:
+			return in.readByte();
+		case TAG_SHORT:
+			return in.readShort();
+		case TAG_INT:
+			return in.readInt();
+		case TAG_LONG:
+			return in.readLong();
+		case TAG_FLOAT:
+			return in.readFloat();
+		case TAG_DOUBLE:
+			return in.readDouble();
+		case TAG_ITEM_STACK:
+			byte[] itemData = new byte[in.readInt()];
+			in.readFully(itemData);
+			ItemStack itemStack;
+			try {
+				itemStack = NMSManager.getProvider().deserializeItemStack(itemData, itemDataVersion);
+			} catch (Exception e) {
+				throw new IOException("Invalid item data!", e);
+			}
+			if (itemStack == null) {
+				throw new IOException("Loading item data is not supported on this server version!");
+			}
+			return itemStack;
+		case TAG_SERIALIZABLE:
+			Map<String, Object> serialized = readMap(in, itemDataVersion);
+			try {
+				return ConfigurationSerialization.deserializeObject(serialized);
+			} catch (Exception e) {
+				throw new IOException("Couldn't deserialize object of type '" + serialized.get(ConfigurationSerialization.SERIALIZED_TYPE_KEY) + "'!", e);
+			}
+		case TAG_YAML:
+			YamlConfiguration yaml = new YamlConfiguration();
+			try {
+				yaml.loadFromString(readString(in));
+			} catch (InvalidConfigurationException e) {
+				throw new IOException("Invalid embedded YAML data!", e);
+			}
+			return yaml.get(YAML_VALUE_KEY);
+		default:
+			throw new IOException("Unknown value type: " + tag);
+		}
+	}
+
+	private static Map<String, Object> readMap(DataInputStream in, int itemDataVersion) throws IOException {
+		int size = in.readInt();
+		Map<String, Object> map = new LinkedHashMap<>();
+		for (int i = 0; i < size; i++) {
+			String key = readString(in);
+			map.put(key, readValue(in, itemDataVersion));
+		}
+		return map;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,257 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.stream.IntStream;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.compat.NMSManager;
+import com.nisovin.shopkeepers.compat.api.NMSCallProvider;
+import com.nisovin.shopkeepers.util.Log;
+
+/**
+ * Stores all shopkeepers inside a single binary 'save.dat' file.
+ * <p>
+ * The file starts with a header (magic number, format version, data version, and the Minecraft data version and server
+ * version the items got saved with), followed by one record per shopkeeper and an end marker. Each record consists of
+ * its type, the shopkeeper key and the length of the record's data. This allows skipping records of unknown types
+ * (which get written back unchanged). It would also allow reading a single record without decoding the others.
+ * However, this is not done currently: The data of all shopkeepers is required during loading anyways, also for the
+ * stubs of lazily loaded shopkeepers.
+ * <p>
+ * Items of older Minecraft versions get upgraded during loading. Items that cannot be loaded by the current server
+ * version (ex. if the server got downgraded, or if item data is not supported) cause the loading to fail before any
+ * shopkeeper data gets decoded. In order to change the server version in those cases, the data needs to be converted to
+ * another storage type first.
+ */
+class BinaryStorageBackend implements StorageBackend {
+
+	private static final int MAGIC = 0x534B4244; // "SKBD"
+	private static final int FORMAT_VERSION = 2;
+
+	private static final byte RECORD_END = 0;
+	private static final byte RECORD_SHOPKEEPER = 1;
+
+	private static class Header {
+
+		private final int dataVersion;
+		private final int itemDataVersion;
+
+		Header(int dataVersion, int itemDataVersion) {
+			this.dataVersion = dataVersion;
+			this.itemDataVersion = itemDataVersion;
+		}
+	}
+
+	private static class UnknownRecord {
+
+		private final byte type;
+		private final String key;
+		private final byte[] data;
+
+		UnknownRecord(byte type, String key, byte[] data) {
+			this.type = type;
+			this.key = key;
+			this.data = data;
+		}
+	}
+
+	private final SaveFile saveFile;
+	// buffer that holds the data that gets used by the current async save task:
+	private final Map<String, ConfigurationSection> shopkeepersData = new LinkedHashMap<>();
+	private final List<UnknownRecord> unknownRecords = new ArrayList<>();
+
+	BinaryStorageBackend(SKShopkeepersPlugin plugin) {
+		this.saveFile = new SaveFile(new File(plugin.getDataFolder(), "save.dat"));
+	}
+
+	@Override
+	public StorageType getType() {
+		return StorageType.BINARY;
+	}
+
+	@Override
+	public boolean exists() {
+		return saveFile.exists();
+	}
+
+	private Header readHeader(DataInputStream in, File file) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a shopkeepers save file: " + file.getName());
+		}
+		int formatVersion = in.readInt();
+		if (formatVersion > FORMAT_VERSION) {
+			throw new IOException("Unsupported save file format version: " + formatVersion);
+		}
+		int dataVersion = in.readInt();
+		NMSCallProvider nmsProvider = NMSManager.getProvider();
+		int currentItemDataVersion = nmsProvider.getItemDataVersion();
+		int itemDataVersion;
+		String serverVersion;
+		if (formatVersion == 1) {
+			// the item data version is not known, only the server version:
+			serverVersion = in.readUTF();
+			itemDataVersion = (serverVersion.equals(nmsProvider.getVersionId()) ? currentItemDataVersion : -1);
+		} else {
+			itemDataVersion = in.readInt();
+			serverVersion = in.readUTF();
+		}
+
+		// check whether the items can be loaded, before starting to decode the shopkeeper data:
+		// note: an item data version of 0 indicates that the items were not saved as NBT data
+		if (itemDataVersion != 0 && (currentItemDataVersion == 0 || itemDataVersion == -1 || itemDataVersion > currentItemDataVersion)) {
+			throw new IOException("The items inside '" + file.getName() + "' were saved on a server version ("
+					+ serverVersion + ") whose item data cannot be loaded by this server version ("
+					+ nmsProvider.getVersionId() + "). Convert the save data to yaml (via '/shopkeeper convertStorage yaml') "
+					+ "on the previous server version before changing the server version.");
+		}
+		if (itemDataVersion != 0 && itemDataVersion < currentItemDataVersion) {
+			Log.info("Upgrading the items inside '" + file.getName() + "' from Minecraft data version " + itemDataVersion
+					+ " to " + currentItemDataVersion + ".");
+		}
+		return new Header(dataVersion, itemDataVersion);
+	}
+
+	@Override
+	public void load(FileConfiguration saveData) throws Exception {
+		this.clear();
+		File loadFile = saveFile.getLoadFile();
+		if (loadFile == null) return;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(loadFile)))) {
+			Header header = this.readHeader(in, loadFile);
+			saveData.set(SKShopkeeperStorage.DATA_VERSION_KEY, header.dataVersion);
+
+			List<String> keys = new ArrayList<>();
+			List<byte[]> records = new ArrayList<>();
+			byte recordType;
+			while ((recordType = in.readByte()) != RECORD_END) {
+				String key = in.readUTF();
+				byte[] recordData = new byte[in.readInt()];
+				in.readFully(recordData);
+				if (recordType != RECORD_SHOPKEEPER) {
+					// keep unknown records:
+					unknownRecords.add(new UnknownRecord(recordType, key, recordData));
+					continue;
+				}
+				keys.add(key);
+				records.add(recordData);
+			}
+
+			// decode the shopkeeper data in parallel:
+			Map<?, ?>[] decodedRecords = new Map<?, ?>[records.size()];
+			try {
+				IntStream.range(0, records.size()).parallel().forEach(index -> {
+					try {
+						decodedRecords[index] = this.decodeShopkeeperData(keys.get(index), records.get(index), header.itemDataVersion);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				});
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			for (int index = 0; index < decodedRecords.length; index++) {
+				String key = keys.get(index);
+				ConfigurationSection shopkeeperSection = saveData.createSection(key, decodedRecords[index]);
+				shopkeepersData.put(key, shopkeeperSection);
+			}
+		}
+	}
+
+	private Map<?, ?> decodeShopkeeperData(String key, byte[] recordData, int itemDataVersion) throws IOException {
+		try (DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(recordData))) {
+			Object value = BinaryDataCodec.readValue(recordIn, itemDataVersion);
+			if (!(value instanceof Map)) {
+				throw new IOException("Invalid data!");
+			}
+			return (Map<?, ?>) value;
+		} catch (IOException e) {
+			throw new IOException("Couldn't load data of shopkeeper '" + key + "': " + e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public void replaceAll(ConfigurationSection saveData) {
+		// note: keeps unknown records
+		shopkeepersData.clear();
+		for (String key : saveData.getKeys(false)) {
+			if (key.equals(SKShopkeeperStorage.DATA_VERSION_KEY)) continue;
+			ConfigurationSection shopkeeperSection = saveData.getConfigurationSection(key);
+			if (shopkeeperSection == null) continue; // invalid data
+			shopkeepersData.put(key, shopkeeperSection);
+		}
+	}
+
+	@Override
+	public void update(String key, ConfigurationSection shopkeeperData) {
+		shopkeepersData.put(key, shopkeeperData);
+	}
+
+	@Override
+	public void remove(String key) {
+		shopkeepersData.remove(key);
+	}
+
+	@Override
+	public void clear() {
+		shopkeepersData.clear();
+		unknownRecords.clear();
+	}
+
+	@Override
+	public boolean write() {
+		return saveFile.save((stream) -> {
+			DataOutputStream out = new DataOutputStream(stream);
+			// header:
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(SKShopkeeperStorage.DATA_VERSION);
+			out.writeInt(NMSManager.getProvider().getItemDataVersion());
+			out.writeUTF(NMSManager.getProvider().getVersionId());
+
+			// records:
+			ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+			DataOutputStream recordOut = new DataOutputStream(recordBytes);
+			for (Entry<String, ConfigurationSection> entry : shopkeepersData.entrySet()) {
+				recordBytes.reset();
+				BinaryDataCodec.writeValue(recordOut, entry.getValue());
+				recordOut.flush();
+
+				out.writeByte(RECORD_SHOPKEEPER);
+				out.writeUTF(entry.getKey());
+				out.writeInt(recordBytes.size());
+				recordBytes.writeTo(out);
+			}
+			for (UnknownRecord unknownRecord : unknownRecords) {
+				out.writeByte(unknownRecord.type);
+				out.writeUTF(unknownRecord.key);
+				out.writeInt(unknownRecord.data.length);
+				out.write(unknownRecord.data);
+			}
+			out.writeByte(RECORD_END);
+			out.flush();
+		});
+	}
+
+	@Override
+	public void retire() {
+		saveFile.retire();
+	}
+}
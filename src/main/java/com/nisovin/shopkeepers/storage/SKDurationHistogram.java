@@ -0,0 +1,62 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.util.Arrays;
+
+import com.nisovin.shopkeepers.api.storage.DurationHistogram;
+
+/**
+ * Keeps the most recent samples inside a ring buffer. The percentiles get calculated on demand.
+ */
+class SKDurationHistogram implements DurationHistogram {
+
+	private final long[] samples;
+	private int sampleCount = 0;
+	// the index of the next sample:
+	private int nextIndex = 0;
+
+	SKDurationHistogram(int historySize) {
+		assert historySize > 0;
+		this.samples = new long[historySize];
+	}
+
+	void record(long durationMillis) {
+		samples[nextIndex] = durationMillis;
+		nextIndex = (nextIndex + 1) % samples.length;
+		if (sampleCount < samples.length) {
+			sampleCount++;
+		}
+	}
+
+	void reset() {
+		Arrays.fill(samples, 0L);
+		sampleCount = 0;
+		nextIndex = 0;
+	}
+
+	@Override
+	public int getSampleCount() {
+		return sampleCount;
+	}
+
+	@Override
+	public long getPercentile(double percentile) {
+		if (percentile < 0.0D || percentile > 100.0D) {
+			throw new IllegalArgumentException("Percentile has to be between 0 and 100: " + percentile);
+		}
+		if (sampleCount == 0) return 0L;
+		long[] sorted = Arrays.copyOf(samples, sampleCount);
+		Arrays.sort(sorted);
+		// nearest rank:
+		int rank = (int) Math.ceil(percentile / 100.0D * sampleCount);
+		return sorted[Math.max(rank - 1, 0)];
+	}
+
+	@Override
+	public long getMax() {
+		long max = 0L;
+		for (int i = 0; i < sampleCount; i++) {
+			if (samples[i] > max) max = samples[i];
+		}
+		return max;
+	}
+}
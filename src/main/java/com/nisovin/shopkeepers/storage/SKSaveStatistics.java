@@ -0,0 +1,106 @@
+package com.nisovin.shopkeepers.storage;
+
+import com.nisovin.shopkeepers.api.storage.DurationHistogram;
+import com.nisovin.shopkeepers.api.storage.SaveStatistics;
+
+/**
+ * Gets updated on the main thread, once the result of a save is available there.
+ */
+class SKSaveStatistics implements SaveStatistics {
+
+	// number of recent saves that get taken into account by the histograms:
+	private static final int HISTORY_SIZE = 200;
+
+	private int saveCount = 0;
+	private int failedSaveCount = 0;
+	private int abortedSaveCount = 0;
+	private int retriedSaveCount = 0;
+	private final SKDurationHistogram packingDurations = new SKDurationHistogram(HISTORY_SIZE);
+	private final SKDurationHistogram asyncTaskDelays = new SKDurationHistogram(HISTORY_SIZE);
+	private final SKDurationHistogram ioLockWaitDurations = new SKDurationHistogram(HISTORY_SIZE);
+	private final SKDurationHistogram ioDurations = new SKDurationHistogram(HISTORY_SIZE);
+	private final SKDurationHistogram totalDurations = new SKDurationHistogram(HISTORY_SIZE);
+
+	SKSaveStatistics() {
+	}
+
+	void reset() {
+		saveCount = 0;
+		failedSaveCount = 0;
+		abortedSaveCount = 0;
+		retriedSaveCount = 0;
+		packingDurations.reset();
+		asyncTaskDelays.reset();
+		ioLockWaitDurations.reset();
+		ioDurations.reset();
+		totalDurations.reset();
+	}
+
+	void recordSave(boolean success, boolean async, long packingDuration, long asyncTaskDelay, long ioLockWaitDuration,
+			long ioDuration, long totalDuration) {
+		saveCount++;
+		if (!success) {
+			failedSaveCount++;
+		}
+		packingDurations.record(packingDuration);
+		if (async) {
+			asyncTaskDelays.record(asyncTaskDelay);
+			ioLockWaitDurations.record(ioLockWaitDuration);
+		}
+		ioDurations.record(ioDuration);
+		totalDurations.record(totalDuration);
+	}
+
+	void recordAbortedSave() {
+		abortedSaveCount++;
+	}
+
+	void recordRetriedSave() {
+		retriedSaveCount++;
+	}
+
+	@Override
+	public int getSaveCount() {
+		return saveCount;
+	}
+
+	@Override
+	public int getFailedSaveCount() {
+		return failedSaveCount;
+	}
+
+	@Override
+	public int getAbortedSaveCount() {
+		return abortedSaveCount;
+	}
+
+	@Override
+	public int getRetriedSaveCount() {
+		return retriedSaveCount;
+	}
+
+	@Override
+	public DurationHistogram getPackingDurations() {
+		return packingDurations;
+	}
+
+	@Override
+	public DurationHistogram getAsyncTaskDelays() {
+		return asyncTaskDelays;
+	}
+
+	@Override
+	public DurationHistogram getIOLockWaitDurations() {
+		return ioLockWaitDurations;
+	}
+
+	@Override
+	public DurationHistogram getIODurations() {
+		return ioDurations;
+	}
+
+	@Override
+	public DurationHistogram getTotalDurations() {
+		return totalDurations;
+	}
+}
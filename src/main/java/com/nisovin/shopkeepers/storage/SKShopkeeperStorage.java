@@ -1,14 +1,16 @@
 package com.nisovin.shopkeepers.storage;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang.Validate;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.configuration.ConfigurationSection;
@@ -21,6 +23,7 @@ import com.nisovin.shopkeepers.Settings;
 import com.nisovin.shopkeepers.api.ShopkeepersPlugin;
 import com.nisovin.shopkeepers.api.shopkeeper.Shopkeeper;
 import com.nisovin.shopkeepers.api.shopkeeper.ShopkeeperCreateException;
+import com.nisovin.shopkeepers.api.storage.SaveStatistics;
 import com.nisovin.shopkeepers.api.storage.ShopkeeperStorage;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopType;
 import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
@@ -28,7 +31,6 @@ import com.nisovin.shopkeepers.shopkeeper.SKShopkeeperRegistry;
 import com.nisovin.shopkeepers.util.ConversionUtils;
 import com.nisovin.shopkeepers.util.Log;
 import com.nisovin.shopkeepers.util.SchedulerUtils;
-import com.nisovin.shopkeepers.util.StringUtils;
 
 /**
  * Implementation notes:<br>
@@ -36,6 +38,10 @@ import com.nisovin.shopkeepers.util.StringUtils;
  * <li>There can at most be one thread doing file IO at the same time.
  * <li>Saving preparation always happens on the server's main thread. There can at most be one save getting prepared at
  * the same time.
+ * <li>Saving preparation copies the plain values and items of the dirty shopkeepers into
+ * {@link ShopkeeperSnapshot snapshots}. The (possibly async) file IO builds the shopkeeper data from those and applies it
+ * to the storage backend. The save data only gets updated with the built data once the save got handled on the main
+ * thread again.
  * <li>If there is a request for an <b>async</b> save while an async save is already in progress, a flag gets set to
  * indicate this after the current async save is finished.
  * <li>If there is a request for a <b>sync</b> save while an async save is already in progress, the main thread waits
@@ -46,10 +52,20 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 
 	// this can be used to determine required migrations (that affect all shopkeepers or the save format as a whole)
 	// or force a save of all shopkeepers data:
-	private static final int DATA_VERSION = 1;
-	private static final String DATA_VERSION_KEY = "data-version";
+	static final int DATA_VERSION = 1;
+	static final String DATA_VERSION_KEY = "data-version";
 
 	private final SKShopkeepersPlugin plugin;
+	private StorageBackend backend = null;
+	// the backend whose data got migrated during the last reload, and which gets retired after the next successful save:
+	private StorageBackend migrationSource = null;
+	private ShopkeeperJournal journal = null;
+	// whether changes get appended to the journal:
+	private boolean journalEnabled = false;
+	// shopkeepers whose data needs to be appended to the journal:
+	private final Set<AbstractShopkeeper> journalPending = new LinkedHashSet<>();
+	// the journal segment which got started by the last save:
+	private int savingJournalSegment = -1;
 
 	// data:
 	private final FileConfiguration saveData = new YamlConfiguration();
@@ -65,17 +81,18 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 
 	// current loading:
 	private boolean currentlyLoading = false;
+	private CompletableFuture<LoadedData> pendingLoad = null;
 
 	// current saving:
 	// indicates if we are currently processing a save (gets reset to false once the save has been processed on the main
 	// thread, or handed over to the async IO task):
 	private boolean currentlyProcessingSave = false;
 	private final SaveResult saveResult = new SaveResult();
+	private final SKSaveStatistics saveStatistics = new SKSaveStatistics();
 	// previously dirty shopkeepers which we currently attempt to save:
 	private final List<AbstractShopkeeper> savingShopkeepers = new ArrayList<>();
-	// buffer that holds the data that gets used by the current async save task:
-	// needs to be kept in sync with the save data, but cannot be modified during the async save is in progress
-	private final FileConfiguration saveDataBuffer = new YamlConfiguration();
+	// snapshots of the data of those shopkeepers, which get built and applied to the backend by the file IO:
+	private final List<ShopkeeperSnapshot> savingSnapshots = new ArrayList<>();
 	// the task which performs async file io during a save:
 	private int saveIOTask = -1;
 	// the saving callback of the current save: may need to be run manually during plugin disable or save abortion
@@ -103,17 +120,46 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		} catch (ClassNotFoundException e) {
 			e.printStackTrace();
 		}
+		saveStatistics.reset();
+
+		// setup storage backend:
+		StorageType storageType = StorageType.getByIdentifier(Settings.storageType);
+		if (storageType == null) {
+			Log.warning("Config: Unknown 'storage-type' (" + Settings.storageType + "). Using '" + StorageType.YAML.getIdentifier() + "' instead.");
+			storageType = StorageType.YAML;
+		}
+		backend = storageType.createBackend(plugin);
+
+		// setup journal (existing journal data gets replayed even if the journal is disabled):
+		journal = new ShopkeeperJournal(plugin);
+		journalEnabled = Settings.saveJournal;
+		if (journalEnabled) {
+			this.startJournalTask();
+		}
 
 		// start save task:
-		if (!Settings.saveInstantly) {
-			this.startSaveTask();
+		if (journalEnabled) {
+			// compacts the journal into the save data:
+			this.startSaveTask(Settings.journalCompactionInterval * 20L);
+		} else if (!Settings.saveInstantly) {
+			this.startSaveTask(6000L); // 5 minutes
 		}
 	}
 
 	public void onDisable() {
 		// reset a few things:
 		this.clearSaveData();
+		backend = null;
+		migrationSource = null;
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+		journalEnabled = false;
+		journalPending.clear();
+		savingJournalSegment = -1;
 		savingShopkeepers.clear();
+		savingSnapshots.clear();
 		savingDisabled = false;
 		lastSavingErrorMsgTimestamp = 0L;
 		dirty = false;
@@ -126,12 +172,18 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		deletedShopkeepersCount = 0;
 	}
 
-	private void startSaveTask() {
+	private void startSaveTask(long interval) {
 		Bukkit.getScheduler().runTaskTimer(plugin, () -> {
 			if (this.isDirty()) {
 				this.saveNow();
 			}
-		}, 6000, 6000); // 5 minutes
+		}, interval, interval);
+	}
+
+	private void startJournalTask() {
+		Bukkit.getScheduler().runTaskTimer(plugin, () -> {
+			this.flushJournal();
+		}, 1L, 1L);
 	}
 
 	private SKShopkeeperRegistry getShopkeeperRegistry() {
@@ -140,7 +192,7 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 
 	public int getDirtyCount() {
 		int dirtyShopkeepersCount = 0;
-		for (AbstractShopkeeper shopkeeper : this.getShopkeeperRegistry().getAllShopkeepers()) {
+		for (AbstractShopkeeper shopkeeper : this.getShopkeeperRegistry().getMaterializedShopkeepers()) {
 			if (shopkeeper.isDirty()) {
 				dirtyShopkeepersCount++;
 			}
@@ -160,13 +212,49 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		this.savingDisabled = false;
 	}
 
-	private File getSaveFile() {
-		return new File(plugin.getDataFolder(), "save.yml");
+	public StorageType getStorageType() {
+		return (backend != null ? backend.getType() : null);
 	}
 
-	private File getTempSaveFile() {
-		File saveFile = this.getSaveFile();
-		return new File(saveFile.getParentFile(), saveFile.getName() + ".temp");
+	/**
+	 * Writes the currently stored data of all shopkeepers to the given storage type.
+	 * <p>
+	 * Any unsaved changes get saved first. Existing data of the given storage type gets moved out of the way. This does
+	 * not change the storage type that is currently in use.
+	 * 
+	 * @param storageType
+	 *            the storage type to convert the data to
+	 * @return <code>true</code> on success
+	 */
+	public boolean convertData(StorageType storageType) {
+		Validate.notNull(storageType, "Storage type is null!");
+		Validate.isTrue(storageType != this.getStorageType(), "Cannot convert to the storage type that is currently in use!");
+		if (savingDisabled) {
+			Log.warning("Skipping data conversion, because saving got disabled.");
+			return false;
+		}
+
+		// save any unsaved changes:
+		this.saveImmediateIfDirty();
+		if (this.isDirty()) {
+			Log.warning("Skipping data conversion, because the current data couldn't be saved.");
+			return false;
+		}
+
+		StorageBackend targetBackend = storageType.createBackend(plugin);
+		// no concurrent access of the save files:
+		synchronized (SAVING_IO_LOCK) {
+			if (targetBackend.exists()) {
+				targetBackend.retire();
+			}
+			targetBackend.replaceAll(saveData);
+			try {
+				return targetBackend.write();
+			} catch (Exception e) {
+				Log.severe("Data conversion failed!", e);
+				return false;
+			}
+		}
 	}
 
 	// SHOPKEEPER IDs
@@ -178,7 +266,7 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		if (nextId <= 0 || !this.isUnusedId(nextId)) {
 			// try to use an id larger than the max currently used id:
 			int maxId = maxStoredShopkeeperId;
-			for (Shopkeeper shopkeeper : this.getShopkeeperRegistry().getAllShopkeepers()) {
+			for (Shopkeeper shopkeeper : this.getShopkeeperRegistry().getMaterializedShopkeepers()) {
 				int id = shopkeeper.getId();
 				if (id > maxId) {
 					maxId = id;
@@ -217,95 +305,175 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 	// SHOPKEEPER DATA REMOVAL
 
 	private void clearSaveData() {
-		this.clearConfigSection(saveData);
-		this.clearConfigSection(saveDataBuffer);
+		clearConfigSection(saveData);
+		if (backend != null) {
+			backend.clear();
+		}
 		maxStoredShopkeeperId = 0;
 		nextShopkeeperId = 1;
 	}
 
-	private void clearConfigSection(ConfigurationSection configSection) {
+	static void clearConfigSection(ConfigurationSection configSection) {
 		assert configSection != null;
 		for (String key : configSection.getKeys(false)) {
 			configSection.set(key, null);
 		}
 	}
 
-	public void clearShopkeeperData(AbstractShopkeeper shopkeeper) {
+	// deleted: false if the shopkeeper only got unloaded
+	public void clearShopkeeperData(AbstractShopkeeper shopkeeper, boolean deleted) {
 		assert shopkeeper != null;
+		if (journalEnabled) {
+			journalPending.remove(shopkeeper);
+			if (deleted && !savingDisabled) {
+				journal.appendRemove(String.valueOf(shopkeeper.getId()));
+				journal.flush();
+			}
+		}
 		if (this.isCurrentlySavingAsync()) {
 			// remember to remove the data after the current async save has finished:
 			shopkeepersToDelete.add(shopkeeper);
 		} else {
-			String key = String.valueOf(shopkeeper.getId());
-			saveData.set(key, null);
-			saveDataBuffer.set(key, null);
-			deletedShopkeepersCount++;
+			this.removeShopkeeperData(shopkeeper);
 		}
 	}
 
+	private void removeShopkeeperData(AbstractShopkeeper shopkeeper) {
+		String key = String.valueOf(shopkeeper.getId());
+		saveData.set(key, null);
+		backend.remove(key);
+		deletedShopkeepersCount++;
+	}
+
 	// LOADING
 
-	// returns true on success, and false if there was some severe issue during loading
-	public boolean reload() {
+	// the data read by the async loading stage:
+	private static class LoadedData {
+
+		private final FileConfiguration data = new YamlConfiguration();
+		private StorageBackend migrationSource = null;
+		private Set<String> journaledKeys = Collections.emptySet();
+		// shopkeeper key -> migration result
+		private final Map<String, MigrationResult> migrationResults = new ConcurrentHashMap<>();
+		private Exception error = null;
+	}
+
+	/**
+	 * Unloads all shopkeepers and starts reading the saved shopkeepers data in the background.
+	 * <p>
+	 * The shopkeepers get loaded by the subsequent call to {@link #reload()}, which waits for the reading to complete.
+	 * Calling this early allows the reading and decoding of the data to happen in parallel to other setup work.
+	 */
+	public void startLoading() {
 		if (currentlyLoading) {
 			throw new IllegalStateException("Already loading right now!");
 		}
 		currentlyLoading = true;
+
+		// unload all currently loaded shopkeepers:
+		this.getShopkeeperRegistry().unloadAllShopkeepers();
+		this.clearSaveData();
+		migrationSource = null;
+
+		// note: this uses the common ForkJoinPool instead of a Bukkit async task, because Bukkit only starts async tasks
+		// with the next server tick, and reload() might be called before that
+		pendingLoad = CompletableFuture.supplyAsync(this::readData);
+	}
+
+	// returns true on success, and false if there was some severe issue during loading
+	public boolean reload() {
+		if (pendingLoad == null) {
+			this.startLoading();
+		}
+		assert currentlyLoading;
 		boolean result;
+		try {
+			// wait for the reading to complete:
+			LoadedData loadedData = pendingLoad.join();
+			result = this.loadShopkeepers(loadedData);
+		} catch (Exception e) {
+			Log.severe("Something completely unexpected went wrong during the loading of the saved shopkeepers data!", e);
+			result = false; // error
+		}
+		pendingLoad = null;
+		currentlyLoading = false;
+		return result;
+	}
 
-		// no concurrent access of the save file:
+	// gets run async: reads and decodes the data, and performs common migrations in parallel
+	private LoadedData readData() {
+		LoadedData loadedData = new LoadedData();
+		// no concurrent access of the save files:
 		synchronized (SAVING_IO_LOCK) {
 			try {
-				result = this.doReload();
+				this.readData(loadedData);
 			} catch (Exception e) {
-				Log.severe("Something completely unexpected went wrong during the loading of the saved shopkeepers data!", e);
-				result = false; // error
+				loadedData.error = e;
 			}
 		}
-		currentlyLoading = false;
-		return result;
+		return loadedData;
 	}
 
-	// returns true on success, and false if there was some severe issue during loading
-	private boolean doReload() {
-		// unload all currently loaded shopkeepers:
-		SKShopkeeperRegistry shopkeeperRegistry = this.getShopkeeperRegistry();
-		shopkeeperRegistry.unloadAllShopkeepers();
-		this.clearSaveData();
-
-		File saveFile = this.getSaveFile();
-		if (!saveFile.exists()) {
-			File tempSaveFile = this.getTempSaveFile();
-			if (tempSaveFile.exists()) {
-				// load from temporary save file instead:
-				Log.warning("Found no save file, but an existing temporary save file! (" + tempSaveFile.getName() + ")");
-				Log.warning("This might indicate an issue during a previous saving attempt!");
-				Log.warning("Trying to load the shopkeepers data from this temporary save file instead!");
-
-				saveFile = tempSaveFile;
-			} else {
-				// save file does not exist yet -> no shopkeeper data available
-				return true;
+	private void readData(LoadedData loadedData) throws Exception {
+		StorageBackend loadBackend = backend;
+		if (!backend.exists()) {
+			// check for existing data of other storage types, which we can migrate:
+			loadBackend = null;
+			for (StorageType storageType : StorageType.values()) {
+				if (storageType == backend.getType()) continue;
+				StorageBackend otherBackend = storageType.createBackend(plugin);
+				if (otherBackend.exists()) {
+					loadBackend = otherBackend;
+					break;
+				}
+			}
+			if (loadBackend != null) {
+				Log.info("Found no data of storage type '" + backend.getType().getIdentifier() + "', but data of storage type '"
+						+ loadBackend.getType().getIdentifier() + "': Migrating the data.");
+				loadedData.migrationSource = loadBackend;
 			}
 		}
 
-		try {
-			if (!StringUtils.isEmpty(Settings.fileEncoding)) {
-				// load with specified charset:
-				try (	FileInputStream stream = new FileInputStream(saveFile);
-						InputStreamReader reader = new InputStreamReader(stream, Settings.fileEncoding)) {
-					saveData.load(reader);
-				}
-			} else {
-				// load with default charset handling:
-				saveData.load(saveFile);
-			}
-		} catch (Exception e) {
-			Log.severe("Failed to load save file!", e);
+		FileConfiguration data = loadedData.data;
+		if (loadBackend != null) {
+			loadBackend.load(data);
+		}
+
+		// apply the changes recorded in the journal since the last save:
+		loadedData.journaledKeys = journal.replay(data);
+
+		// perform common migrations in parallel:
+		// note: the shopkeeper sections are independent of each other and the top level data does not get modified
+		int dataVersion = data.getInt(DATA_VERSION_KEY);
+		data.getKeys(false).parallelStream().forEach(key -> {
+			if (key.equals(DATA_VERSION_KEY)) return;
+			Integer idInt = ConversionUtils.parseInt(key);
+			if (idInt == null || idInt <= 0) return; // invalid id, skipped later
+			ConfigurationSection shopkeeperSection = data.getConfigurationSection(key);
+			if (shopkeeperSection == null) return; // invalid section, skipped later
+			loadedData.migrationResults.put(key, this.migrateShopkeeperData(idInt.intValue(), shopkeeperSection, dataVersion));
+		});
+	}
+
+	// gets run on the main thread: registers the loaded shopkeepers
+	// returns true on success, and false if there was some severe issue during loading
+	private boolean loadShopkeepers(LoadedData loadedData) {
+		if (loadedData.error != null) {
+			Log.severe("Failed to load save data!", loadedData.error);
 			return false; // disable without save
 		}
+		migrationSource = loadedData.migrationSource;
+
+		// copy the loaded data into the save data:
+		for (Entry<String, Object> entry : loadedData.data.getValues(false).entrySet()) {
+			saveData.set(entry.getKey(), entry.getValue());
+		}
 
 		Set<String> keys = saveData.getKeys(false);
+		if (keys.isEmpty()) {
+			// no shopkeeper data available yet
+			return true;
+		}
 		int shopkeepersCount = (keys.contains(DATA_VERSION_KEY) ? keys.size() - 1 : keys.size());
 		Log.info("Loading data of " + shopkeepersCount + " shopkeepers..");
 
@@ -318,6 +486,7 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			saveData.set(DATA_VERSION_KEY, DATA_VERSION);
 		}
 
+		SKShopkeeperRegistry shopkeeperRegistry = this.getShopkeeperRegistry();
 		for (String key : keys) {
 			if (key.equals(DATA_VERSION_KEY)) continue;
 
@@ -337,8 +506,8 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 				continue; // skip this shopkeeper
 			}
 
-			// perform common migrations:
-			MigrationResult migrationResult = this.migrateShopkeeperData(id, shopkeeperSection, dataVersion);
+			// common migrations got already performed:
+			MigrationResult migrationResult = loadedData.migrationResults.get(key);
 			if (migrationResult == MigrationResult.FAILED) {
 				// migration failed, skip this skopkeeper
 				continue;
@@ -351,6 +520,20 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 				continue; // skip this shopkeeper
 			}
 
+			boolean markDirty = (migrationResult == MigrationResult.MIGRATED || dataVersionChanged);
+			if (Settings.lazyShopkeeperLoading && !markDirty) {
+				// only register a stub, which gets loaded once it is needed:
+				try {
+					if (shopkeeperRegistry.addShopkeeperStub(shopType, id, shopkeeperSection) != null) {
+						continue;
+					}
+				} catch (Exception e) {
+					Log.warning("Failed to load shopkeeper '" + key + "'", e);
+					continue; // skip this shopkeeper
+				}
+				// else: load the shopkeeper right away
+			}
+
 			// load shopkeeper:
 			AbstractShopkeeper shopkeeper;
 			try {
@@ -365,19 +548,29 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			}
 
 			// if the shopkeeper got migrated or the data version has changed, mark as dirty:
-			if (migrationResult == MigrationResult.MIGRATED || dataVersionChanged) {
+			if (markDirty) {
 				shopkeeper.markDirty();
 			}
 		}
+		// the data of the shopkeepers that got marked dirty during loading gets written by the initial save, and does
+		// not need to be appended to the journal:
+		journalPending.clear();
 
-		// create a copy of the save data's top level data structure:
-		this.clearConfigSection(saveDataBuffer);
-		// set data version first (at the top):
-		saveDataBuffer.set(DATA_VERSION_KEY, DATA_VERSION);
-		for (Entry<String, Object> entry : saveData.getValues(false).entrySet()) {
-			String key = entry.getKey();
-			if (key.equals(DATA_VERSION_KEY)) continue;
-			saveDataBuffer.set(key, entry.getValue());
+		if (migrationSource != null) {
+			// write all data to the new backend during the next save:
+			backend.replaceAll(saveData);
+			this.markDirty();
+		} else if (!loadedData.journaledKeys.isEmpty()) {
+			// write the journaled changes to the backend during the next save:
+			for (String key : loadedData.journaledKeys) {
+				ConfigurationSection shopkeeperSection = saveData.getConfigurationSection(key);
+				if (shopkeeperSection != null) {
+					backend.update(key, shopkeeperSection);
+				} else {
+					backend.remove(key);
+				}
+			}
+			this.markDirty();
 		}
 
 		return true;
@@ -409,15 +602,48 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		return dirty;
 	}
 
+	@Override
+	public SaveStatistics getSaveStatistics() {
+		return saveStatistics;
+	}
+
 	public void markDirty() {
 		dirty = true;
 	}
 
+	// called by shopkeepers whose data changed
+	public void markDirty(AbstractShopkeeper shopkeeper) {
+		this.markDirty();
+		if (journalEnabled) {
+			journalPending.add(shopkeeper);
+		}
+	}
+
+	// appends the data of the shopkeepers which changed since the last call to the journal
+	private void flushJournal() {
+		if (journalPending.isEmpty() || savingDisabled) return;
+		for (AbstractShopkeeper shopkeeper : journalPending) {
+			if (!shopkeeper.isValid() || !shopkeeper.isDirty()) continue;
+			ShopkeeperSnapshot snapshot;
+			try {
+				snapshot = ShopkeeperSnapshot.create(shopkeeper);
+			} catch (Exception e) {
+				// the shopkeeper stays dirty and the next save attempts to save it again:
+				Log.warning("Couldn't append shopkeeper '" + shopkeeper.getId() + "' to the journal!", e);
+				continue;
+			}
+			journal.appendUpdate(snapshot);
+		}
+		journalPending.clear();
+		journal.flush();
+	}
+
 	@Override
 	public void save() {
-		if (Settings.saveInstantly) {
+		if (Settings.saveInstantly && !journalEnabled) {
 			this.saveNow();
 		} else {
+			// if the journal is enabled, the changes of shopkeepers get written right away by the journal
 			this.markDirty();
 		}
 	}
@@ -425,7 +651,7 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 	@Override
 	public void saveDelayed() {
 		this.markDirty();
-		if (Settings.saveInstantly && delayedSaveTaskId == -1) {
+		if (Settings.saveInstantly && !journalEnabled && delayedSaveTaskId == -1) {
 			delayedSaveTaskId = Bukkit.getScheduler().runTaskLater(plugin, () -> {
 				if (this.isDirty()) {
 					this.saveNow();
@@ -534,36 +760,38 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 			}
 		}
 
+		// all previously journaled data gets written with this save: start a new journal segment
+		if (journalEnabled) {
+			this.flushJournal();
+		}
+		savingJournalSegment = journal.startNewSegment();
+
 		// keep track of statistics and information about this saving attempt:
 		saveResult.reset();
 		saveResult.async = async;
 		saveResult.startTime = System.currentTimeMillis();
 
-		// store data of dirty shopkeepers into memory configuration:
+		// create snapshots of the data of dirty shopkeepers:
 		saveResult.dirtyShopkeepersCount = 0;
-		for (AbstractShopkeeper shopkeeper : this.getShopkeeperRegistry().getAllShopkeepers()) {
+		for (AbstractShopkeeper shopkeeper : this.getShopkeeperRegistry().getMaterializedShopkeepers()) {
 			if (!shopkeeper.isDirty()) {
 				continue; // assume storage data is still up-to-date
 			}
 			saveResult.dirtyShopkeepersCount++;
 
-			String sectionKey = String.valueOf(shopkeeper.getId());
-			Object previousData = saveData.get(sectionKey);
-			ConfigurationSection newSection = saveData.createSection(sectionKey);
+			ShopkeeperSnapshot snapshot;
 			try {
-				shopkeeper.save(newSection);
+				snapshot = ShopkeeperSnapshot.create(shopkeeper);
 			} catch (Exception e) {
-				// error while saving shopkeeper data:
-				// restore previous shopkeeper data and then skip this shopkeeper:
-				saveData.set(sectionKey, previousData);
+				// error while saving shopkeeper data: keep the previous data and skip this shopkeeper
 				Log.warning("Couldn't save shopkeeper '" + shopkeeper.getId() + "'!", e);
 				// the shopkeeper stays marked as dirty, so we attempt to save it again the next time we save all shops
 				// however, we won't automatically initiate a new save for this shopkeeper as the risk is high that
 				// saving might fail again anyways
 				continue;
 			}
-			// update save data buffer:
-			saveDataBuffer.set(sectionKey, newSection);
+			// the shopkeeper data gets built and applied to the backend by the file IO:
+			savingSnapshots.add(snapshot);
 
 			savingShopkeepers.add(shopkeeper);
 			shopkeeper.onSave();
@@ -573,7 +801,7 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		saveResult.deletedShopkeepersCount = deletedShopkeepersCount;
 		deletedShopkeepersCount = 0;
 
-		// time to store shopkeeper data in memory configuration:
+		// time to create the snapshots of the shopkeeper data:
 		saveResult.packingDuration = System.currentTimeMillis() - saveResult.startTime;
 
 		// note: the dirty flag might get reverted again after saving, if saving failed
@@ -611,25 +839,45 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 						}
 						// request another delayed save (if there isn't an abort request):
 						if (!abortSave) {
+							saveStatistics.recordRetriedSave();
 							saveDelayed();
 						}
 					}
 
 					// restore number of deleted shopkeepers:
 					deletedShopkeepersCount = saveResult.deletedShopkeepersCount;
+				} else {
+					// the data of the previous journal segments is contained in the save data now:
+					journal.deleteSegmentsBefore(savingJournalSegment);
+
+					if (migrationSource != null) {
+						// all data has been written to the new backend: move the migrated data out of the way
+						migrationSource.retire();
+						migrationSource = null;
+					}
 				}
 				savingShopkeepers.clear();
+				// update the save data with the shopkeeper data that got built by the file IO:
+				// snapshots which did not get applied (if the save got aborted or cancelled) get created again once
+				// the affected shopkeepers get saved again
+				for (ShopkeeperSnapshot snapshot : savingSnapshots) {
+					if (snapshot.isDataBuilt()) {
+						saveData.set(snapshot.getKey(), snapshot.getData());
+					}
+				}
+				savingSnapshots.clear();
 
 				// remove data of shopkeepers that have been deleted during the save:
 				for (AbstractShopkeeper deletedShopkeeper : shopkeepersToDelete) {
-					clearShopkeeperData(deletedShopkeeper);
+					removeShopkeeperData(deletedShopkeeper);
 				}
 				shopkeepersToDelete.clear();
 
 				// if not aborted / cancelled:
 				if (saveResult.state == SaveResult.State.SUCCESS || saveResult.state == SaveResult.State.FAILURE) {
-					// print debug info:
+					// print debug info and keep track of the timings:
 					saveResult.printDebugInfo();
+					saveResult.recordStatistics(saveStatistics);
 
 					// saving failed?
 					if (saveResult.state != SaveResult.State.SUCCESS) {
@@ -645,6 +893,8 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 							}
 						}
 					}
+				} else {
+					saveStatistics.recordAbortedSave();
 				}
 
 				if (async) {
@@ -669,7 +919,7 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 
 		if (!async) {
 			// sync file io:
-			this.saveDataToFile(saveDataBuffer, savingCallback);
+			this.writeData(savingCallback);
 		} else {
 			// async file io:
 			final long asyncTaskSubmittedTime = System.currentTimeMillis();
@@ -687,7 +937,7 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 						// if aborted, the syncSavingCallback needs to be run manually
 					} else {
 						// actual saving IO:
-						this.saveDataToFile(saveDataBuffer, savingCallback);
+						this.writeData(savingCallback);
 						assert saveResult.state == SaveResult.State.SUCCESS || saveResult.state == SaveResult.State.FAILURE;
 					}
 					// async saving is over:
@@ -704,186 +954,27 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 		currentlyProcessingSave = false;
 	}
 
-	// max total delay: 500ms
-	private static final int SAVING_MAX_ATTEMPTS = 20;
-	private static final long SAVING_ATTEMPTS_DELAY_MILLIS = 25;
 	private static final Object SAVING_IO_LOCK = new Object();
 
 	// can be run async and sync
-	private void saveDataToFile(FileConfiguration config, Runnable callback) {
-		assert config != null;
+	private void writeData(Runnable callback) {
 		// actual IO:
 		final long ioStartTime = System.currentTimeMillis();
 
-		File saveFile = this.getSaveFile();
-		File tempSaveFile = this.getTempSaveFile();
-
-		// saving procedure:
-		// inside a retry-loop:
-		// * if there is a temporary save file:
-		// * * if there is no save file: rename temporary save file to save file
-		// * * else: remove temporary save file
-		// * create parent directories
-		// * create new temporary save file
-		// * save data to temporary save file
-		// * remove old save file
-		// * rename temporary save file to save file
-
-		int savingAttempt = 0;
-		boolean problem = false;
-		String error = null;
-		Exception exception;
-		boolean printStacktrace = true;
-
-		while (++savingAttempt <= SAVING_MAX_ATTEMPTS) {
-			// reset problem variables:
-			problem = false;
-			error = null;
-			exception = null;
-
-			try {
-				// handle already existing temporary save file:
-				if (!problem) {
-					if (tempSaveFile.exists()) {
-						// check write permission:
-						if (!tempSaveFile.canWrite()) {
-							error = "Cannot write to temporary save file! (" + tempSaveFile.getName() + ")";
-							problem = true;
-						}
-
-						if (!problem) {
-							if (!saveFile.exists()) {
-								// if only the temporary file exists, but the actual save file does not, this might
-								// indicate, that a previous saving attempt saved to the temporary file and removed
-								// the
-								// actual save file, but wasn't able to then rename the temporary file to the actual
-								// save file
-								// -> the temporary file might contain the only backup of saved data, don't remove
-								// it!
-								// -> instead we try to rename it to make it the new 'actual save file' and then
-								// continue the saving procedure
-
-								Log.warning("Found an already existing temporary save file, but no old save file! (" + tempSaveFile.getName() + ")");
-								Log.warning("This might indicate an issue during a previous saving attempt!");
-								Log.warning("Trying to rename the temporary save file to use it as 'existing old save data', and then continue the saving!");
-
-								// rename temporary save file:
-								if (!tempSaveFile.renameTo(saveFile)) {
-									error = "Couldn't rename temporary save file! (" + tempSaveFile.getName() + " to " + saveFile.getName() + ")";
-									problem = true;
-								}
-							} else {
-								// remove old temporary save file:
-								if (!tempSaveFile.delete()) {
-									error = "Couldn't delete existing temporary save file! (" + tempSaveFile.getName() + ")";
-									problem = true;
-								}
-							}
-						}
-					}
-				}
-
-				// make sure that the parent directories exist:
-				if (!problem) {
-					File parentDir = tempSaveFile.getParentFile();
-					if (parentDir != null && !parentDir.exists()) {
-						if (!parentDir.mkdirs()) {
-							error = "Couldn't create parent directories for temporary save file! (" + parentDir.getAbsolutePath() + ")";
-							problem = true;
-						}
-					}
-				}
-
-				// create new temporary save file:
-				if (!problem) {
-					try {
-						tempSaveFile.createNewFile();
-					} catch (Exception e) {
-						error = "Couldn't create temporary save file! (" + tempSaveFile.getName() + ") : " + e.getMessage();
-						exception = e;
-						problem = true;
-					}
-				}
-
-				// write shopkeeper data to temporary save file:
-				if (!problem) {
-					PrintWriter writer = null;
-					try {
-						if (Settings.fileEncoding != null && !Settings.fileEncoding.isEmpty()) {
-							writer = new PrintWriter(tempSaveFile, Settings.fileEncoding);
-							writer.write(config.saveToString());
-						} else {
-							config.save(tempSaveFile);
-						}
-					} catch (Exception e) {
-						error = "Couldn't save data to temporary save file! (" + tempSaveFile.getName() + ") : " + e.getMessage();
-						exception = e;
-						problem = true;
-					} finally {
-						if (writer != null) {
-							writer.close();
-						}
-					}
-				}
-
-				// delete old save file:
-				if (!problem) {
-					if (saveFile.exists()) {
-						// check write permission:
-						if (!saveFile.canWrite()) {
-							error = "Cannot write to save file! (" + saveFile.getName() + ")";
-							problem = true;
-						} else {
-							// delete old save file:
-							if (!saveFile.delete()) {
-								error = "Couldn't delete existing old save file! (" + saveFile.getName() + ")";
-								problem = true;
-							}
-						}
-					}
-				}
-
-				// rename temporary save file:
-				if (!problem) {
-					if (!tempSaveFile.renameTo(saveFile)) {
-						error = "Couldn't rename temporary save file! (" + tempSaveFile.getName() + " to " + saveFile.getName() + ")";
-						problem = true;
-					}
-				}
-			} catch (Exception e) {
-				// catching any exceptions not explicitly caught above already:
-				error = e.getMessage();
-				exception = e;
-				problem = true;
+		boolean success;
+		try {
+			// build the data of the saved shopkeepers and apply it to the backend:
+			for (ShopkeeperSnapshot snapshot : savingSnapshots) {
+				backend.update(snapshot.getKey(), snapshot.getData());
 			}
 
-			// handle problem situation:
-			if (problem) {
-				// don't spam with errors and stacktraces, only print them once for the first saving attempt:
-				if (exception != null && printStacktrace) {
-					printStacktrace = false;
-					exception.printStackTrace();
-				}
-				Log.severe("Saving attempt " + savingAttempt + " failed: " + (error != null ? error : "Unknown error"));
-
-				if (savingAttempt < SAVING_MAX_ATTEMPTS) {
-					// try again after a small delay:
-					try {
-						Thread.sleep(SAVING_ATTEMPTS_DELAY_MILLIS);
-					} catch (InterruptedException e) {
-					}
-				} else {
-					// saving failed even after a bunch of retries:
-					saveResult.state = SaveResult.State.FAILURE;
-					Log.severe("Saving failed! Save data might be lost! :(");
-					break;
-				}
-			} else {
-				// saving was successful:
-				saveResult.state = SaveResult.State.SUCCESS;
-				break;
-			}
+			success = backend.write();
+		} catch (Exception e) {
+			// catching any exceptions not handled by the backend:
+			Log.severe("Saving failed! Save data might be lost! :(", e);
+			success = false;
 		}
+		saveResult.state = (success ? SaveResult.State.SUCCESS : SaveResult.State.FAILURE);
 
 		final long now = System.currentTimeMillis();
 		saveResult.ioDuration = now - ioStartTime; // time for pure io
@@ -934,5 +1025,10 @@ public class SKShopkeeperStorage implements ShopkeeperStorage {
 					+ (async ? "Async " : "Sync ") + "IO: " + ioDuration + "ms))"
 					+ ((state == State.FAILURE) ? ": Saving failed!" : ""));
 		}
+
+		public void recordStatistics(SKSaveStatistics statistics) {
+			statistics.recordSave(state == State.SUCCESS, async, packingDuration, asyncTaskDelay, ioLockAcquireDuration,
+					ioDuration, totalDuration);
+		}
 	}
 }
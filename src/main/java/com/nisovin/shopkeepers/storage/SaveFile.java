@@ -0,0 +1,277 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.configuration.file.YamlRepresenter;
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.representer.Representer;
+
+import com.nisovin.shopkeepers.Settings;
+import com.nisovin.shopkeepers.util.Log;
+import com.nisovin.shopkeepers.util.StringUtils;
+
+/**
+ * A save file which gets written via a temporary file, so that the previously saved data does not get lost if saving
+ * fails.
+ */
+class SaveFile {
+
+	/**
+	 * Writes the data to the (temporary) save file.
+	 */
+	@FunctionalInterface
+	interface ContentWriter {
+
+		void write(OutputStream out) throws Exception;
+	}
+
+	private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+	private final File tempFile;
+
+	SaveFile(File file) {
+		assert file != null;
+		this.file = file;
+		this.tempFile = new File(file.getParentFile(), file.getName() + ".temp");
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public File getTempFile() {
+		return tempFile;
+	}
+
+	/**
+	 * Checks if there is either a save file or a temporary save file.
+	 *
+	 * @return <code>true</code> if there is data that can be loaded
+	 */
+	public boolean exists() {
+		return (file.exists() || tempFile.exists());
+	}
+
+	/**
+	 * Gets the file to load the data from.
+	 * <p>
+	 * If the save file does not exist, but there is a temporary save file, this returns the temporary save file.
+	 *
+	 * @return the file to load the data from, or <code>null</code> if there is no data
+	 */
+	public File getLoadFile() {
+		if (file.exists()) return file;
+		if (tempFile.exists()) {
+			// load from temporary save file instead:
+			Log.warning("Found no save file, but an existing temporary save file! (" + tempFile.getName() + ")");
+			Log.warning("This might indicate an issue during a previous saving attempt!");
+			Log.warning("Trying to load the shopkeepers data from this temporary save file instead!");
+			return tempFile;
+		}
+		return null;
+	}
+
+	/**
+	 * Loads the data into the given config.
+	 *
+	 * @param config
+	 *            the config to load the data into
+	 * @return <code>false</code> if there is no data to load
+	 * @throws Exception
+	 *             if loading fails
+	 */
+	public boolean load(FileConfiguration config) throws Exception {
+		File loadFile = this.getLoadFile();
+		if (loadFile == null) return false;
+
+		if (!StringUtils.isEmpty(Settings.fileEncoding)) {
+			// load with specified charset:
+			try (	FileInputStream stream = new FileInputStream(loadFile);
+					InputStreamReader reader = new InputStreamReader(stream, Settings.fileEncoding)) {
+				config.load(reader);
+			}
+		} else {
+			// load with default charset handling:
+			config.load(loadFile);
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the charset to use for writing text to the save file.
+	 *
+	 * @return the charset
+	 */
+	public static Charset getCharset() {
+		if (StringUtils.isEmpty(Settings.fileEncoding)) {
+			// same as Bukkit's config saving:
+			return StandardCharsets.UTF_8;
+		}
+		return Charset.forName(Settings.fileEncoding);
+	}
+
+	/**
+	 * Streams the YAML representation of the given config section to the given writer.
+	 * <p>
+	 * The output is the same as the output of {@link YamlConfiguration#saveToString()}, but it does not get built in
+	 * memory as a whole.
+	 *
+	 * @param writer
+	 *            the writer
+	 * @param configSection
+	 *            the config section
+	 */
+	public static void writeYaml(Writer writer, ConfigurationSection configSection) {
+		// same options as used by YamlConfiguration:
+		DumperOptions yamlOptions = new DumperOptions();
+		yamlOptions.setIndent(2);
+		yamlOptions.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+		Representer yamlRepresenter = new YamlRepresenter();
+		yamlRepresenter.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+		Map<String, Object> values = configSection.getValues(false);
+		if (values.isEmpty()) return;
+		new Yaml(yamlRepresenter, yamlOptions).dump(values, writer);
+	}
+
+	/**
+	 * Saves the given config to this save file.
+	 * <p>
+	 * This can be run async and sync.
+	 *
+	 * @param config
+	 *            the config to save
+	 * @return <code>true</code> if the saving was successful
+	 */
+	public boolean save(FileConfiguration config) {
+		assert config != null;
+		return this.save((out) -> {
+			Writer writer = new OutputStreamWriter(out, getCharset());
+			writeYaml(writer, config);
+			writer.flush();
+		});
+	}
+
+	/**
+	 * Saves the data written by the given writer to this save file.
+	 * <p>
+	 * The data gets streamed to the temporary save file, which then atomically replaces the save file. If enabled, the
+	 * data gets synced to the storage device before that.
+	 * <p>
+	 * This can be run async and sync.
+	 *
+	 * @param contentWriter
+	 *            writes the data to the given (buffered) stream
+	 * @return <code>true</code> if the saving was successful
+	 */
+	public boolean save(ContentWriter contentWriter) {
+		assert contentWriter != null;
+		try {
+			// handle already existing temporary save file:
+			if (tempFile.exists() && !file.exists()) {
+				// if only the temporary file exists, but the actual save file does not, this might indicate, that a
+				// previous saving attempt was not able to move the temporary file to the actual save file
+				// -> the temporary file might contain the only backup of saved data, don't replace it!
+				// -> instead we try to move it to make it the new 'actual save file' and then continue the saving
+				Log.warning("Found an already existing temporary save file, but no old save file! (" + tempFile.getName() + ")");
+				Log.warning("This might indicate an issue during a previous saving attempt!");
+				Log.warning("Trying to rename the temporary save file to use it as 'existing old save data', and then continue the saving!");
+				this.moveTempFile();
+			}
+
+			// make sure that the parent directories exist:
+			File parentDir = tempFile.getParentFile();
+			if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+				throw new IOException("Couldn't create parent directories for temporary save file! (" + parentDir.getAbsolutePath() + ")");
+			}
+
+			// write data to temporary save file (replaces any previous temporary save file):
+			try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+				BufferedOutputStream out = new BufferedOutputStream(fileOut, WRITE_BUFFER_SIZE);
+				contentWriter.write(out);
+				out.flush();
+				if (Settings.fsyncSaveFiles) {
+					fileOut.getChannel().force(true);
+				}
+			}
+
+			// replace save file:
+			this.moveTempFile();
+			return true;
+		} catch (Exception e) {
+			Log.severe("Saving failed! Save data might be lost! :( (" + file.getName() + ")", e);
+			return false;
+		}
+	}
+
+	private void moveTempFile() throws IOException {
+		try {
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			// not supported by the file system:
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Deletes the save file and the temporary save file, if they exist.
+	 *
+	 * @return <code>true</code> if there are no files left
+	 */
+	public boolean delete() {
+		boolean success = true;
+		if (tempFile.exists() && !tempFile.delete()) {
+			Log.severe("Couldn't delete temporary save file! (" + tempFile.getName() + ")");
+			success = false;
+		}
+		if (file.exists() && !file.delete()) {
+			Log.severe("Couldn't delete save file! (" + file.getName() + ")");
+			success = false;
+		}
+		return success;
+	}
+
+	/**
+	 * Moves the save file out of the way, for example after its data has been migrated somewhere else.
+	 * <p>
+	 * The save file gets renamed to '{@code <name>.migrated}'.
+	 */
+	public void retire() {
+		File loadFile = this.getLoadFile();
+		if (loadFile == null) return;
+		File retiredFile = getRetiredFile(file);
+		if (loadFile.renameTo(retiredFile)) {
+			Log.info("Moved previous save file '" + loadFile.getName() + "' to '" + retiredFile.getName() + "'.");
+		} else {
+			Log.warning("Couldn't move previous save file '" + loadFile.getName() + "' to '" + retiredFile.getName() + "'!");
+		}
+	}
+
+	// also used for retiring folders
+	static File getRetiredFile(File file) {
+		File retiredFile = new File(file.getParentFile(), file.getName() + ".migrated");
+		if (retiredFile.exists()) {
+			// don't replace any previously retired data:
+			retiredFile = new File(file.getParentFile(), file.getName() + ".migrated-" + System.currentTimeMillis());
+		}
+		return retiredFile;
+	}
+}
@@ -0,0 +1,256 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.util.Log;
+
+/**
+ * Stores the shopkeepers inside multiple files inside the 'data' folder, split by world and region.
+ * <p>
+ * Similar to Minecraft's region files, each region covers an area of 32x32 chunks. Only the files of regions with
+ * changed shopkeepers get written during saves.
+ */
+class ShardedYamlStorageBackend implements StorageBackend {
+
+	private static final String FILE_EXTENSION = ".yml";
+	private static final String TEMP_FILE_EXTENSION = FILE_EXTENSION + ".temp";
+	// chunk coordinate shift: 32x32 chunks per region
+	private static final int REGION_SHIFT = 4 + 5;
+
+	private static class Shard {
+
+		private final SaveFile saveFile;
+		// buffer that holds the data that gets used by the current async save task:
+		private final FileConfiguration data = new YamlConfiguration();
+		private boolean dirty = false;
+
+		Shard(File file) {
+			this.saveFile = new SaveFile(file);
+			// set data version first (at the top):
+			data.set(SKShopkeeperStorage.DATA_VERSION_KEY, SKShopkeeperStorage.DATA_VERSION);
+		}
+
+		boolean isEmpty() {
+			// only contains the data version:
+			return (data.getKeys(false).size() <= 1);
+		}
+	}
+
+	private final File dataFolder;
+	// shard id -> shard
+	private final Map<String, Shard> shards = new HashMap<>();
+	// shopkeeper key -> shard which currently contains its data
+	private final Map<String, Shard> shardsByKey = new HashMap<>();
+
+	ShardedYamlStorageBackend(SKShopkeepersPlugin plugin) {
+		this.dataFolder = new File(plugin.getDataFolder(), "data");
+	}
+
+	@Override
+	public StorageType getType() {
+		return StorageType.SHARDED_YAML;
+	}
+
+	@Override
+	public boolean exists() {
+		File[] worldFolders = dataFolder.listFiles(File::isDirectory);
+		if (worldFolders == null) return false;
+		for (File worldFolder : worldFolders) {
+			String[] fileNames = worldFolder.list();
+			if (fileNames == null) continue;
+			for (String fileName : fileNames) {
+				if (getShardName(fileName) != null) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// returns null if the file is no shard file
+	private static String getShardName(String fileName) {
+		if (fileName.endsWith(FILE_EXTENSION)) {
+			return fileName.substring(0, fileName.length() - FILE_EXTENSION.length());
+		} else if (fileName.endsWith(TEMP_FILE_EXTENSION)) {
+			return fileName.substring(0, fileName.length() - TEMP_FILE_EXTENSION.length());
+		}
+		return null;
+	}
+
+	private static String getShardId(ConfigurationSection shopkeeperData) {
+		String worldName = shopkeeperData.getString("world");
+		int regionX = shopkeeperData.getInt("x") >> REGION_SHIFT;
+		int regionZ = shopkeeperData.getInt("z") >> REGION_SHIFT;
+		return getWorldFolderName(worldName) + "/r." + regionX + "." + regionZ;
+	}
+
+	private static String getWorldFolderName(String worldName) {
+		if (worldName == null || worldName.isEmpty()) return "_unknown";
+		// only keep characters that are safe to use in file names:
+		return worldName.replaceAll("[^a-zA-Z0-9_.\\-]", "_");
+	}
+
+	private Shard getOrCreateShard(String shardId) {
+		return shards.computeIfAbsent(shardId, (id) -> new Shard(new File(dataFolder, id + FILE_EXTENSION)));
+	}
+
+	@Override
+	public void load(FileConfiguration saveData) throws Exception {
+		this.clear();
+		File[] worldFolders = dataFolder.listFiles(File::isDirectory);
+		if (worldFolders == null) return;
+
+		List<Shard> loadedShards = new ArrayList<>();
+		for (File worldFolder : worldFolders) {
+			String[] fileNames = worldFolder.list();
+			if (fileNames == null) continue;
+			for (String fileName : fileNames) {
+				String shardName = getShardName(fileName);
+				if (shardName == null) continue; // no shard file
+				String shardId = worldFolder.getName() + "/" + shardName;
+				if (shards.containsKey(shardId)) continue; // already loaded (save file and temporary save file)
+				loadedShards.add(this.getOrCreateShard(shardId));
+			}
+		}
+
+		// parse the shard files in parallel:
+		FileConfiguration[] shardsData = new FileConfiguration[loadedShards.size()];
+		try {
+			IntStream.range(0, loadedShards.size()).parallel().forEach(index -> {
+				FileConfiguration shardData = new YamlConfiguration();
+				try {
+					loadedShards.get(index).saveFile.load(shardData);
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+				shardsData[index] = shardData;
+			});
+		} catch (CompletionException e) {
+			throw (Exception) e.getCause();
+		}
+
+		int dataVersion = -1;
+		// shopkeeper key -> last modification time of the file its data got loaded from
+		Map<String, Long> lastModified = new HashMap<>();
+		for (int index = 0; index < shardsData.length; index++) {
+			Shard shard = loadedShards.get(index);
+			FileConfiguration shardData = shardsData[index];
+			long shardLastModified = shard.saveFile.getLoadFile().lastModified();
+
+			int shardDataVersion = shardData.getInt(SKShopkeeperStorage.DATA_VERSION_KEY);
+			if (dataVersion == -1 || shardDataVersion < dataVersion) {
+				dataVersion = shardDataVersion;
+			}
+
+			for (Entry<String, Object> entry : shardData.getValues(false).entrySet()) {
+				String key = entry.getKey();
+				if (key.equals(SKShopkeeperStorage.DATA_VERSION_KEY)) continue;
+
+				Shard otherShard = shardsByKey.get(key);
+				if (otherShard != null) {
+					// the data of a shopkeeper that moved between regions might end up in two files if a previous
+					// save got interrupted: keep the more recently written data
+					Log.warning("Found data for shopkeeper '" + key + "' in multiple files: Using the data of the more recently written file.");
+					otherShard.dirty = true;
+					shard.dirty = true;
+					if (lastModified.get(key) >= shardLastModified) {
+						continue; // keep the other data
+					}
+					otherShard.data.set(key, null);
+				}
+				shard.data.set(key, entry.getValue());
+				shardsByKey.put(key, shard);
+				lastModified.put(key, shardLastModified);
+				saveData.set(key, entry.getValue());
+			}
+		}
+
+		if (dataVersion != -1) {
+			saveData.set(SKShopkeeperStorage.DATA_VERSION_KEY, dataVersion);
+		}
+	}
+
+	@Override
+	public void replaceAll(ConfigurationSection saveData) {
+		this.clear();
+		for (Entry<String, Object> entry : saveData.getValues(false).entrySet()) {
+			String key = entry.getKey();
+			if (key.equals(SKShopkeeperStorage.DATA_VERSION_KEY)) continue;
+			Object value = entry.getValue();
+			if (!(value instanceof ConfigurationSection)) continue; // invalid data
+			this.update(key, (ConfigurationSection) value);
+		}
+	}
+
+	@Override
+	public void update(String key, ConfigurationSection shopkeeperData) {
+		Shard shard = this.getOrCreateShard(getShardId(shopkeeperData));
+		Shard previousShard = shardsByKey.put(key, shard);
+		if (previousShard != null && previousShard != shard) {
+			// the shopkeeper moved to another region:
+			previousShard.data.set(key, null);
+			previousShard.dirty = true;
+		}
+		shard.data.set(key, shopkeeperData);
+		shard.dirty = true;
+	}
+
+	@Override
+	public void remove(String key) {
+		Shard shard = shardsByKey.remove(key);
+		if (shard != null) {
+			shard.data.set(key, null);
+			shard.dirty = true;
+		}
+	}
+
+	@Override
+	public void clear() {
+		shards.clear();
+		shardsByKey.clear();
+	}
+
+	@Override
+	public boolean write() {
+		boolean success = true;
+		for (Shard shard : shards.values()) {
+			if (!shard.dirty) continue;
+			boolean shardSuccess;
+			if (shard.isEmpty()) {
+				shardSuccess = shard.saveFile.delete();
+			} else {
+				shardSuccess = shard.saveFile.save(shard.data);
+			}
+			if (shardSuccess) {
+				shard.dirty = false;
+			} else {
+				// the shard stays dirty and gets written again during the next save:
+				success = false;
+			}
+		}
+		return success;
+	}
+
+	@Override
+	public void retire() {
+		if (!dataFolder.exists()) return;
+		File retiredFolder = SaveFile.getRetiredFile(dataFolder);
+		if (dataFolder.renameTo(retiredFolder)) {
+			Log.info("Moved previous data folder '" + dataFolder.getName() + "' to '" + retiredFolder.getName() + "'.");
+		} else {
+			Log.warning("Couldn't move previous data folder '" + dataFolder.getName() + "' to '" + retiredFolder.getName() + "'!");
+		}
+	}
+}
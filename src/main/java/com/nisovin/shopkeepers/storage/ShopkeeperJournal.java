@@ -0,0 +1,378 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.Plugin;
+
+import com.nisovin.shopkeepers.Settings;
+import com.nisovin.shopkeepers.util.ConversionUtils;
+import com.nisovin.shopkeepers.util.Log;
+import com.nisovin.shopkeepers.util.SchedulerUtils;
+
+/**
+ * An append-only journal of changes to the shopkeepers data.
+ * <p>
+ * The journal is split into segments. Records get appended to the current segment by an async task. Every save of the
+ * storage starts a new segment, and the previous segments get deleted once that save was successful, since the save
+ * data contains all of their changes then.
+ * <p>
+ * Each record is stored as its length, followed by its CRC32 checksum and its payload. Records which are incomplete
+ * (ex. because the server crashed while they were getting written) get ignored when the journal gets replayed.
+ */
+class ShopkeeperJournal {
+
+	private static final String SEGMENT_FILE_PREFIX = "journal-";
+	private static final String SEGMENT_FILE_EXTENSION = ".dat";
+	private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+	private static final byte RECORD_UPDATE = 1;
+	private static final byte RECORD_REMOVE = 2;
+
+	private static class StartSegment {
+
+		private final int segment;
+
+		StartSegment(int segment) {
+			this.segment = segment;
+		}
+	}
+
+	private static class DeleteSegmentsBefore {
+
+		private final int segment;
+
+		DeleteSegmentsBefore(int segment) {
+			this.segment = segment;
+		}
+	}
+
+	private final Plugin plugin;
+	private final File journalFolder;
+	// the segment new records get appended to (only used on the main thread):
+	private int currentSegment = 1;
+
+	// records (byte arrays or shopkeeper snapshots) and segment commands, which get processed in order by the writer:
+	private final Queue<Object> writeQueue = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+	// only used by the writer (synchronized):
+	private int writerSegment = 1;
+	private FileOutputStream writerFileOut = null;
+	private DataOutputStream writerOut = null;
+	// if writing failed, the remaining records of the current segment get skipped, since they cannot be replayed after
+	// an incomplete record:
+	private boolean writerFailed = false;
+
+	ShopkeeperJournal(Plugin plugin) {
+		this.plugin = plugin;
+		this.journalFolder = new File(plugin.getDataFolder(), "journal");
+	}
+
+	// segment index -> segment file, sorted by segment index
+	private Map<Integer, File> getSegmentFiles() {
+		Map<Integer, File> segmentFiles = new TreeMap<>();
+		File[] files = journalFolder.listFiles();
+		if (files == null) return segmentFiles;
+		for (File file : files) {
+			String fileName = file.getName();
+			if (!fileName.startsWith(SEGMENT_FILE_PREFIX) || !fileName.endsWith(SEGMENT_FILE_EXTENSION)) continue;
+			Integer segment = ConversionUtils.parseInt(fileName.substring(SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_EXTENSION.length()));
+			if (segment == null || segment <= 0) continue;
+			segmentFiles.put(segment, file);
+		}
+		return segmentFiles;
+	}
+
+	private File getSegmentFile(int segment) {
+		return new File(journalFolder, SEGMENT_FILE_PREFIX + segment + SEGMENT_FILE_EXTENSION);
+	}
+
+	// REPLAY
+
+	/**
+	 * Applies the changes of all existing journal segments to the given save data, and starts a new segment.
+	 * <p>
+	 * This needs to be called before any new records get written.
+	 *
+	 * @param saveData
+	 *            the save data
+	 * @return the keys of the changed (updated or removed) shopkeepers
+	 * @throws IOException
+	 *             if a journal segment cannot be read
+	 */
+	public Set<String> replay(FileConfiguration saveData) throws IOException {
+		Set<String> changedKeys = new LinkedHashSet<>();
+		int lastSegment = 0;
+		int recordCount = 0;
+		for (Map.Entry<Integer, File> segmentEntry : this.getSegmentFiles().entrySet()) {
+			lastSegment = segmentEntry.getKey();
+			recordCount += this.replaySegment(segmentEntry.getValue(), saveData, changedKeys);
+		}
+		if (recordCount > 0) {
+			Log.info("Replayed " + recordCount + " journal records, affecting " + changedKeys.size() + " shopkeepers.");
+		}
+
+		// start a new segment:
+		currentSegment = lastSegment + 1;
+		synchronized (this) {
+			writerSegment = currentSegment;
+		}
+		return changedKeys;
+	}
+
+	private int replaySegment(File segmentFile, FileConfiguration saveData, Set<String> changedKeys) throws IOException {
+		int recordCount = 0;
+		CRC32 crc = new CRC32();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segmentFile)))) {
+			while (true) {
+				int length;
+				try {
+					length = in.readInt();
+				} catch (EOFException e) {
+					break; // end of segment
+				}
+				byte[] payload;
+				long checksum;
+				try {
+					if (length <= 0 || length > MAX_RECORD_LENGTH) {
+						throw new IOException("Invalid record length: " + length);
+					}
+					checksum = in.readInt() & 0xFFFFFFFFL;
+					payload = new byte[length];
+					in.readFully(payload);
+				} catch (IOException e) {
+					// the last record did not get fully written:
+					Log.warning("Ignoring incomplete record at the end of journal segment '" + segmentFile.getName() + "'.");
+					break;
+				}
+				crc.reset();
+				crc.update(payload, 0, payload.length);
+				if (crc.getValue() != checksum) {
+					Log.warning("Ignoring corrupted records at the end of journal segment '" + segmentFile.getName() + "'.");
+					break;
+				}
+
+				this.applyRecord(payload, saveData, changedKeys);
+				recordCount++;
+			}
+		}
+		return recordCount;
+	}
+
+	private void applyRecord(byte[] payload, FileConfiguration saveData, Set<String> changedKeys) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		byte recordType = in.readByte();
+		String key = in.readUTF();
+		switch (recordType) {
+		case RECORD_UPDATE:
+			byte[] dataBytes = new byte[in.available()];
+			in.readFully(dataBytes);
+			YamlConfiguration recordData = new YamlConfiguration();
+			try {
+				recordData.loadFromString(new String(dataBytes, StandardCharsets.UTF_8));
+			} catch (Exception e) {
+				Log.warning("Ignoring invalid journal record for shopkeeper '" + key + "': " + e.getMessage());
+				return;
+			}
+			ConfigurationSection shopkeeperSection = recordData.getConfigurationSection(key);
+			if (shopkeeperSection == null) {
+				Log.warning("Ignoring invalid journal record for shopkeeper '" + key + "': Missing data.");
+				return;
+			}
+			saveData.set(key, shopkeeperSection);
+			break;
+		case RECORD_REMOVE:
+			saveData.set(key, null);
+			break;
+		default:
+			Log.warning("Ignoring journal record for shopkeeper '" + key + "' of unknown type: " + recordType);
+			return;
+		}
+		changedKeys.add(key);
+	}
+
+	// WRITING
+
+	/**
+	 * Appends the data of a shopkeeper to the journal.
+	 * <p>
+	 * The snapshot gets serialized and written with the next {@link #flush()}.
+	 *
+	 * @param snapshot
+	 *            the snapshot of the shopkeeper data
+	 */
+	public void appendUpdate(ShopkeeperSnapshot snapshot) {
+		writeQueue.add(snapshot);
+	}
+
+	private byte[] createUpdateRecord(ShopkeeperSnapshot snapshot) {
+		FileConfiguration shopkeeperData = new YamlConfiguration();
+		shopkeeperData.set(snapshot.getKey(), snapshot.getData());
+		byte[] dataBytes = shopkeeperData.saveToString().getBytes(StandardCharsets.UTF_8);
+		return this.createRecord(RECORD_UPDATE, snapshot.getKey(), dataBytes);
+	}
+
+	/**
+	 * Appends the removal of a shopkeeper to the journal.
+	 * <p>
+	 * The record gets written with the next {@link #flush()}.
+	 *
+	 * @param key
+	 *            the shopkeeper key
+	 */
+	public void appendRemove(String key) {
+		writeQueue.add(this.createRecord(RECORD_REMOVE, key, null));
+	}
+
+	private byte[] createRecord(byte recordType, String key, byte[] dataBytes) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(recordType);
+			out.writeUTF(key);
+			if (dataBytes != null) {
+				out.write(dataBytes);
+			}
+		} catch (IOException e) {
+			// not expected for in-memory streams:
+			throw new RuntimeException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Starts a new segment: Subsequently appended records get written to this new segment.
+	 *
+	 * @return the new segment
+	 */
+	public int startNewSegment() {
+		currentSegment++;
+		writeQueue.add(new StartSegment(currentSegment));
+		return currentSegment;
+	}
+
+	/**
+	 * Deletes all segments preceding the given segment, once all previously appended records have been written.
+	 *
+	 * @param segment
+	 *            the segment
+	 */
+	public void deleteSegmentsBefore(int segment) {
+		writeQueue.add(new DeleteSegmentsBefore(segment));
+		this.flush();
+	}
+
+	/**
+	 * Writes all pending records in an async task.
+	 * <p>
+	 * If the async task cannot be started (ex. during plugin disable), the records get written right away.
+	 */
+	public void flush() {
+		if (writeQueue.isEmpty()) return;
+		if (!writeScheduled.compareAndSet(false, true)) return; // already scheduled
+		if (SchedulerUtils.runAsyncTaskOrOmit(plugin, this::write) == null) {
+			this.write();
+		}
+	}
+
+	/**
+	 * Writes all pending records and closes the current segment.
+	 */
+	public void close() {
+		this.write();
+		synchronized (this) {
+			this.closeSegment();
+		}
+	}
+
+	private synchronized void write() {
+		// allow new flush requests to schedule another write:
+		writeScheduled.set(false);
+		CRC32 crc = new CRC32();
+		Object entry;
+		try {
+			while ((entry = writeQueue.poll()) != null) {
+				if (entry instanceof byte[] || entry instanceof ShopkeeperSnapshot) {
+					if (writerFailed) continue;
+					byte[] record;
+					if (entry instanceof ShopkeeperSnapshot) {
+						record = this.createUpdateRecord((ShopkeeperSnapshot) entry);
+					} else {
+						record = (byte[]) entry;
+					}
+					if (writerOut == null) {
+						journalFolder.mkdirs();
+						File segmentFile = this.getSegmentFile(writerSegment);
+						writerFileOut = new FileOutputStream(segmentFile, true);
+						writerOut = new DataOutputStream(new BufferedOutputStream(writerFileOut));
+					}
+					crc.reset();
+					crc.update(record, 0, record.length);
+					writerOut.writeInt(record.length);
+					writerOut.writeInt((int) crc.getValue());
+					writerOut.write(record);
+				} else if (entry instanceof StartSegment) {
+					this.syncSegment();
+					this.closeSegment();
+					writerSegment = ((StartSegment) entry).segment;
+					writerFailed = false;
+				} else if (entry instanceof DeleteSegmentsBefore) {
+					int segment = ((DeleteSegmentsBefore) entry).segment;
+					for (Map.Entry<Integer, File> segmentEntry : this.getSegmentFiles().entrySet()) {
+						if (segmentEntry.getKey() >= segment || segmentEntry.getKey() == writerSegment) continue;
+						File segmentFile = segmentEntry.getValue();
+						if (!segmentFile.delete()) {
+							Log.warning("Couldn't delete journal segment '" + segmentFile.getName() + "'!");
+						}
+					}
+				}
+			}
+			this.syncSegment();
+		} catch (IOException e) {
+			// the affected shopkeepers are still marked as dirty and get written with the next save:
+			Log.severe("Couldn't write to the journal!", e);
+			writerFailed = true;
+			this.closeSegment();
+		}
+	}
+
+	// writes the buffered records of the current segment to the file (and to the disk, if fsync is enabled)
+	private void syncSegment() throws IOException {
+		if (writerOut == null) return;
+		writerOut.flush();
+		if (Settings.fsyncSaveFiles) {
+			writerFileOut.getChannel().force(true);
+		}
+	}
+
+	private void closeSegment() {
+		if (writerOut == null) return;
+		try {
+			writerOut.close();
+		} catch (IOException e) {
+			Log.severe("Couldn't close journal segment!", e);
+		}
+		writerOut = null;
+		writerFileOut = null;
+	}
+}
@@ -0,0 +1,80 @@
+package com.nisovin.shopkeepers.storage;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.MemoryConfiguration;
+
+import com.nisovin.shopkeepers.shopkeeper.AbstractShopkeeper;
+
+/**
+ * A snapshot of the save data of a shopkeeper.
+ * <p>
+ * The snapshot gets created on the main thread, by letting the shopkeeper save its data (see
+ * {@link AbstractShopkeeper#save(SnapshotSection)}). This only copies the plain values and items of the shopkeeper into a
+ * {@link SnapshotSection}. The configuration section form of the data only gets built once it is requested via
+ * {@link #getData()}, which happens during the async file IO of saves and inside the journal writer. The shopkeeper can
+ * therefore keep changing on the main thread in the meantime.
+ * <p>
+ * A snapshot is only used by one thread at a time.
+ */
+class ShopkeeperSnapshot {
+
+	/**
+	 * Creates a snapshot of the current data of the given shopkeeper.
+	 *
+	 * @param shopkeeper
+	 *            the shopkeeper
+	 * @return the snapshot
+	 * @throws Exception
+	 *             if the shopkeeper fails to save its data
+	 */
+	public static ShopkeeperSnapshot create(AbstractShopkeeper shopkeeper) throws Exception {
+		String key = String.valueOf(shopkeeper.getId());
+		SnapshotSection values = new SnapshotSection();
+		shopkeeper.save(values);
+		return new ShopkeeperSnapshot(key, values);
+	}
+
+	private final String key;
+	private final SnapshotSection values;
+	// built on first request:
+	private ConfigurationSection data = null;
+
+	private ShopkeeperSnapshot(String key, SnapshotSection values) {
+		this.key = key;
+		this.values = values;
+	}
+
+	/**
+	 * Gets the key of the shopkeeper inside the save data.
+	 *
+	 * @return the shopkeeper key
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Checks whether the shopkeeper data has already been built by a previous call to {@link #getData()}.
+	 *
+	 * @return <code>true</code> if the data has already been built
+	 */
+	public boolean isDataBuilt() {
+		return (data != null);
+	}
+
+	/**
+	 * Gets the shopkeeper data.
+	 * <p>
+	 * The data gets built from the recorded values on the first call. It is detached from any other save data and must
+	 * not be modified.
+	 *
+	 * @return the shopkeeper data
+	 */
+	public ConfigurationSection getData() {
+		if (data == null) {
+			data = new MemoryConfiguration().createSection(key);
+			values.applyTo(data);
+		}
+		return data;
+	}
+}
@@ -0,0 +1,71 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.Validate;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * A section of a {@link ShopkeeperSnapshot}.
+ * <p>
+ * Shopkeepers and shop objects save their data into this on the main thread. It only records the set values in order,
+ * which need to be plain values (strings, numbers, booleans) or copies of items that don't get modified afterwards.
+ * The configuration section form of the data gets built from these values later on, by the (possibly async) file IO and
+ * the journal writer.
+ */
+public class SnapshotSection {
+
+	// keys and values in the order in which they got set, nested sections are snapshot sections as well:
+	private final List<String> keys = new ArrayList<>();
+	private final List<Object> values = new ArrayList<>();
+
+	SnapshotSection() {
+	}
+
+	/**
+	 * Sets the value for the given key.
+	 * <p>
+	 * Setting a value of <code>null</code> removes the value that has previously been set for that key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value, a plain value or a copy of an item
+	 */
+	public void set(String key, Object value) {
+		Validate.notEmpty(key, "Key is empty!");
+		Validate.isTrue(!(value instanceof ConfigurationSection), "Value cannot be a configuration section!");
+		keys.add(key);
+		values.add(value);
+	}
+
+	/**
+	 * Creates a nested section for the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the new section
+	 */
+	public SnapshotSection createSection(String key) {
+		Validate.notEmpty(key, "Key is empty!");
+		SnapshotSection section = new SnapshotSection();
+		keys.add(key);
+		values.add(section);
+		return section;
+	}
+
+	// builds the configuration section form of the recorded values (can be run async)
+	void applyTo(ConfigurationSection configSection) {
+		assert configSection != null;
+		for (int i = 0; i < keys.size(); i++) {
+			String key = keys.get(i);
+			Object value = values.get(i);
+			if (value instanceof SnapshotSection) {
+				((SnapshotSection) value).applyTo(configSection.createSection(key));
+			} else {
+				configSection.set(key, value);
+			}
+		}
+	}
+}
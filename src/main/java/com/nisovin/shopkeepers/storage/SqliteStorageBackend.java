@@ -0,0 +1,232 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+import com.nisovin.shopkeepers.util.ConversionUtils;
+import com.nisovin.shopkeepers.util.Log;
+
+/**
+ * Stores the shopkeepers inside an embedded SQLite database file ('shopkeepers.db').
+ * <p>
+ * Each shopkeeper is stored as a row containing its data in YAML format. The world and owner of each shopkeeper are
+ * stored in separate indexed columns, so that they can be queried by external tools. Saves only write the rows of the
+ * changed and removed shopkeepers, inside a single transaction.
+ * <p>
+ * The SQLite driver is provided by the server.
+ */
+class SqliteStorageBackend implements StorageBackend {
+
+	private static final String DRIVER_CLASS = "org.sqlite.JDBC";
+	private static final String SHOPKEEPERS_TABLE = "shopkeepers";
+	private static final String METADATA_TABLE = "metadata";
+
+	private final File databaseFile;
+	// changes since the last successful write, which get applied by the next (possibly async) write:
+	private final Map<String, ConfigurationSection> pendingUpdates = new LinkedHashMap<>();
+	private final Set<String> pendingRemovals = new LinkedHashSet<>();
+	// whether all previously stored data gets removed by the next write:
+	private boolean pendingClear = false;
+
+	SqliteStorageBackend(SKShopkeepersPlugin plugin) {
+		this.databaseFile = new File(plugin.getDataFolder(), "shopkeepers.db");
+	}
+
+	@Override
+	public StorageType getType() {
+		return StorageType.SQLITE;
+	}
+
+	@Override
+	public boolean exists() {
+		return databaseFile.exists();
+	}
+
+	private Connection openConnection() throws SQLException {
+		try {
+			Class.forName(DRIVER_CLASS);
+		} catch (ClassNotFoundException e) {
+			throw new SQLException("The SQLite driver is not available on this server!", e);
+		}
+		File parentDir = databaseFile.getParentFile();
+		if (parentDir != null && !parentDir.exists()) {
+			parentDir.mkdirs();
+		}
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+		try (Statement statement = connection.createStatement()) {
+			statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + SHOPKEEPERS_TABLE
+					+ " (id TEXT PRIMARY KEY NOT NULL, world TEXT, owner TEXT, data TEXT NOT NULL)");
+			statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + SHOPKEEPERS_TABLE + "_world ON " + SHOPKEEPERS_TABLE + " (world)");
+			statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + SHOPKEEPERS_TABLE + "_owner ON " + SHOPKEEPERS_TABLE + " (owner)");
+			statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + METADATA_TABLE + " (key TEXT PRIMARY KEY NOT NULL, value TEXT)");
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+		return connection;
+	}
+
+	@Override
+	public void load(FileConfiguration saveData) throws Exception {
+		this.clear();
+		pendingClear = false;
+		if (!databaseFile.exists()) return;
+
+		try (Connection connection = this.openConnection();
+				Statement statement = connection.createStatement()) {
+			try (ResultSet result = statement.executeQuery("SELECT value FROM " + METADATA_TABLE
+					+ " WHERE key = '" + SKShopkeeperStorage.DATA_VERSION_KEY + "'")) {
+				if (result.next()) {
+					Integer dataVersion = ConversionUtils.parseInt(result.getString(1));
+					if (dataVersion != null) {
+						saveData.set(SKShopkeeperStorage.DATA_VERSION_KEY, dataVersion);
+					}
+				}
+			}
+
+			try (ResultSet result = statement.executeQuery("SELECT id, data FROM " + SHOPKEEPERS_TABLE + " ORDER BY rowid")) {
+				while (result.next()) {
+					String key = result.getString(1);
+					YamlConfiguration rowData = new YamlConfiguration();
+					try {
+						rowData.loadFromString(result.getString(2));
+					} catch (Exception e) {
+						throw new Exception("Couldn't load data of shopkeeper '" + key + "': " + e.getMessage(), e);
+					}
+					ConfigurationSection shopkeeperSection = rowData.getConfigurationSection(key);
+					if (shopkeeperSection == null) {
+						Log.warning("Ignoring invalid stored data of shopkeeper '" + key + "': Missing data.");
+						continue;
+					}
+					saveData.set(key, shopkeeperSection);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void replaceAll(ConfigurationSection saveData) {
+		this.clear();
+		for (String key : saveData.getKeys(false)) {
+			if (key.equals(SKShopkeeperStorage.DATA_VERSION_KEY)) continue;
+			ConfigurationSection shopkeeperSection = saveData.getConfigurationSection(key);
+			if (shopkeeperSection == null) continue; // invalid data
+			pendingUpdates.put(key, shopkeeperSection);
+		}
+	}
+
+	@Override
+	public void update(String key, ConfigurationSection shopkeeperData) {
+		pendingRemovals.remove(key);
+		pendingUpdates.put(key, shopkeeperData);
+	}
+
+	@Override
+	public void remove(String key) {
+		pendingUpdates.remove(key);
+		pendingRemovals.add(key);
+	}
+
+	@Override
+	public void clear() {
+		pendingUpdates.clear();
+		pendingRemovals.clear();
+		pendingClear = true;
+	}
+
+	private static String toYaml(String key, ConfigurationSection shopkeeperData) {
+		FileConfiguration rowData = new YamlConfiguration();
+		rowData.set(key, shopkeeperData);
+		StringWriter writer = new StringWriter();
+		SaveFile.writeYaml(writer, rowData);
+		return writer.toString();
+	}
+
+	@Override
+	public boolean write() {
+		try (Connection connection = this.openConnection()) {
+			connection.setAutoCommit(false);
+			try {
+				if (pendingClear) {
+					try (Statement statement = connection.createStatement()) {
+						statement.executeUpdate("DELETE FROM " + SHOPKEEPERS_TABLE);
+					}
+				}
+
+				if (!pendingUpdates.isEmpty()) {
+					try (PreparedStatement statement = connection.prepareStatement("INSERT OR REPLACE INTO " + SHOPKEEPERS_TABLE
+							+ " (id, world, owner, data) VALUES (?, ?, ?, ?)")) {
+						for (Entry<String, ConfigurationSection> entry : pendingUpdates.entrySet()) {
+							String key = entry.getKey();
+							ConfigurationSection shopkeeperData = entry.getValue();
+							statement.setString(1, key);
+							statement.setString(2, shopkeeperData.getString("world"));
+							statement.setString(3, shopkeeperData.getString("owner uuid"));
+							statement.setString(4, toYaml(key, shopkeeperData));
+							statement.addBatch();
+						}
+						statement.executeBatch();
+					}
+				}
+
+				if (!pendingRemovals.isEmpty()) {
+					try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + SHOPKEEPERS_TABLE + " WHERE id = ?")) {
+						for (String key : pendingRemovals) {
+							statement.setString(1, key);
+							statement.addBatch();
+						}
+						statement.executeBatch();
+					}
+				}
+
+				try (PreparedStatement statement = connection.prepareStatement("INSERT OR REPLACE INTO " + METADATA_TABLE
+						+ " (key, value) VALUES (?, ?)")) {
+					statement.setString(1, SKShopkeeperStorage.DATA_VERSION_KEY);
+					statement.setString(2, String.valueOf(SKShopkeeperStorage.DATA_VERSION));
+					statement.executeUpdate();
+				}
+
+				connection.commit();
+			} catch (Exception e) {
+				// the pending changes get written again during the next save:
+				connection.rollback();
+				throw e;
+			}
+		} catch (Exception e) {
+			Log.severe("Saving failed! Save data might be lost! :( (" + databaseFile.getName() + ")", e);
+			return false;
+		}
+
+		pendingUpdates.clear();
+		pendingRemovals.clear();
+		pendingClear = false;
+		return true;
+	}
+
+	@Override
+	public void retire() {
+		if (!databaseFile.exists()) return;
+		File retiredFile = SaveFile.getRetiredFile(databaseFile);
+		if (databaseFile.renameTo(retiredFile)) {
+			Log.info("Moved previous database file '" + databaseFile.getName() + "' to '" + retiredFile.getName() + "'.");
+		} else {
+			Log.warning("Couldn't move previous database file '" + databaseFile.getName() + "' to '" + retiredFile.getName() + "'!");
+		}
+	}
+}
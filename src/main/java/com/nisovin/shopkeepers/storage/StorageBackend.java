@@ -0,0 +1,86 @@
+package com.nisovin.shopkeepers.storage;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+/**
+ * Persists the save data of the shopkeepers.
+ * <p>
+ * The save data consists of one configuration section per shopkeeper, keyed by the shopkeeper id, and the data
+ * version. The backend keeps references to the data it needs to write. These references only get modified on the main
+ * thread, and never while a write is in progress (see the implementation notes of {@link SKShopkeeperStorage}).
+ */
+interface StorageBackend {
+
+	/**
+	 * Gets the type of this backend.
+	 *
+	 * @return the storage type
+	 */
+	StorageType getType();
+
+	/**
+	 * Checks if there is any stored data.
+	 *
+	 * @return <code>true</code> if there is stored data
+	 */
+	boolean exists();
+
+	/**
+	 * Loads all stored data into the given (empty) save data, and resets the data of this backend to the loaded data.
+	 * <p>
+	 * The lowest data version of the loaded data gets stored under {@link SKShopkeeperStorage#DATA_VERSION_KEY}.
+	 *
+	 * @param saveData
+	 *            the save data to load the data into
+	 * @throws Exception
+	 *             if loading fails
+	 */
+	void load(FileConfiguration saveData) throws Exception;
+
+	/**
+	 * Replaces the data of this backend with the given save data, and marks all of it to get written during the next
+	 * write.
+	 *
+	 * @param saveData
+	 *            the save data
+	 */
+	void replaceAll(ConfigurationSection saveData);
+
+	/**
+	 * Updates the data of a shopkeeper.
+	 *
+	 * @param key
+	 *            the shopkeeper key
+	 * @param shopkeeperData
+	 *            the shopkeeper data
+	 */
+	void update(String key, ConfigurationSection shopkeeperData);
+
+	/**
+	 * Removes the data of a shopkeeper.
+	 *
+	 * @param key
+	 *            the shopkeeper key
+	 */
+	void remove(String key);
+
+	/**
+	 * Clears all data of this backend (without affecting the stored data).
+	 */
+	void clear();
+
+	/**
+	 * Writes the changed data.
+	 * <p>
+	 * This can be run async and sync.
+	 *
+	 * @return <code>true</code> if the writing was successful
+	 */
+	boolean write();
+
+	/**
+	 * Moves the stored data out of the way, after it has been successfully migrated to another backend.
+	 */
+	void retire();
+}
@@ -0,0 +1,39 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.util.function.Function;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+
+public enum StorageType {
+
+	YAML("yaml", YamlStorageBackend::new),
+	SHARDED_YAML("sharded-yaml", ShardedYamlStorageBackend::new),
+	BINARY("binary", BinaryStorageBackend::new),
+	SQLITE("sqlite", SqliteStorageBackend::new);
+
+	private final String identifier;
+	private final Function<SKShopkeepersPlugin, StorageBackend> backendFactory;
+
+	private StorageType(String identifier, Function<SKShopkeepersPlugin, StorageBackend> backendFactory) {
+		this.identifier = identifier;
+		this.backendFactory = backendFactory;
+	}
+
+	public String getIdentifier() {
+		return identifier;
+	}
+
+	StorageBackend createBackend(SKShopkeepersPlugin plugin) {
+		return backendFactory.apply(plugin);
+	}
+
+	public static StorageType getByIdentifier(String identifier) {
+		if (identifier == null) return null;
+		for (StorageType storageType : values()) {
+			if (storageType.identifier.equalsIgnoreCase(identifier)) {
+				return storageType;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,264 @@
+package com.nisovin.shopkeepers.storage;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import com.nisovin.shopkeepers.SKShopkeepersPlugin;
+
+/**
+ * Stores all shopkeepers inside a single 'save.yml' file.
+ * <p>
+ * The emitted YAML text of each shopkeeper gets cached. During saves, only the data of updated shopkeepers gets
+ * rendered again, and the file only gets written if its contents actually changed. The data of loaded shopkeepers
+ * only gets rendered once the file actually needs to be written.
+ * <p>
+ * During loading, the top level entries of the file get parsed in parallel, in batches of {@link #PARSE_BATCH_SIZE}.
+ */
+class YamlStorageBackend implements StorageBackend {
+
+	// the number of top level entries that get parsed together during loading:
+	private static final int PARSE_BATCH_SIZE = 256;
+
+	private static class Fragment {
+
+		private ConfigurationSection data;
+		// the last emitted yaml text, or null if the data has not yet been rendered:
+		private String text = null;
+		// whether the data might have changed since it got last rendered (or loaded):
+		private boolean stale;
+
+		Fragment(ConfigurationSection data, boolean stale) {
+			this.data = data;
+			this.stale = stale;
+		}
+	}
+
+	private final SaveFile saveFile;
+	// shopkeeper key -> emitted yaml fragment, in save file order
+	private final Map<String, Fragment> fragments = new LinkedHashMap<>();
+	private final String dataVersionFragment;
+	// whether the file contents changed since the last successful write:
+	private boolean contentChanged = false;
+
+	YamlStorageBackend(SKShopkeepersPlugin plugin) {
+		this.saveFile = new SaveFile(new File(plugin.getDataFolder(), "save.yml"));
+		FileConfiguration dataVersionConfig = new YamlConfiguration();
+		dataVersionConfig.set(SKShopkeeperStorage.DATA_VERSION_KEY, SKShopkeeperStorage.DATA_VERSION);
+		this.dataVersionFragment = dataVersionConfig.saveToString();
+	}
+
+	@Override
+	public StorageType getType() {
+		return StorageType.YAML;
+	}
+
+	@Override
+	public boolean exists() {
+		return saveFile.exists();
+	}
+
+	@Override
+	public void load(FileConfiguration saveData) throws Exception {
+		File loadFile = saveFile.getLoadFile();
+		if (loadFile != null && !this.loadInParallel(loadFile, saveData)) {
+			// parse the file as a whole:
+			saveFile.load(saveData);
+		}
+		this.replaceAll(saveData);
+		// the loaded data matches the file contents:
+		for (Fragment fragment : fragments.values()) {
+			if (fragment.text == null) {
+				fragment.stale = false;
+			}
+		}
+		contentChanged = (saveData.getInt(SKShopkeeperStorage.DATA_VERSION_KEY, -1) != SKShopkeeperStorage.DATA_VERSION);
+	}
+
+	// returns false if the file cannot be split into separately parseable entries (nothing got loaded in that case)
+	private boolean loadInParallel(File loadFile, FileConfiguration saveData) throws Exception {
+		String content = new String(Files.readAllBytes(loadFile.toPath()), SaveFile.getCharset());
+
+		// split the content into batches of top level entries:
+		// the yaml emitted by Bukkit starts each top level entry at the beginning of a line, and indents its contents
+		List<String> batches = new ArrayList<>();
+		int batchStart = 0;
+		int batchEntries = 0;
+		int lineStart = 0;
+		while (lineStart < content.length()) {
+			int lineEnd = content.indexOf('\n', lineStart);
+			lineEnd = (lineEnd == -1 ? content.length() : lineEnd + 1);
+			char firstChar = content.charAt(lineStart);
+			if (firstChar == '%' || content.startsWith("---", lineStart) || content.startsWith("...", lineStart)) {
+				return false; // directives or multiple documents
+			}
+			if (firstChar != ' ' && firstChar != '\t' && firstChar != '-' && firstChar != '#' && firstChar != '\r' && firstChar != '\n') {
+				// start of a top level entry:
+				if (batchEntries == PARSE_BATCH_SIZE) {
+					batches.add(content.substring(batchStart, lineStart));
+					batchStart = lineStart;
+					batchEntries = 0;
+				}
+				batchEntries++;
+			}
+			lineStart = lineEnd;
+		}
+		batches.add(content.substring(batchStart));
+
+		FileConfiguration[] batchesData = new FileConfiguration[batches.size()];
+		try {
+			IntStream.range(0, batches.size()).parallel().forEach(index -> {
+				FileConfiguration batchData = new YamlConfiguration();
+				try {
+					batchData.loadFromString(batches.get(index));
+				} catch (InvalidConfigurationException e) {
+					throw new CompletionException(e);
+				}
+				batchesData[index] = batchData;
+			});
+		} catch (CompletionException e) {
+			// ex. if the entries reference each other
+			return false;
+		}
+
+		for (FileConfiguration batchData : batchesData) {
+			for (Entry<String, Object> entry : batchData.getValues(false).entrySet()) {
+				saveData.set(entry.getKey(), entry.getValue());
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void replaceAll(ConfigurationSection saveData) {
+		// the file gets written with the current data version:
+		if (saveData.getInt(SKShopkeeperStorage.DATA_VERSION_KEY, -1) != SKShopkeeperStorage.DATA_VERSION) {
+			contentChanged = true;
+		}
+
+		// create a copy of the save data's top level data structure:
+		// the previously emitted yaml text gets kept, so that the file only gets written again if the rendered data
+		// actually differs
+		Map<String, Fragment> previousFragments = new LinkedHashMap<>(fragments);
+		fragments.clear();
+		for (Entry<String, Object> entry : saveData.getValues(false).entrySet()) {
+			String key = entry.getKey();
+			if (key.equals(SKShopkeeperStorage.DATA_VERSION_KEY)) continue;
+			Object value = entry.getValue();
+			if (!(value instanceof ConfigurationSection)) continue; // invalid data
+			Fragment fragment = new Fragment((ConfigurationSection) value, true);
+			Fragment previousFragment = previousFragments.get(key);
+			if (previousFragment != null) {
+				fragment.text = previousFragment.text;
+			}
+			fragments.put(key, fragment);
+		}
+		// shopkeepers got added, removed or reordered:
+		if (!new ArrayList<>(fragments.keySet()).equals(new ArrayList<>(previousFragments.keySet()))) {
+			contentChanged = true;
+		}
+	}
+
+	@Override
+	public void update(String key, ConfigurationSection shopkeeperData) {
+		Fragment fragment = fragments.get(key);
+		if (fragment == null) {
+			fragments.put(key, new Fragment(shopkeeperData, true));
+			contentChanged = true;
+		} else {
+			// gets rendered again during the next write:
+			fragment.data = shopkeeperData;
+			fragment.stale = true;
+		}
+	}
+
+	@Override
+	public void remove(String key) {
+		if (fragments.remove(key) != null) {
+			contentChanged = true;
+		}
+	}
+
+	@Override
+	public void clear() {
+		if (!fragments.isEmpty()) {
+			fragments.clear();
+			contentChanged = true;
+		}
+	}
+
+	// renders the fragments of changed shopkeepers
+	private void renderFragments() {
+		FileConfiguration renderConfig = new YamlConfiguration();
+		for (Entry<String, Fragment> entry : fragments.entrySet()) {
+			Fragment fragment = entry.getValue();
+			if (!fragment.stale) continue; // up-to-date
+			String text = this.renderFragment(renderConfig, entry.getKey(), fragment);
+
+			// shopkeepers might get marked dirty without their data actually changing:
+			if (!text.equals(fragment.text)) {
+				contentChanged = true;
+			}
+			fragment.text = text;
+			fragment.stale = false;
+		}
+	}
+
+	// renders the fragments of loaded, but not yet rendered shopkeepers
+	private void renderLoadedFragments() {
+		FileConfiguration renderConfig = new YamlConfiguration();
+		for (Entry<String, Fragment> entry : fragments.entrySet()) {
+			Fragment fragment = entry.getValue();
+			if (fragment.text != null) continue;
+			fragment.text = this.renderFragment(renderConfig, entry.getKey(), fragment);
+		}
+	}
+
+	private String renderFragment(FileConfiguration renderConfig, String key, Fragment fragment) {
+		renderConfig.set(key, fragment.data);
+		String text = renderConfig.saveToString();
+		renderConfig.set(key, null);
+		return text;
+	}
+
+	@Override
+	public boolean write() {
+		this.renderFragments();
+		if (!contentChanged && saveFile.exists()) {
+			return true; // the saved data is still up-to-date
+		}
+		this.renderLoadedFragments();
+
+		boolean success = saveFile.save((out) -> {
+			Writer writer = new OutputStreamWriter(out, SaveFile.getCharset());
+			// data version first (at the top):
+			writer.write(dataVersionFragment);
+			for (Fragment fragment : fragments.values()) {
+				writer.write(fragment.text);
+			}
+			writer.flush();
+		});
+		if (success) {
+			contentChanged = false;
+		}
+		return success;
+	}
+
+	@Override
+	public void retire() {
+		saveFile.retire();
+	}
+}
@@ -0,0 +1,208 @@
+package com.nisovin.shopkeepers.util;
+
+import java.util.Arrays;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * A hash map with primitive <code>long</code> keys.
+ * <p>
+ * Uses open addressing with linear probing, so that lookups do not need to box their keys or allocate any entry
+ * objects. <code>null</code> values are not supported.
+ *
+ * @param <V>
+ *            the value type
+ */
+public class LongObjectHashMap<V> {
+
+	public interface EntryConsumer<V> {
+
+		public void accept(long key, V value);
+	}
+
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.5F;
+
+	private long[] keys;
+	// null marks free slots:
+	private Object[] values;
+	private int size = 0;
+	private int resizeThreshold;
+
+	public LongObjectHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongObjectHashMap(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity * LOAD_FACTOR < expectedSize) {
+			capacity <<= 1;
+		}
+		this.allocate(capacity);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		resizeThreshold = (int) (capacity * LOAD_FACTOR);
+	}
+
+	private static int hash(long key) {
+		// mixes the bits of the key (from MurmurHash3's finalizer):
+		key ^= (key >>> 33);
+		key *= 0xff51afd7ed558ccdL;
+		key ^= (key >>> 33);
+		return (int) key;
+	}
+
+	private int indexOf(long key) {
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (values[index] != null) {
+			if (keys[index] == key) return index;
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	public boolean containsKey(long key) {
+		return (this.indexOf(key) != -1);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int index = this.indexOf(key);
+		return (index != -1 ? (V) values[index] : null);
+	}
+
+	/**
+	 * Maps the given value to the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value, not <code>null</code>
+	 * @return the previous value, or <code>null</code> if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		Validate.notNull(value, "Value is null!");
+		int mask = keys.length - 1;
+		int index = hash(key) & mask;
+		while (values[index] != null) {
+			if (keys[index] == key) {
+				V previousValue = (V) values[index];
+				values[index] = value;
+				return previousValue;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		if (++size > resizeThreshold) {
+			this.resize(keys.length << 1);
+		}
+		return null;
+	}
+
+	private void resize(int newCapacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		this.allocate(newCapacity);
+		int mask = newCapacity - 1;
+		for (int oldIndex = 0; oldIndex < oldKeys.length; oldIndex++) {
+			Object value = oldValues[oldIndex];
+			if (value == null) continue;
+			long key = oldKeys[oldIndex];
+			int index = hash(key) & mask;
+			while (values[index] != null) {
+				index = (index + 1) & mask;
+			}
+			keys[index] = key;
+			values[index] = value;
+		}
+	}
+
+	/**
+	 * Removes the mapping for the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the removed value, or <code>null</code> if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int index = this.indexOf(key);
+		if (index == -1) return null;
+		V removedValue = (V) values[index];
+		size--;
+
+		// shift back the following entries of the same probe sequence, so that lookups still find them:
+		int mask = keys.length - 1;
+		int freeIndex = index;
+		int nextIndex = (freeIndex + 1) & mask;
+		while (values[nextIndex] != null) {
+			int idealIndex = hash(keys[nextIndex]) & mask;
+			// move the entry if its ideal slot is not located cyclically within (freeIndex, nextIndex]:
+			if (((nextIndex - idealIndex) & mask) >= ((nextIndex - freeIndex) & mask)) {
+				keys[freeIndex] = keys[nextIndex];
+				values[freeIndex] = values[nextIndex];
+				freeIndex = nextIndex;
+			}
+			nextIndex = (nextIndex + 1) & mask;
+		}
+		values[freeIndex] = null;
+		return removedValue;
+	}
+
+	public void clear() {
+		if (size == 0) return;
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/**
+	 * Gets a copy of the keys.
+	 * <p>
+	 * Can be used to modify the map while iterating its keys.
+	 *
+	 * @return the keys
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int resultIndex = 0;
+		for (int index = 0; index < keys.length; index++) {
+			if (values[index] != null) {
+				result[resultIndex++] = keys[index];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Invokes the given action for each entry.
+	 * <p>
+	 * The map must not be modified by the action.
+	 *
+	 * @param action
+	 *            the action
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> action) {
+		Validate.notNull(action, "Action is null!");
+		for (int index = 0; index < keys.length; index++) {
+			Object value = values[index];
+			if (value != null) {
+				action.accept(keys[index], (V) value);
+			}
+		}
+	}
+}
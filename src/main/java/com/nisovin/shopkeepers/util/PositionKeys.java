@@ -0,0 +1,42 @@
+package com.nisovin.shopkeepers.util;
+
+/**
+ * Packs block and chunk positions into <code>long</code> keys.
+ * <p>
+ * Block keys use the same layout as Minecraft: 26 bits for the x and z coordinates, and 12 bits for the y coordinate.
+ * Chunk keys store the chunk x coordinate in the upper and the chunk z coordinate in the lower 32 bits. The keys do not
+ * include the world, so they are only unique within a single world.
+ */
+public class PositionKeys {
+
+	private PositionKeys() {
+	}
+
+	public static long blockKey(int x, int y, int z) {
+		return ((x & 0x3FFFFFFL) << 38) | ((z & 0x3FFFFFFL) << 12) | (y & 0xFFFL);
+	}
+
+	public static int getBlockX(long blockKey) {
+		return (int) (blockKey >> 38);
+	}
+
+	public static int getBlockY(long blockKey) {
+		return (int) (blockKey << 52 >> 52);
+	}
+
+	public static int getBlockZ(long blockKey) {
+		return (int) (blockKey << 26 >> 38);
+	}
+
+	public static long chunkKey(int chunkX, int chunkZ) {
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+
+	public static int getChunkX(long chunkKey) {
+		return (int) (chunkKey >> 32);
+	}
+
+	public static int getChunkZ(long chunkKey) {
+		return (int) chunkKey;
+	}
+}
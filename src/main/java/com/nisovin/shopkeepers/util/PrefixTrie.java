@@ -0,0 +1,265 @@
+package com.nisovin.shopkeepers.util;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import org.apache.commons.lang.Validate;
+
+/**
+ * Maps string keys to values and allows to find all values whose keys start with a given prefix.
+ * <p>
+ * Multiple values can be mapped to the same key. The trie is path compressed: Keys that share no common prefix with
+ * other keys only take up a single node. Values with keys that share a prefix get visited in the lexicographical order
+ * of their keys.
+ *
+ * @param <V>
+ *            the value type
+ */
+public class PrefixTrie<V> {
+
+	private static class Node<V> {
+
+		// the part of the key between the parent node and this node, empty for the root:
+		private String label;
+		// lazily created:
+		private TreeMap<Character, Node<V>> children = null;
+		private Set<V> values = null;
+
+		Node(String label) {
+			this.label = label;
+		}
+
+		boolean hasChildren() {
+			return (children != null && !children.isEmpty());
+		}
+
+		boolean hasValues() {
+			return (values != null && !values.isEmpty());
+		}
+
+		Node<V> getChild(char c) {
+			return (children != null ? children.get(c) : null);
+		}
+
+		void putChild(Node<V> child) {
+			if (children == null) {
+				children = new TreeMap<>();
+			}
+			children.put(child.label.charAt(0), child);
+		}
+
+		void removeChild(Node<V> child) {
+			if (children == null) return;
+			children.remove(child.label.charAt(0));
+			if (children.isEmpty()) {
+				children = null;
+			}
+		}
+
+		boolean addValue(V value) {
+			if (values == null) {
+				values = new LinkedHashSet<>(2);
+			}
+			return values.add(value);
+		}
+
+		boolean removeValue(V value) {
+			if (values == null) return false;
+			boolean removed = values.remove(value);
+			if (values.isEmpty()) {
+				values = null;
+			}
+			return removed;
+		}
+	}
+
+	private final Node<V> root = new Node<>("");
+	private int size = 0;
+
+	public PrefixTrie() {
+	}
+
+	/**
+	 * Gets the number of key-value mappings.
+	 *
+	 * @return the number of mappings
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return (size == 0);
+	}
+
+	public void clear() {
+		root.children = null;
+		root.values = null;
+		size = 0;
+	}
+
+	private static int commonPrefixLength(String label, String key, int keyOffset) {
+		int maxLength = Math.min(label.length(), key.length() - keyOffset);
+		int length = 0;
+		while (length < maxLength && label.charAt(length) == key.charAt(keyOffset + length)) {
+			length++;
+		}
+		return length;
+	}
+
+	/**
+	 * Maps the given value to the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @return <code>true</code> if the value was not yet mapped to the key
+	 */
+	public boolean add(String key, V value) {
+		Validate.notNull(key, "Key is null!");
+		Validate.notNull(value, "Value is null!");
+		Node<V> node = root;
+		int index = 0;
+		while (index < key.length()) {
+			Node<V> child = node.getChild(key.charAt(index));
+			if (child == null) {
+				// new leaf for the remaining key:
+				child = new Node<>(key.substring(index));
+				node.putChild(child);
+				node = child;
+				break;
+			}
+
+			int common = commonPrefixLength(child.label, key, index);
+			if (common < child.label.length()) {
+				// split the child:
+				Node<V> intermediate = new Node<>(child.label.substring(0, common));
+				node.removeChild(child);
+				child.label = child.label.substring(common);
+				intermediate.putChild(child);
+				node.putChild(intermediate);
+				child = intermediate;
+			}
+			node = child;
+			index += common;
+		}
+
+		if (node.addValue(value)) {
+			size++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the mapping of the given value to the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @return <code>true</code> if the value was mapped to the key
+	 */
+	public boolean remove(String key, V value) {
+		Validate.notNull(key, "Key is null!");
+		if (this.remove(root, key, 0, value)) {
+			size--;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean remove(Node<V> node, String key, int index, V value) {
+		if (index == key.length()) {
+			return node.removeValue(value);
+		}
+
+		Node<V> child = node.getChild(key.charAt(index));
+		if (child == null || !key.startsWith(child.label, index)) return false;
+		if (!this.remove(child, key, index + child.label.length(), value)) return false;
+
+		// clean up the child:
+		if (!child.hasValues()) {
+			if (!child.hasChildren()) {
+				node.removeChild(child);
+			} else if (child.children.size() == 1) {
+				// merge the child with its only child:
+				Node<V> grandChild = child.children.firstEntry().getValue();
+				node.removeChild(child);
+				grandChild.label = child.label + grandChild.label;
+				node.putChild(grandChild);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the values that are mapped to the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return an unmodifiable view on the values, can be empty
+	 */
+	public Set<V> get(String key) {
+		Validate.notNull(key, "Key is null!");
+		Node<V> node = root;
+		int index = 0;
+		while (index < key.length()) {
+			node = node.getChild(key.charAt(index));
+			if (node == null || !key.startsWith(node.label, index)) return Collections.emptySet();
+			index += node.label.length();
+		}
+		if (node.values == null) return Collections.emptySet();
+		return Collections.unmodifiableSet(node.values);
+	}
+
+	/**
+	 * Visits the values whose keys start with the given prefix.
+	 * <p>
+	 * The trie must not be modified while its values are visited.
+	 *
+	 * @param prefix
+	 *            the prefix, an empty prefix visits all values
+	 * @param action
+	 *            gets invoked for each visited value, and returns <code>false</code> to stop visiting any further values
+	 * @return <code>false</code> if the visit got stopped by the action
+	 */
+	public boolean forEachWithPrefix(String prefix, Predicate<? super V> action) {
+		Validate.notNull(prefix, "Prefix is null!");
+		Validate.notNull(action, "Action is null!");
+		Node<V> node = root;
+		int index = 0;
+		while (index < prefix.length()) {
+			node = node.getChild(prefix.charAt(index));
+			if (node == null) return true;
+			int remaining = prefix.length() - index;
+			if (remaining <= node.label.length()) {
+				// the prefix ends within the label of this node:
+				if (!node.label.startsWith(prefix.substring(index))) return true;
+				break;
+			}
+			if (!prefix.startsWith(node.label, index)) return true;
+			index += node.label.length();
+		}
+		return forEach(node, action);
+	}
+
+	private static <V> boolean forEach(Node<V> node, Predicate<? super V> action) {
+		if (node.values != null) {
+			for (V value : node.values) {
+				if (!action.test(value)) return false;
+			}
+		}
+		if (node.children != null) {
+			for (Map.Entry<Character, Node<V>> childEntry : node.children.entrySet()) {
+				if (!forEach(childEntry.getValue(), action)) return false;
+			}
+		}
+		return true;
+	}
+}